@@ -1,9 +1,13 @@
 package sqlsolver.api;
 
 import sqlsolver.api.entry.Verification;
+import sqlsolver.common.config.GlobalConfig;
 import sqlsolver.common.utils.Args;
+import sqlsolver.sql.calcite.PlannerPool;
 import sqlsolver.superopt.logic.LogicSupport;
+import sqlsolver.superopt.logic.VerificationMetrics;
 import sqlsolver.superopt.logic.VerificationResult;
+import sqlsolver.superopt.util.Z3ContextPool;
 
 import java.io.FileWriter;
 import java.io.IOException;
@@ -25,6 +29,9 @@ public class Entry {
      * -schema indicates the schema file.
      * [-print] indicates whether print the result to standard output stream.
      * [-output] indicates where to store the verification result.
+     * [-metrics] indicates where to store the metrics of verifying each pair as JSON lines.
+     * [-timeout] indicates the time limit (in seconds) of verifying each pair.
+     * [-parallelism] indicates how many pairs are verified concurrently.
      * [-help] indicates that show all the arguments.
      * Each SQL statement in the SQL file should be on a separate line.
      * The SQL statements on the same lines in two SQL files
@@ -38,11 +45,15 @@ public class Entry {
     final Boolean print = args.getOptional("print", Boolean.class, false);
     final Boolean help = args.getOptional("help", Boolean.class, false);
     final String outputPathString = args.getOptional("output", String.class, null);
+    final String metricsPathString = args.getOptional("metrics", String.class, null);
+    final Long timeout = args.getOptional("timeout", Long.class, -1L);
+    final Integer parallelism = args.getOptional("parallelism", Integer.class, GlobalConfig.SQLSOLVER_VERIFY_PARALLELISM);
 
     if (help) {
       StringBuilder sb = new StringBuilder("");
       sb.append("java -jar sqlsolver.jar [-help] -sql1=<path/to/query1> -sql2=<path/to/query2>\n" +
-                "                        -schema=<path/to/schema> [-print] [-output=<path/to/output>]\n\n");
+                "                        -schema=<path/to/schema> [-print] [-output=<path/to/output>]\n" +
+                "                        [-metrics=<path/to/metrics>] [-timeout=<seconds>] [-parallelism=<workers>]\n\n");
       sb.append("options:\n");
       sb.append("  -help                    show this help message and exit.\n");
       sb.append("  -sql1=<path/to/query1>   the first sql file.\n");
@@ -50,6 +61,11 @@ public class Entry {
       sb.append("  -schema=<path/to/schema> the schema file.\n");
       sb.append("  -print                   print the result to standard output stream.\n");
       sb.append("  -output=<path/to/output> the file that store the verification result.\n");
+      sb.append("  -metrics=<path/to/metrics>\n" +
+                "                           the file that store the metrics of each pair as JSON lines.\n");
+      sb.append("  -timeout=<seconds>       the time limit of verifying each pair.\n");
+      sb.append("  -parallelism=<workers>   the number of pairs verified concurrently;\n" +
+                "                           non-positive value means all available processors.\n");
       System.out.println(sb);
       return;
     }
@@ -74,12 +90,16 @@ public class Entry {
     final Path secondQueryPath = Paths.get(secondQueryPathString);
     final Path schemaPath = Paths.get(schemaPathString);
     List<VerificationResult> results;
+    final List<VerificationMetrics> metrics = new ArrayList<>();
 
     // verify the SQLs
     try {
       results = Verification.verify(Files.readAllLines(firstQueryPath),
               Files.readAllLines(secondQueryPath),
-              Files.readString(schemaPath));
+              Verification.registerSchema(Files.readString(schemaPath)),
+              timeout,
+              parallelism,
+              metrics);
     } catch (IOException e) {
       if (LogicSupport.dumpLiaFormulas)
         e.printStackTrace();
@@ -100,5 +120,21 @@ public class Entry {
         e.printStackTrace();
       }
     }
+
+    // output metrics of each pair as JSON lines
+    if (metricsPathString != null) {
+      try (FileWriter fileWriter = new FileWriter(metricsPathString)) {
+        for (int i = 0; i < results.size(); i++) {
+          fileWriter.append("{\"pair\": %d, \"result\": \"%s\", \"metrics\": %s}\n"
+                  .formatted(i + 1, results.get(i), metrics.get(i).toJson()));
+        }
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+
+      // counters of the shared pools, kept out of the result stream
+      System.err.println(Z3ContextPool.stats());
+      System.err.println(PlannerPool.stats());
+    }
   }
 }
\ No newline at end of file
@@ -0,0 +1,227 @@
+package sqlsolver.api.entry;
+
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelNode;
+import sqlsolver.api.query.QueryPair;
+import sqlsolver.common.config.GlobalConfig;
+import sqlsolver.common.io.FileUtils;
+import sqlsolver.superopt.logic.VerificationResult;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static sqlsolver.sql.calcite.CalciteSupport.TEMP_COL_PREFIX;
+import static sqlsolver.sql.calcite.CalciteSupport.TEMP_TABLE_PREFIX;
+
+/**
+ * On-disk cache of verification results, enabled by {@code sqlsolver.proof.cache}.
+ * <p/>
+ * A pair is keyed by the SHA-256 of its schema and its two plans
+ * (or its preprocessed SQL when it has no plans),
+ * where the names of temporary tables/columns are renumbered by their order of appearance.
+ * Only EQ and refuted NEQ (see {@link sqlsolver.superopt.logic.VerificationContext#isRefuted()}) are cached,
+ * since other results depend on the time budget: the prover also answers NEQ when it fails to prove EQ in time.
+ * <p/>
+ * The cache is an append-only log, {@code sqlsolver_data/proof_cache.log}.
+ * Its first line is a stamp of the solver version and {@code data.version};
+ * a log with another stamp is discarded.
+ * At most {@code sqlsolver.proof.cache.size} entries are kept, the least recently used one
+ * is evicted first, and the log is compacted when it grows beyond twice that size.
+ * The log is not meant to be shared by several processes at the same time.
+ */
+class ProofCache {
+  private static final String LOG_NAME = "proof_cache.log";
+  // v2: NEQ of timed-out proofs is no longer cached, so older logs are discarded
+  private static final String HEADER_PREFIX = "sqlsolver-proof-cache-v2 ";
+  private static final Pattern TEMP_NAME =
+          Pattern.compile("\\b(" + TEMP_TABLE_PREFIX + "|" + TEMP_COL_PREFIX + ")\\d+\\b");
+
+  private static volatile ProofCache shared;
+
+  private final Path logPath;
+  private final String stamp;
+  private final int capacity;
+  private final LinkedHashMap<String, VerificationResult> entries;
+  private final AtomicLong numHits = new AtomicLong(0);
+  private final AtomicLong numMisses = new AtomicLong(0);
+  private BufferedWriter log;
+  private int numLogLines;
+
+  ProofCache(Path logPath, String stamp, int capacity) {
+    this.logPath = logPath;
+    this.stamp = stamp;
+    this.capacity = Math.max(1, capacity);
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, VerificationResult> eldest) {
+        return size() > ProofCache.this.capacity;
+      }
+    };
+    load();
+  }
+
+  /** The cache configured in {@code sqlsolver.properties}, or null if it is disabled. */
+  static ProofCache shared() {
+    if (!GlobalConfig.SQLSOLVER_PROOF_CACHE) return null;
+    if (shared == null) {
+      synchronized (ProofCache.class) {
+        if (shared == null) {
+          shared = new ProofCache(FileUtils.dataFile(LOG_NAME), currentStamp(), GlobalConfig.SQLSOLVER_PROOF_CACHE_SIZE);
+        }
+      }
+    }
+    return shared;
+  }
+
+  /** The cache key of a pair, which identifies the pair regardless of names of temporary tables/columns. */
+  static String keyOf(QueryPair pair, String schemaString) {
+    final RelNode plan0 = pair.getPlan0(), plan1 = pair.getPlan1();
+    final String text;
+    if (plan0 != null && plan1 != null) {
+      text = "plan\n" + RelOptUtil.toString(plan0) + "\n" + RelOptUtil.toString(plan1);
+    } else {
+      text = "sql\n" + pair.getSql0() + "\n" + pair.getSql1();
+    }
+    return sha256(schemaString + "\n" + renumberTempNames(text));
+  }
+
+  synchronized VerificationResult get(String key) {
+    final VerificationResult result = entries.get(key);
+    if (result == null) numMisses.incrementAndGet();
+    else numHits.incrementAndGet();
+    return result;
+  }
+
+  /** Cache the result of a pair, where <code>refuted</code> tells whether a NEQ is known regardless of time. */
+  synchronized void put(String key, VerificationResult result, boolean refuted) {
+    if (result != VerificationResult.EQ && (result != VerificationResult.NEQ || !refuted)) return;
+    if (entries.put(key, result) == result || log == null) return;
+    try {
+      if (numLogLines >= capacity << 1) {
+        compact();
+      } else {
+        log.write(key + " " + result);
+        log.newLine();
+        log.flush();
+        numLogLines++;
+      }
+    } catch (IOException e) {
+      // the in-memory cache still works
+      log = null;
+    }
+  }
+
+  long numHits() {
+    return numHits.get();
+  }
+
+  long numMisses() {
+    return numMisses.get();
+  }
+
+  String stats() {
+    return "Proof cache: %d hits, %d misses, %d entries".formatted(numHits(), numMisses(), size());
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  private void load() {
+    try {
+      if (Files.exists(logPath)) {
+        final List<String> lines = Files.readAllLines(logPath, StandardCharsets.UTF_8);
+        if (!lines.isEmpty() && lines.get(0).equals(HEADER_PREFIX + stamp)) {
+          for (String line : lines.subList(1, lines.size())) {
+            final int sep = line.indexOf(' ');
+            if (sep < 0) continue;
+            try {
+              entries.put(line.substring(0, sep), VerificationResult.valueOf(line.substring(sep + 1)));
+            } catch (IllegalArgumentException ignored) {
+              // malformed line, e.g. a partially written one
+            }
+          }
+          numLogLines = lines.size() - 1;
+          if (numLogLines < capacity << 1) {
+            log = Files.newBufferedWriter(logPath, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            return;
+          }
+        }
+      }
+      // the log does not exist, is stale or is too long
+      compact();
+    } catch (IOException e) {
+      System.err.println("Failed to open the proof cache " + logPath + ". Results are only cached in memory.");
+      log = null;
+    }
+  }
+
+  /** Rewrite the log with the entries in memory. */
+  private void compact() throws IOException {
+    if (log != null) log.close();
+    final Path parent = logPath.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    final Path tmp = Files.createTempFile(parent, LOG_NAME, ".tmp");
+    try (final BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+      writer.write(HEADER_PREFIX + stamp);
+      writer.newLine();
+      for (Map.Entry<String, VerificationResult> entry : entries.entrySet()) {
+        writer.write(entry.getKey() + " " + entry.getValue());
+        writer.newLine();
+      }
+    }
+    Files.move(tmp, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    numLogLines = entries.size();
+    log = Files.newBufferedWriter(logPath, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+  }
+
+  /** The solver version (the "version" file of the project) and the digest of data.version. */
+  private static String currentStamp() {
+    String solverVersion = "unknown";
+    String dataVersion = "none";
+    try {
+      final Path versionFile = Paths.get("version");
+      if (Files.exists(versionFile)) solverVersion = Files.readString(versionFile).strip();
+      final Path dataVersionFile = FileUtils.dataFile("data.version");
+      if (Files.exists(dataVersionFile)) dataVersion = sha256(Files.readString(dataVersionFile)).substring(0, 16);
+    } catch (IOException ignored) {
+      // fall back to the defaults
+    }
+    return solverVersion + "/" + dataVersion;
+  }
+
+  private static String renumberTempNames(String text) {
+    final Map<String, String> renamed = new HashMap<>();
+    final Matcher matcher = TEMP_NAME.matcher(text);
+    final StringBuilder builder = new StringBuilder(text.length());
+    while (matcher.find()) {
+      final String name = matcher.group();
+      final String newName = renamed.computeIfAbsent(name, k -> matcher.group(1) + "#" + renamed.size());
+      matcher.appendReplacement(builder, Matcher.quoteReplacement(newName));
+    }
+    matcher.appendTail(builder);
+    return builder.toString();
+  }
+
+  private static String sha256(String text) {
+    try {
+      final byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest);
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform supports SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+}
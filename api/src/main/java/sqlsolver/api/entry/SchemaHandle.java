@@ -0,0 +1,42 @@
+package sqlsolver.api.entry;
+
+import org.apache.calcite.jdbc.CalciteSchema;
+import sqlsolver.sql.calcite.CalciteSupport;
+import sqlsolver.sql.schema.Schema;
+
+/**
+ * A schema registered via {@link Verification#registerSchema(String)}.
+ * It keeps the parsed schema and its Calcite schema,
+ * so that verifying against a handle never parses the schema again.
+ * Handles are immutable and can be shared by threads.
+ */
+public final class SchemaHandle {
+  private final String ddl;
+  private final Schema schema;
+  private final CalciteSchema calciteSchema;
+
+  private SchemaHandle(String ddl, Schema schema, CalciteSchema calciteSchema) {
+    this.ddl = ddl;
+    this.schema = schema;
+    this.calciteSchema = calciteSchema;
+  }
+
+  static SchemaHandle register(String ddl) {
+    final Schema schema = CalciteSupport.getSchema(ddl);
+    return new SchemaHandle(ddl, schema, CalciteSupport.getCalciteSchema(schema));
+  }
+
+  /** The DDL of the schema. */
+  public String ddl() {
+    return ddl;
+  }
+
+  /** The parsed schema, which must not be modified. */
+  public Schema schema() {
+    return schema;
+  }
+
+  CalciteSchema calciteSchema() {
+    return calciteSchema;
+  }
+}
@@ -1,5 +1,7 @@
 package sqlsolver.api.entry;
 
+import sqlsolver.common.config.GlobalConfig;
+import sqlsolver.superopt.logic.VerificationMetrics;
 import sqlsolver.superopt.logic.VerificationResult;
 import org.apache.calcite.rel.RelNode;
 import sqlsolver.sql.schema.Schema;
@@ -34,7 +36,7 @@ public interface Verification {
    * @return a list of string indicates that whether two sql are equivalent.
    */
   static List<VerificationResult> verify(List<String> sqlList0, List<String> sqlList1, String schema) {
-    return VerificationImpl.verify(sqlList0, sqlList1, schema, -1);
+    return VerificationImpl.verify(sqlList0, sqlList1, schema, -1, GlobalConfig.SQLSOLVER_VERIFY_PARALLELISM);
   }
 
   /**
@@ -50,7 +52,68 @@ public interface Verification {
    * @see Verification#verify(List, List, String)
    */
   static List<VerificationResult> verify(List<String> sqlList0, List<String> sqlList1, String schema, long timeout) {
-    return VerificationImpl.verify(sqlList0, sqlList1, schema, timeout);
+    return VerificationImpl.verify(sqlList0, sqlList1, schema, timeout, GlobalConfig.SQLSOLVER_VERIFY_PARALLELISM);
+  }
+
+  /**
+   * Verify pairwise sql equivalence in the sqlList.
+   * It resembles {@link Verification#verify(List, List, String, long)} except that
+   * pairs are verified by {@code parallelism} workers concurrently.
+   * Each pair keeps its own time budget and the results are in the order of the input pairs.
+   *
+   * @param parallelism the number of pairs verified concurrently;
+   *                    non-positive parallelism indicates the number of available processors
+   * @return a list of string indicates that whether two sql are equivalent.
+   *
+   * @see Verification#verify(List, List, String, long)
+   */
+  static List<VerificationResult> verify(List<String> sqlList0, List<String> sqlList1, String schema,
+                                         long timeout, int parallelism) {
+    return VerificationImpl.verify(sqlList0, sqlList1, schema, timeout, parallelism);
+  }
+
+  /**
+   * Parse a schema once so that many verifications can share it.
+   *
+   * @param schema the schema DDL.
+   * @return a handle of the parsed schema, which can be passed to verify methods instead of the DDL.
+   */
+  static SchemaHandle registerSchema(String schema) {
+    return SchemaHandle.register(schema);
+  }
+
+  /**
+   * Verify two sql equivalence against a registered schema.
+   *
+   * @see Verification#verify(String, String, String)
+   * @see Verification#registerSchema(String)
+   */
+  static VerificationResult verify(String sql0, String sql1, SchemaHandle schema) {
+    return VerificationImpl.verify(sql0, sql1, schema);
+  }
+
+  /**
+   * Verify pairwise sql equivalence in the sqlList against a registered schema.
+   *
+   * @see Verification#verify(List, List, String, long, int)
+   * @see Verification#registerSchema(String)
+   */
+  static List<VerificationResult> verify(List<String> sqlList0, List<String> sqlList1, SchemaHandle schema,
+                                         long timeout, int parallelism) {
+    return VerificationImpl.verify(sqlList0, sqlList1, schema, timeout, parallelism);
+  }
+
+  /**
+   * Verify pairwise sql equivalence in the sqlList against a registered schema,
+   * and collect the metrics of verifying each pair, e.g. time spent on each stage.
+   *
+   * @param metrics receives the metrics of each pair, in the order of the input pairs.
+   *
+   * @see Verification#verify(List, List, SchemaHandle, long, int)
+   */
+  static List<VerificationResult> verify(List<String> sqlList0, List<String> sqlList1, SchemaHandle schema,
+                                         long timeout, int parallelism, List<VerificationMetrics> metrics) {
+    return VerificationImpl.verify(sqlList0, sqlList1, schema, timeout, parallelism, metrics);
   }
 
   /**
@@ -5,82 +5,124 @@ import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.tools.Planner;
 import sqlsolver.api.query.QueryPair;
+import sqlsolver.common.config.GlobalConfig;
+import sqlsolver.common.utils.LongMetric;
+import sqlsolver.sql.calcite.CalciteContext;
 import sqlsolver.sql.calcite.CalciteSupport;
+import sqlsolver.sql.calcite.PlannerPool;
 import sqlsolver.sql.preprocess.rewrite.SqlNodePreprocess;
 import sqlsolver.sql.schema.Schema;
 import sqlsolver.superopt.logic.LogicSupport;
+import sqlsolver.superopt.logic.NeqWitness;
 import sqlsolver.superopt.logic.SqlSolver;
+import sqlsolver.superopt.logic.VerificationContext;
+import sqlsolver.superopt.logic.VerificationMetrics;
 import sqlsolver.superopt.logic.VerificationResult;
-import sqlsolver.superopt.uexpr.normalizer.QueryUExprICRewriter;
 import sqlsolver.superopt.util.Timeout;
+import sqlsolver.superopt.util.Z3ContextPool;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static sqlsolver.sql.SqlSupport.parsePreprocess;
+import static sqlsolver.sql.SqlSupport.parsePreprocessKeepNode;
 import static sqlsolver.sql.plan.PlanSupport.isLiteralEq;
 
 final public class VerificationImpl implements Verification {
-
   /**
    * Transform sql string into Query pairs.
+   * The schema and user defined functions of the queries are recorded in {@code calciteContext}.
+   * A new metrics object is added to {@code metrics} for each pair, with the time spent on the pair so far.
+   * If {@code singleParse} is set, preprocessed queries are validated as SqlNodes,
+   * see {@link GlobalConfig#SQLSOLVER_SINGLE_PARSE}.
    */
-  private static List<QueryPair> readPairs(List<String> sqlList, Schema schema) {
-    final CalciteSchema schemaPlus = CalciteSupport.getCalciteSchema(schema);
+  private static List<QueryPair> readPairs(List<String> sqlList, SchemaHandle schema, CalciteContext calciteContext,
+                                           List<VerificationMetrics> metrics, boolean singleParse) {
+    try (final CalciteContext.Scope ignored = calciteContext.enter()) {
+      return readPairs(sqlList, schema.schema(), schema.calciteSchema(), metrics, singleParse);
+    }
+  }
 
+  private static List<QueryPair> readPairs(List<String> sqlList, Schema schema, CalciteSchema schemaPlus,
+                                           List<VerificationMetrics> metrics, boolean singleParse) {
     SqlNodePreprocess.setSchema(schema);
-    CalciteSupport.USER_DEFINED_FUNCTIONS.clear();
     CalciteSupport.addUserDefinedFunctions(sqlList);
 
     final List<QueryPair> pairs = new ArrayList<>(sqlList.size() >> 1);
     for (int i = 0, bound = sqlList.size(); i < bound; i += 2) {
-      final Planner planner0 = CalciteSupport.getPlanner(schemaPlus);
-      final Planner planner1 = CalciteSupport.getPlanner(schemaPlus);
-      String sql0 = sqlList.get(i), sql1 = sqlList.get(i + 1);
-      String originSql0 = sql0, originSql1 = sql1;
-      sql0 = parsePreprocess(sql0, CalciteSupport.getPlanner(schemaPlus));
-      sql1 = parsePreprocess(sql1, CalciteSupport.getPlanner(schemaPlus));
-      // String[] pair = parseCoPreprocess(sql0, sql1);
-      final SqlNode q0 = CalciteSupport.parseAST(sql0, planner0);
-      final SqlNode q1 = CalciteSupport.parseAST(sql1, planner1);
-
-      if (q0 == null) {
-        final int ruleId = (i + 1) + 1 >> 1;
-        if (LogicSupport.dumpLiaFormulas)
-          System.err.printf("Rule id: %d has unsupported query at line %d \n", ruleId, i + 1);
-        pairs.add(QueryPair.mk(i + 1, schema, sql0, sql1, originSql0, originSql1));
-        continue;
-      }
-      if (q1 == null) {
-        final int ruleId = (i + 1) + 1 >> 1;
-        if (LogicSupport.dumpLiaFormulas)
-          System.err.printf("Rule id: %d has unsupported query at line %d \n", ruleId, i + 2);
-        pairs.add(QueryPair.mk(i + 1, schema, sql0, sql1, originSql0, originSql1));
-        continue;
-      }
+      final VerificationMetrics pairMetrics = new VerificationMetrics();
+      metrics.add(pairMetrics);
+      // planners are returned to the pool once the plans of this pair are built
+      try (final LongMetric.Timer ignored = VerificationMetrics.time(pairMetrics.elapsedFrontend);
+           final PlannerPool.Lease planners = PlannerPool.lease(schemaPlus)) {
+        Planner planner0 = planners.newPlanner();
+        Planner planner1 = planners.newPlanner();
+        String sql0 = sqlList.get(i), sql1 = sqlList.get(i + 1);
+        String originSql0 = sql0, originSql1 = sql1;
+        SqlNode q0, q1;
+        if (singleParse) {
+          // validate the preprocessed SqlNodes directly
+          final SqlNodePreprocess.Preprocessed preprocessed0 = parsePreprocessKeepNode(sql0, planner0);
+          final SqlNodePreprocess.Preprocessed preprocessed1 = parsePreprocessKeepNode(sql1, planner1);
+          sql0 = preprocessed0.sql();
+          sql1 = preprocessed1.sql();
+          q0 = preprocessed0.node() == null ? null : CalciteSupport.validateAST(preprocessed0.node(), planner0);
+          q1 = preprocessed1.node() == null ? null : CalciteSupport.validateAST(preprocessed1.node(), planner1);
+          // fall back to parsing the preprocessed SQL
+          if (q0 == null) {
+            planner0 = planners.newPlanner();
+            q0 = CalciteSupport.parseAST(sql0, planner0);
+          }
+          if (q1 == null) {
+            planner1 = planners.newPlanner();
+            q1 = CalciteSupport.parseAST(sql1, planner1);
+          }
+        } else {
+          sql0 = parsePreprocess(sql0, planners.newPlanner());
+          sql1 = parsePreprocess(sql1, planners.newPlanner());
+          // String[] pair = parseCoPreprocess(sql0, sql1);
+          q0 = CalciteSupport.parseAST(sql0, planner0);
+          q1 = CalciteSupport.parseAST(sql1, planner1);
+        }
 
-      // construct plan
-      final RelNode p0 = CalciteSupport.parseRel(q0, planner0);
-      if (p0 == null) {
-        final int ruleId = (i + 1) + 1 >> 1;
-        if (LogicSupport.dumpLiaFormulas)
-          System.err.printf("Rule id: %d has wrong query at line %d \n", ruleId, i + 1);
-        pairs.add(QueryPair.mk(i + 1, schema, sql0, sql1, originSql0, originSql1, q0, q1));
-        continue;
-      }
+        if (q0 == null) {
+          final int ruleId = (i + 1) + 1 >> 1;
+          if (LogicSupport.dumpLiaFormulas)
+            System.err.printf("Rule id: %d has unsupported query at line %d \n", ruleId, i + 1);
+          pairs.add(QueryPair.mk(i + 1, schema, sql0, sql1, originSql0, originSql1));
+          continue;
+        }
+        if (q1 == null) {
+          final int ruleId = (i + 1) + 1 >> 1;
+          if (LogicSupport.dumpLiaFormulas)
+            System.err.printf("Rule id: %d has unsupported query at line %d \n", ruleId, i + 2);
+          pairs.add(QueryPair.mk(i + 1, schema, sql0, sql1, originSql0, originSql1));
+          continue;
+        }
 
+        // construct plan
+        final RelNode p0 = CalciteSupport.parseRel(q0, planner0);
+        if (p0 == null) {
+          final int ruleId = (i + 1) + 1 >> 1;
+          if (LogicSupport.dumpLiaFormulas)
+            System.err.printf("Rule id: %d has wrong query at line %d \n", ruleId, i + 1);
+          pairs.add(QueryPair.mk(i + 1, schema, sql0, sql1, originSql0, originSql1, q0, q1));
+          continue;
+        }
 
-      final RelNode p1 = CalciteSupport.parseRel(q1, planner1);
-      if (p1 == null) {
-        final int ruleId = (i + 1) + 1 >> 1;
-        if (LogicSupport.dumpLiaFormulas)
-          System.err.printf("Rule id: %d has wrong query at line %d \n", ruleId, i + 2);
-        pairs.add(QueryPair.mk(i + 1, schema, sql0, sql1, originSql0, originSql1, q0, q1));
-        continue;
-      }
 
-      pairs.add(QueryPair.mk(i + 1, schema, sql0, sql1, originSql0, originSql1, q0, q1, p0, p1));
+        final RelNode p1 = CalciteSupport.parseRel(q1, planner1);
+        if (p1 == null) {
+          final int ruleId = (i + 1) + 1 >> 1;
+          if (LogicSupport.dumpLiaFormulas)
+            System.err.printf("Rule id: %d has wrong query at line %d \n", ruleId, i + 2);
+          pairs.add(QueryPair.mk(i + 1, schema, sql0, sql1, originSql0, originSql1, q0, q1));
+          continue;
+        }
+
+        pairs.add(QueryPair.mk(i + 1, schema, sql0, sql1, originSql0, originSql1, q0, q1, p0, p1));
+      }
     }
     return pairs;
   }
@@ -107,82 +149,152 @@ final public class VerificationImpl implements Verification {
    * if both sql have the same plans -> EQ.
    * otherwise, use the Lia Star method to verify two sql.
    * Each pair has a time budget {@code timeout} if {@code timeout} is positive;
-   * pairs exceeding this budget return UNKNOWN.
+   * pairs exceeding this budget return TIMEOUT.
+   * Pairs are verified by {@code parallelism} workers concurrently
+   * and the results are returned in the order of the input pairs.
+   * Each pair is verified under its own verification context derived from {@code calciteContext},
+   * which records into the metrics of the pair in {@code metrics}.
    */
-  private static List<VerificationResult> getVerifyResult(List<QueryPair> pairs, String schemaString, long timeout) {
-    final List<VerificationResult> results = new ArrayList<>();
-    final List<Long> times = new ArrayList<>();
-
-    int count = 0;
-    final Timer timer = new Timer(true);
-    for (QueryPair pair : pairs) {
-      System.out.println("Verifying pair " + ++count);
-      if (timeout > 0) {
-        final AtomicReference<VerificationResult> atomicResult = new AtomicReference<>();
-        final Thread worker = new Thread(() -> {
-          final VerificationResult result = getVerifyResult(pair, schemaString);
-          atomicResult.set(result);
-        });
-        final long timeStart = System.currentTimeMillis();
-        worker.start();
-        final AtomicLong timeInterrupt = new AtomicLong();
-        timer.schedule(new TimerTask() {
-          @Override
-          public void run() {
-            worker.interrupt();
-            timeInterrupt.set(System.currentTimeMillis());
-          }
-        }, timeout * 1000);
+  private static List<VerificationResult> getVerifyResult(List<QueryPair> pairs, SchemaHandle schema,
+                                                          CalciteContext calciteContext,
+                                                          List<VerificationMetrics> metrics,
+                                                          long timeout, int parallelism) {
+    final int numWorkers = Math.max(1, Math.min(pairs.size(), normalizeParallelism(parallelism)));
+    final ExecutorService workers = Executors.newFixedThreadPool(numWorkers, VerificationImpl::newDaemonThread);
+    final ScheduledExecutorService alarm = timeout > 0
+            ? Executors.newSingleThreadScheduledExecutor(VerificationImpl::newDaemonThread) : null;
+
+    try {
+      final List<Future<PairOutcome>> outcomes = new ArrayList<>(pairs.size());
+      for (int i = 0, bound = pairs.size(); i < bound; i++) {
+        final QueryPair pair = pairs.get(i);
+        final VerificationMetrics pairMetrics = metrics.get(i);
+        outcomes.add(workers.submit(() -> verifyPair(pair, schema, calciteContext, pairMetrics, timeout, alarm)));
+      }
+
+      final List<VerificationResult> results = new ArrayList<>(pairs.size());
+      int count = 0;
+      for (int i = 0, bound = pairs.size(); i < bound; i++) {
+        System.out.println("Verifying pair " + ++count);
+        VerificationResult result;
+        NeqWitness witness = null;
         try {
-          worker.join();
-          final long timeEnd = System.currentTimeMillis();
-          final long timeVerify = timeEnd - timeStart;
-          times.add(timeVerify);
-          System.out.println("Verification time: " + timeVerify + " ms");
-          final VerificationResult result = atomicResult.get();
-          results.add(result);
-          //if (result == VerificationResult.TIMEOUT)
-          //  System.out.println("Timeout delay: " + (timeEnd - timeInterrupt.get()) + " ms");
-        } catch (InterruptedException e) {
+          final PairOutcome outcome = outcomes.get(i).get();
+          System.out.println("Verification time: " + outcome.time() + " ms");
+          result = outcome.result();
+          witness = outcome.witness();
+        } catch (InterruptedException | ExecutionException e) {
           // should not be interrupted
           System.out.println("Verification is interrupted");
-          results.add(VerificationResult.UNKNOWN);
+          result = VerificationResult.UNKNOWN;
         }
-        System.out.println(pair.pairId() + " " + results.get(count - 1));
-      } else {
-        final long timeStart = System.currentTimeMillis();
-        final VerificationResult result = getVerifyResult(pair, schemaString);
-        final long timeEnd = System.currentTimeMillis();
-        final long timeVerify = timeEnd - timeStart;
-        times.add(timeVerify);
-        System.out.println("Verification time: " + timeVerify + " ms");
         results.add(result);
-        System.out.println(pair.pairId() + " " + result);
+        System.out.println(pairs.get(i).pairId() + " " + result);
+        if (result == VerificationResult.NEQ && witness != null) System.out.println("Witness of NEQ:\n" + witness);
       }
+      final ProofCache cache = ProofCache.shared();
+      if (cache != null) System.out.println(cache.stats());
+      return results;
+    } finally {
+      workers.shutdownNow();
+      if (alarm != null) alarm.shutdownNow();
     }
+  }
 
-    /*System.out.println("===== Time stats (ms) =====");
-    for (long time : times) {
-      System.out.println(time);
-    }*/
+  /**
+   * Verify a single pair on the current worker thread.
+   * The outcome carries the database refuting the pair, if the pair is NEQ by refutation.
+   * If {@code timeout} is positive, the worker is interrupted after {@code timeout} seconds,
+   * which makes the prover stop at its next timeout checkpoint.
+   */
+  private static PairOutcome verifyPair(QueryPair pair, SchemaHandle schema, CalciteContext calciteContext,
+                                        VerificationMetrics metrics, long timeout, ScheduledExecutorService alarm) {
+    final long timeStart = System.currentTimeMillis();
+    final VerificationContext context = new VerificationContext(calciteContext, metrics);
+    if (timeout <= 0) {
+      final VerificationResult result = getVerifyResultSafely(pair, schema, context);
+      return new PairOutcome(result, System.currentTimeMillis() - timeStart, context.witness());
+    }
 
-    return results;
+    final Thread worker = Thread.currentThread();
+    final AtomicBoolean finished = new AtomicBoolean(false);
+    final ScheduledFuture<?> interrupter = alarm.schedule(() -> {
+      // never interrupt the worker once it has moved onto the next pair
+      synchronized (finished) {
+        if (!finished.get()) {
+          worker.interrupt();
+          Z3ContextPool.interrupt(worker);
+        }
+      }
+    }, timeout, TimeUnit.SECONDS);
+    try {
+      final VerificationResult result = getVerifyResultSafely(pair, schema, context);
+      return new PairOutcome(result, System.currentTimeMillis() - timeStart, context.witness());
+    } finally {
+      synchronized (finished) {
+        finished.set(true);
+      }
+      interrupter.cancel(false);
+      // clear the interruption flag so that the worker can be reused
+      Thread.interrupted();
+    }
+  }
+
+  private static VerificationResult getVerifyResultSafely(QueryPair pair, SchemaHandle schema,
+                                                        VerificationContext context) {
+    final ProofCache cache = ProofCache.shared();
+    try (final VerificationContext.Scope ignored = context.enter()) {
+      if (cache == null) return getVerifyResult(pair, schema);
+
+      final String key = ProofCache.keyOf(pair, schema.ddl());
+      final VerificationResult cached = cache.get(key);
+      if (cached != null) return cached;
+      final VerificationResult result = getVerifyResult(pair, schema);
+      cache.put(key, result, context.isRefuted());
+      return result;
+    } catch (Throwable e) {
+      if (LogicSupport.dumpLiaFormulas)
+        e.printStackTrace();
+      return Timeout.isTimeout(e) ? VerificationResult.TIMEOUT : VerificationResult.UNKNOWN;
+    }
+  }
+
+  private static int normalizeParallelism(int parallelism) {
+    return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+  }
+
+  private static Thread newDaemonThread(Runnable runnable) {
+    final Thread thread = new Thread(() -> {
+      try {
+        runnable.run();
+      } finally {
+        // Z3 contexts pooled by this thread are useless once it terminates
+        Z3ContextPool.closeIdle();
+      }
+    });
+    thread.setDaemon(true);
+    return thread;
   }
 
+  /**
+   * Verification result of a pair, the time (in millis) spent on it,
+   * and the database on which its queries differ (if it is found).
+   */
+  private record PairOutcome(VerificationResult result, long time, NeqWitness witness) {}
+
   /**
    * Get verify result of a query pair.
    * if both sql have semantic errors, they both return empty set -> EQ.
    * if both sql have the same plans -> EQ.
    * otherwise, use the Lia Star method to verify two sql.
    */
-  private static VerificationResult getVerifyResult(QueryPair pair, String schemaString) {
+  private static VerificationResult getVerifyResult(QueryPair pair, SchemaHandle schema) {
     SqlSolver.initialize();
-    QueryUExprICRewriter.selectIC(-1);
 
     // Some special cases
     if (pair.getPlan0() == null || pair.getPlan1() == null) {
       // both two plan tree are literal same -> EQ
-      if (isLiteralEq(pair.getSql0(), pair.getSql1(), schemaString)) {
+      if (isLiteralEq(pair.getSql0(), pair.getSql1(), schema.schema())) {
         return VerificationResult.EQ;
       }
       if (pair.getSql0().contains("VALUES") || pair.getSql1().contains("VALUES")) {
@@ -194,7 +306,7 @@ final public class VerificationImpl implements Verification {
     }
 
     // both two plan tree are literal same -> EQ
-    if (isLiteralEq(pair.getSql0(), pair.getSql1(), schemaString)) {
+    if (isLiteralEq(pair.getSql0(), pair.getSql1(), schema.schema())) {
       return VerificationResult.EQ;
     }
     // verify the sql pair
@@ -206,9 +318,24 @@ final public class VerificationImpl implements Verification {
    */
   static VerificationResult verify(String sql0, String sql1, String schemaString) {
     try {
-      final Schema schema = CalciteSupport.getSchema(schemaString);
-      final List<QueryPair> pairs = readPairs(Arrays.asList(sql0, sql1), schema);
-      return getVerifyResult(pairs, schemaString, -1).get(0);
+      return verify(sql0, sql1, SchemaHandle.register(schemaString));
+    } catch (Exception | Error e) {
+      if (LogicSupport.dumpLiaFormulas)
+        e.printStackTrace();
+      return VerificationResult.UNKNOWN;
+    }
+  }
+
+  /**
+   * Verify two sql equivalence against a registered schema.
+   */
+  static VerificationResult verify(String sql0, String sql1, SchemaHandle schema) {
+    try {
+      final CalciteContext calciteContext = new CalciteContext();
+      final List<VerificationMetrics> metrics = new ArrayList<>(1);
+      final List<QueryPair> pairs = readPairs(Arrays.asList(sql0, sql1), schema, calciteContext, metrics,
+          GlobalConfig.SQLSOLVER_SINGLE_PARSE);
+      return getVerifyResult(pairs, schema, calciteContext, metrics, -1, 1).get(0);
     } catch (Exception | Error e) {
       if (LogicSupport.dumpLiaFormulas)
         e.printStackTrace();
@@ -221,9 +348,36 @@ final public class VerificationImpl implements Verification {
    * The two sql to verify are in the same index of both lists.
    * The two sqlList should have same size.
    */
-  static List<VerificationResult> verify(List<String> sqlList0, List<String> sqlList1, String schemaString, long timeout) {
-    final Schema schema = CalciteSupport.getSchema(schemaString);
+  static List<VerificationResult> verify(List<String> sqlList0, List<String> sqlList1, String schemaString,
+                                         long timeout, int parallelism) {
+    return verify(sqlList0, sqlList1, SchemaHandle.register(schemaString), timeout, parallelism);
+  }
 
+  /**
+   * Verify two sqlList equivalence against a registered schema.
+   */
+  static List<VerificationResult> verify(List<String> sqlList0, List<String> sqlList1, SchemaHandle schema,
+                                         long timeout, int parallelism) {
+    return verify(sqlList0, sqlList1, schema, timeout, parallelism, new ArrayList<>(sqlList0.size()));
+  }
+
+  /**
+   * Verify two sqlList equivalence against a registered schema.
+   * The metrics of each pair are added to {@code metrics} in the order of the pairs.
+   */
+  static List<VerificationResult> verify(List<String> sqlList0, List<String> sqlList1, SchemaHandle schema,
+                                         long timeout, int parallelism, List<VerificationMetrics> metrics) {
+    return verify(sqlList0, sqlList1, schema, timeout, parallelism, metrics, GlobalConfig.SQLSOLVER_SINGLE_PARSE);
+  }
+
+  /**
+   * Verify two sqlList equivalence against a registered schema.
+   * The metrics of each pair are added to {@code metrics} in the order of the pairs.
+   * If {@code singleParse} is set, preprocessed queries are validated without being parsed again.
+   */
+  static List<VerificationResult> verify(List<String> sqlList0, List<String> sqlList1, SchemaHandle schema,
+                                         long timeout, int parallelism, List<VerificationMetrics> metrics,
+                                         boolean singleParse) {
     final List<String> mergedSqlList = new ArrayList<>();
     for (int i = 0; i < sqlList0.size() << 1; i++) {
       if (i % 2 == 0) {
@@ -233,8 +387,13 @@ final public class VerificationImpl implements Verification {
       }
     }
 
-    final List<QueryPair> pairs = readPairs(mergedSqlList, schema);
-    return getVerifyResult(pairs, schemaString, timeout);
+    final CalciteContext calciteContext = new CalciteContext();
+    final List<VerificationMetrics> pairMetrics = new ArrayList<>(sqlList0.size());
+    final List<QueryPair> pairs = readPairs(mergedSqlList, schema, calciteContext, pairMetrics, singleParse);
+    final List<VerificationResult> results = getVerifyResult(pairs, schema, calciteContext, pairMetrics,
+            timeout, parallelism);
+    metrics.addAll(pairMetrics);
+    return results;
   }
 
   /**
@@ -243,9 +402,7 @@ final public class VerificationImpl implements Verification {
   static VerificationResult verify(RelNode plan0, RelNode plan1, String schemaString) {
     try {
       final Schema schema = CalciteSupport.getSchema(schemaString);
-      SqlSolver.initialize();
-      QueryUExprICRewriter.selectIC(-1);
-      return LogicSupport.proveEqByLIAStarConcrete(plan0, plan1, schema);
+      return LogicSupport.proveEqByLIAStarConcrete(plan0, plan1, schema, new VerificationContext());
     } catch (Exception | Error e) {
       if (LogicSupport.dumpLiaFormulas)
         e.printStackTrace();
@@ -258,9 +415,7 @@ final public class VerificationImpl implements Verification {
    */
   static VerificationResult verify(RelNode plan0, RelNode plan1, Schema schema) {
     try {
-      SqlSolver.initialize();
-      QueryUExprICRewriter.selectIC(-1);
-      return LogicSupport.proveEqByLIAStarConcrete(plan0, plan1, schema);
+      return LogicSupport.proveEqByLIAStarConcrete(plan0, plan1, schema, new VerificationContext());
     } catch (Exception | Error e) {
       if (LogicSupport.dumpLiaFormulas)
         e.printStackTrace();
@@ -44,4 +44,51 @@ public class VerificationTest {
       assertEquals(result.toString(), "EQ");
     }
   }
+
+  @Test
+  void testConcurrentList() {
+    final List<String> lines1 = new ArrayList<>();
+    final List<String> lines2 = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      lines1.add("SELECT i, j FROM a");
+      lines2.add("SELECT T.COL1, T.COL2 FROM (SELECT i AS COL1, j AS COL2 FROM a) AS T");
+      lines1.add("SELECT p, q FROM d WHERE p IN (10, 20)");
+      lines2.add("SELECT p, q FROM d WHERE p = 10 OR p = 20");
+      lines1.add("SELECT x FROM b");
+      lines2.add("SELECT y FROM b");
+    }
+
+    final List<VerificationResult> sequential = Verification.verify(lines1, lines2, TestHelper.TEST_SCHEMA, -1, 1);
+    final List<VerificationResult> concurrent = Verification.verify(lines1, lines2, TestHelper.TEST_SCHEMA, -1, 4);
+    assertEquals(sequential, concurrent);
+    assertEquals(VerificationResult.EQ, concurrent.get(0));
+    assertEquals(VerificationResult.EQ, concurrent.get(1));
+  }
+
+  @Test
+  void testSingleParse() {
+    final List<String> lines1 = new ArrayList<>();
+    final List<String> lines2 = new ArrayList<>();
+    lines1.add("SELECT i, j FROM a");
+    lines2.add("SELECT T.COL1, T.COL2 FROM (SELECT i AS COL1, j AS COL2 FROM a) AS T");
+    lines1.add("SELECT x, y FROM b");
+    lines2.add("SELECT T.COL1, T.COL2 FROM (SELECT x AS COL1, y AS COL2 FROM b) AS T");
+    lines1.add("SELECT p, q FROM d WHERE p IN (10, 20)");
+    lines2.add("SELECT p, q FROM d WHERE p = 10 OR p = 20");
+    lines1.add("SELECT x FROM b");
+    lines2.add("SELECT y FROM b");
+    // printed as FETCH NEXT by Calcite, which is rewritten in the SQL text only
+    lines1.add("SELECT i FROM a ORDER BY i LIMIT 1");
+    lines2.add("SELECT a.i FROM a ORDER BY a.i LIMIT 1");
+
+    final SchemaHandle schema = SchemaHandle.register(TestHelper.TEST_SCHEMA);
+    final List<VerificationResult> parsedTwice =
+        VerificationImpl.verify(lines1, lines2, schema, -1, 1, new ArrayList<>(), false);
+    final List<VerificationResult> parsedOnce =
+        VerificationImpl.verify(lines1, lines2, schema, -1, 1, new ArrayList<>(), true);
+    assertEquals(parsedTwice, parsedOnce);
+    assertEquals(VerificationResult.EQ, parsedOnce.get(0));
+    assertEquals(VerificationResult.EQ, parsedOnce.get(1));
+    assertEquals(VerificationResult.EQ, parsedOnce.get(2));
+  }
 }
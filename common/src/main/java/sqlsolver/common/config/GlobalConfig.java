@@ -7,6 +7,32 @@ import java.util.Properties;
 public class GlobalConfig {
   /** Z3 timeout used by SQLSolver, in millis. */
   public static final int SQLSOLVER_Z3_TIMEOUT;
+  /** Number of query pairs verified concurrently in batch verification. */
+  public static final int SQLSOLVER_VERIFY_PARALLELISM;
+  /** Number of times a pooled Z3 context is reused before it is closed. */
+  public static final int SQLSOLVER_Z3_CONTEXT_REUSE;
+  /** Max number of results of LIA checks cached by Z3 within a verification; 0 disables the cache. */
+  public static final int SQLSOLVER_Z3_CACHE_SIZE;
+  /** Number of bound var matchings whose LIA* formulas are solved concurrently; 0 solves them one by one. */
+  public static final int SQLSOLVER_LIA_PORTFOLIO;
+  /** Whether LIA formulas of one-by-one solved bound var matchings are checked by one incremental Z3 solver. */
+  public static final boolean SQLSOLVER_LIA_INCREMENTAL;
+  /** Number of IC variants translated and proved concurrently; 0 tries them one by one. */
+  public static final int SQLSOLVER_IC_PARALLELISM;
+  /** Max number of small databases on which plans are run to refute their equivalence; 0 disables refutation. */
+  public static final int SQLSOLVER_REFUTE_INSTANCES;
+  /** Time spent on refuting the equivalence of plans by small databases, in millis. */
+  public static final int SQLSOLVER_REFUTE_TIMEOUT;
+  /** Number of threads exploring sub-plans and rule matches concurrently in the optimizer; 0 optimizes sequentially. */
+  public static final int SQLSOLVER_OPTIMIZER_PARALLELISM;
+  /** Whether verification results are cached on disk. */
+  public static final boolean SQLSOLVER_PROOF_CACHE;
+  /** Max number of verification results kept by the proof cache. */
+  public static final int SQLSOLVER_PROOF_CACHE_SIZE;
+  /** Max number of parsed schemas kept in memory. */
+  public static final int SQLSOLVER_SCHEMA_CACHE_SIZE;
+  /** Whether preprocessed queries are validated as SqlNodes instead of being parsed again from SQL text. */
+  public static final boolean SQLSOLVER_SINGLE_PARSE;
 
   static  {
     Properties properties = new Properties();
@@ -16,5 +42,18 @@ public class GlobalConfig {
       System.err.println("Failed to load the configuration file. SQLSolver will use its defaults.");
     }
     SQLSOLVER_Z3_TIMEOUT = Integer.parseInt(properties.getProperty("sqlsolver.z3.timeout", "10000"));
+    SQLSOLVER_VERIFY_PARALLELISM = Integer.parseInt(properties.getProperty("sqlsolver.verify.parallelism", "1"));
+    SQLSOLVER_Z3_CONTEXT_REUSE = Integer.parseInt(properties.getProperty("sqlsolver.z3.context.reuse", "32"));
+    SQLSOLVER_Z3_CACHE_SIZE = Integer.parseInt(properties.getProperty("sqlsolver.z3.cache.size", "1024"));
+    SQLSOLVER_LIA_PORTFOLIO = Integer.parseInt(properties.getProperty("sqlsolver.lia.portfolio", "0"));
+    SQLSOLVER_LIA_INCREMENTAL = Boolean.parseBoolean(properties.getProperty("sqlsolver.lia.incremental", "false"));
+    SQLSOLVER_IC_PARALLELISM = Integer.parseInt(properties.getProperty("sqlsolver.ic.parallelism", "0"));
+    SQLSOLVER_REFUTE_INSTANCES = Integer.parseInt(properties.getProperty("sqlsolver.refute.instances", "0"));
+    SQLSOLVER_REFUTE_TIMEOUT = Integer.parseInt(properties.getProperty("sqlsolver.refute.timeout", "1000"));
+    SQLSOLVER_OPTIMIZER_PARALLELISM = Integer.parseInt(properties.getProperty("sqlsolver.optimizer.parallelism", "0"));
+    SQLSOLVER_PROOF_CACHE = Boolean.parseBoolean(properties.getProperty("sqlsolver.proof.cache", "false"));
+    SQLSOLVER_PROOF_CACHE_SIZE = Integer.parseInt(properties.getProperty("sqlsolver.proof.cache.size", "100000"));
+    SQLSOLVER_SCHEMA_CACHE_SIZE = Integer.parseInt(properties.getProperty("sqlsolver.schema.cache.size", "32"));
+    SQLSOLVER_SINGLE_PARSE = Boolean.parseBoolean(properties.getProperty("sqlsolver.frontend.single.parse", "true"));
   }
 }
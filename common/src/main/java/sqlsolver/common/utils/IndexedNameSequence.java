@@ -13,4 +13,9 @@ class IndexedNameSequence implements NameSequence {
   public String next() {
     return prefix + nextId++;
   }
+
+  @Override
+  public NameSequence copy() {
+    return new IndexedNameSequence(prefix, nextId);
+  }
 }
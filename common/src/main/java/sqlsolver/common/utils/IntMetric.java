@@ -32,6 +32,10 @@ public class IntMetric implements Metric<Integer, IntMetric> {
     ++value;
   }
 
+  public void add(int increment) {
+    value += increment;
+  }
+
   public boolean incrementIf(boolean b) {
     if (b) ++value;
     return b;
@@ -1,5 +1,7 @@
 package sqlsolver.common.utils;
 
+import java.util.concurrent.TimeUnit;
+
 public class LongMetric implements Metric<Long, LongMetric> {
   private final String name;
   private final long initValue;
@@ -29,7 +31,11 @@ public class LongMetric implements Metric<Long, LongMetric> {
   }
 
   public Timer timeIt() {
-    return new Timer();
+    return new Timer(TimeUnit.MILLISECONDS);
+  }
+
+  public Timer timeIt(TimeUnit unit) {
+    return new Timer(unit);
   }
 
   @Override
@@ -53,11 +59,16 @@ public class LongMetric implements Metric<Long, LongMetric> {
   }
 
   public class Timer implements AutoCloseable {
-    private final long begin = System.currentTimeMillis();
+    private final TimeUnit unit;
+    private final long begin = System.nanoTime();
+
+    private Timer(TimeUnit unit) {
+      this.unit = unit;
+    }
 
     @Override
     public void close() {
-      add(System.currentTimeMillis() - begin);
+      add(unit.convert(System.nanoTime() - begin, TimeUnit.NANOSECONDS));
     }
   }
 }
@@ -5,6 +5,9 @@ import java.util.Set;
 public interface NameSequence {
   String next();
 
+  /** A sequence that continues from the current state of this one, independently of it. */
+  NameSequence copy();
+
   default String nextUnused(Set<String> usedNames) {
     String name = next();
     while (usedNames.contains(name)) name = next();
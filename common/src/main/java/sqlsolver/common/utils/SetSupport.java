@@ -42,11 +42,13 @@ public interface SetSupport {
   }
 
   static <T> boolean intersects(Set<T> s1, Set<T> s2) {
-    return !intersect(s1, s2).isEmpty();
+    if (s1.size() > s2.size()) return intersects(s2, s1);
+    for (T t : s1) if (s2.contains(t)) return true;
+    return false;
   }
 
   static <T> boolean isSubSet(Set<T> s1, Set<T> s2) {
-    return minus(s1, s2).isEmpty();
+    return s2.containsAll(s1);
   }
 
   static <T> Set<T> union(Set<T> s1, Set<T> s2) {
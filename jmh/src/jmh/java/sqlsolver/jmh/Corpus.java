@@ -0,0 +1,77 @@
+package sqlsolver.jmh;
+
+import sqlsolver.common.io.FileUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Test sets bundled in {@code sqlsolver_data}, which are the inputs of benchmarks.
+ * Each test set consists of query pairs on consecutive lines.
+ */
+enum Corpus {
+  CALCITE_TESTS("calcite_tests", "calcite/calcite_tests", "calcite_test"),
+  ALL_TESTS("all_tests", "db_rule_instances/all_tests", "calcite_test"),
+  SPARK_TESTS("spark_tests", "db_rule_instances/spark_tests", "calcite_test"),
+  // one file per database; the schema is named after the file
+  SPIDER_LARGE("spider_large", "spider_large", null);
+
+  private final String name;
+  private final String path;
+  private final String schemaName;
+
+  Corpus(String name, String path, String schemaName) {
+    this.name = name;
+    this.path = path;
+    this.schemaName = schemaName;
+  }
+
+  static Corpus of(String name) {
+    for (Corpus corpus : values()) {
+      if (corpus.name.equals(name)) return corpus;
+    }
+    throw new IllegalArgumentException("unknown corpus: " + name);
+  }
+
+  /**
+   * The first {@code maxPairs} pairs of the corpus, or all of them if {@code maxPairs} is not positive.
+   */
+  List<Case> load(int maxPairs) {
+    final int limit = maxPairs > 0 ? maxPairs : Integer.MAX_VALUE;
+    final List<Case> cases = new ArrayList<>();
+    try {
+      if (schemaName != null) {
+        readCases(FileUtils.dataFile(path), schemaName, limit, cases);
+      } else {
+        try (final Stream<Path> files = Files.list(FileUtils.dataFile(path))) {
+          for (Path file : files.sorted().toList()) {
+            if (cases.size() >= limit) break;
+            // rules.<schema>.sql.txt
+            final String fileName = file.getFileName().toString();
+            readCases(file, fileName.substring("rules.".length(), fileName.length() - ".sql.txt".length()),
+                    limit, cases);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return cases;
+  }
+
+  private static void readCases(Path file, String schemaName, int limit, List<Case> cases) throws IOException {
+    final String schema = Files.readString(FileUtils.dataFile("schemas", schemaName + ".base.schema.sql"));
+    final List<String> lines = Files.readAllLines(file);
+    for (int i = 0; i + 1 < lines.size() && cases.size() < limit; i += 2) {
+      cases.add(new Case(schemaName + "#" + (i / 2 + 1), schema, lines.get(i), lines.get(i + 1)));
+    }
+  }
+
+  /** A query pair and the DDL of its schema. */
+  record Case(String id, String schema, String sql0, String sql1) {}
+}
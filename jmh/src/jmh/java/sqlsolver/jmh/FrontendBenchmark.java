@@ -0,0 +1,44 @@
+package sqlsolver.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sqlsolver.sql.calcite.CalciteContext;
+import sqlsolver.sql.calcite.PlannerPool;
+
+import java.util.concurrent.TimeUnit;
+
+import static sqlsolver.sql.SqlSupport.parsePreprocess;
+
+/**
+ * Benchmarks of the Calcite front end. Each operation goes through all pairs of the corpus.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrontendBenchmark {
+  /** Preprocess the original SQL of pairs. */
+  @Benchmark
+  public void preprocess(PipelineState state, Blackhole bh) {
+    for (PipelineState.Input input : state.inputs) {
+      try (final CalciteContext.Scope ignored = input.calciteContext.enter();
+           final PlannerPool.Lease planners = PlannerPool.lease(input.calciteSchema)) {
+        bh.consume(parsePreprocess(input.source.sql0(), planners.newPlanner()));
+        bh.consume(parsePreprocess(input.source.sql1(), planners.newPlanner()));
+      }
+    }
+  }
+
+  /** Parse and validate the preprocessed SQL of pairs, and convert them into plans. */
+  @Benchmark
+  public void parseAndValidate(PipelineState state, Blackhole bh) {
+    for (PipelineState.Input input : state.preprocessed) {
+      try (final CalciteContext.Scope ignored = input.calciteContext.enter();
+           final PlannerPool.Lease planners = PlannerPool.lease(input.calciteSchema)) {
+        bh.consume(PipelineState.Input.parseRel(input.sql0, planners.newPlanner()));
+        bh.consume(PipelineState.Input.parseRel(input.sql1, planners.newPlanner()));
+      }
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package sqlsolver.jmh;
+
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.tools.Planner;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.*;
+import sqlsolver.sql.calcite.CalciteContext;
+import sqlsolver.sql.calcite.CalciteSupport;
+import sqlsolver.sql.calcite.PlannerPool;
+import sqlsolver.sql.preprocess.rewrite.SqlNodePreprocess;
+import sqlsolver.sql.schema.Schema;
+import sqlsolver.superopt.liastar.LiaStar;
+import sqlsolver.superopt.liastar.translator.BVM;
+import sqlsolver.superopt.liastar.translator.HeuristicBvmEnumerator;
+import sqlsolver.superopt.liastar.translator.LiaStarTranslator;
+import sqlsolver.superopt.logic.SetSolver;
+import sqlsolver.superopt.logic.SqlSolver;
+import sqlsolver.superopt.logic.VerificationContext;
+import sqlsolver.superopt.uexpr.UExprConcreteTranslationResult;
+import sqlsolver.superopt.uexpr.UExprSupport;
+import sqlsolver.superopt.uexpr.UTerm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static sqlsolver.sql.SqlSupport.parsePreprocess;
+
+/**
+ * Inputs of every stage of the verification pipeline, prepared once per trial
+ * by running the stages before it on a corpus.
+ * <p/>
+ * A pair only reaches the stages that its earlier stages succeed on,
+ * so the later a stage is, the fewer pairs it is measured on.
+ */
+@State(Scope.Benchmark)
+public class PipelineState {
+  @Param({"calcite_tests", "all_tests", "spark_tests", "spider_large"})
+  public String corpus;
+
+  /** Max number of pairs taken from the corpus; non-positive means all pairs. */
+  @Param("50")
+  public int maxPairs;
+
+  /** Pairs that are read from the corpus. */
+  List<Input> inputs;
+  /** Pairs that are preprocessed. */
+  List<Input> preprocessed;
+  /** Pairs that have plans. */
+  List<Input> planned;
+  /** Pairs that are translated into U-expressions (and accepted by the set solver). */
+  List<Input> translated;
+  /** Pairs whose LIA* formulas (of the first bound var matching) are translated. */
+  List<Input> formulated;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    inputs = new ArrayList<>();
+    for (Corpus.Case c : Corpus.of(corpus).load(maxPairs)) {
+      try {
+        inputs.add(new Input(c));
+      } catch (RuntimeException e) {
+        // the schema is not supported
+      }
+    }
+    preprocessed = new ArrayList<>();
+    planned = new ArrayList<>();
+    translated = new ArrayList<>();
+    formulated = new ArrayList<>();
+    for (Input input : inputs) {
+      // any failure excludes the pair from the later stages
+      try {
+        if (!input.preprocess()) continue;
+        preprocessed.add(input);
+        if (!input.plan()) continue;
+        planned.add(input);
+        if (!input.translate()) continue;
+        translated.add(input);
+        if (!input.formulate()) continue;
+        formulated.add(input);
+      } catch (Throwable e) {
+        // unsupported query or timeout
+      }
+    }
+    System.out.printf("%n%s: %d pairs, %d preprocessed, %d planned, %d translated, %d formulated%n",
+            corpus, inputs.size(), preprocessed.size(), planned.size(), translated.size(), formulated.size());
+  }
+
+  /** A pair and the results of the stages that it has gone through. */
+  static class Input {
+    final Corpus.Case source;
+    final Schema schema;
+    final CalciteSchema calciteSchema;
+    final CalciteContext calciteContext;
+    String sql0, sql1;
+    RelNode plan0, plan1;
+    UExprConcreteTranslationResult uExprs;
+    UTerm query0, query1;
+    LiaStar formula;
+
+    private Input(Corpus.Case source) {
+      this.source = source;
+      // schemas are cached, so pairs of the same schema share them
+      this.schema = CalciteSupport.getSchema(source.schema());
+      this.calciteSchema = CalciteSupport.getCalciteSchema(schema);
+      this.calciteContext = new CalciteContext();
+      try (final CalciteContext.Scope ignored = calciteContext.enter()) {
+        SqlNodePreprocess.setSchema(schema);
+        CalciteSupport.addUserDefinedFunctions(List.of(source.sql0(), source.sql1()));
+      }
+    }
+
+    VerificationContext newVerificationContext() {
+      return new VerificationContext(calciteContext);
+    }
+
+    private boolean preprocess() {
+      try (final CalciteContext.Scope ignored = calciteContext.enter();
+           final PlannerPool.Lease planners = PlannerPool.lease(calciteSchema)) {
+        sql0 = parsePreprocess(source.sql0(), planners.newPlanner());
+        sql1 = parsePreprocess(source.sql1(), planners.newPlanner());
+      }
+      return sql0 != null && sql1 != null;
+    }
+
+    private boolean plan() {
+      try (final CalciteContext.Scope ignored = calciteContext.enter();
+           final PlannerPool.Lease planners = PlannerPool.lease(calciteSchema)) {
+        plan0 = parseRel(sql0, planners.newPlanner());
+        plan1 = parseRel(sql1, planners.newPlanner());
+      }
+      return plan0 != null && plan1 != null;
+    }
+
+    private boolean translate() {
+      try (final VerificationContext.Scope ignored = newVerificationContext().enter()) {
+        SqlSolver.initialize();
+        uExprs = UExprSupport.translateQueryToUExpr(plan0, plan1, schema, 0);
+        if (uExprs == null) return false;
+        final Pair<UTerm, UTerm> queries = new SqlSolver(uExprs, schema).preprocessedQueries();
+        query0 = queries.getLeft();
+        query1 = queries.getRight();
+        // pairs that the set solver fails on would abort the benchmark
+        new SetSolver(query0, query1, uExprs.getTupleVarSchemas(), schema).proveEq();
+      }
+      return true;
+    }
+
+    private boolean formulate() {
+      if (!uExprs.sourceOutVar().equals(uExprs.targetOutVar())) return false;
+      try (final VerificationContext.Scope ignored = newVerificationContext().enter()) {
+        SqlSolver.initialize();
+        formula = translateLiaStar();
+      }
+      return formula != null;
+    }
+
+    /** The LIA* formula of the first bound var matching. */
+    LiaStar translateLiaStar() {
+      final BVM bvm = new HeuristicBvmEnumerator(query0, query1, uExprs.sourceOutVar()).next();
+      if (bvm == null) return null;
+      return new LiaStarTranslator(uExprs.getTupleVarSchemas(), query0, query1, uExprs.sourceOutVar())
+              .uexpPairToLiastar(bvm);
+    }
+
+    static RelNode parseRel(String sql, Planner planner) {
+      final SqlNode ast = CalciteSupport.parseAST(sql, planner);
+      return ast == null ? null : CalciteSupport.parseRel(ast, planner);
+    }
+  }
+}
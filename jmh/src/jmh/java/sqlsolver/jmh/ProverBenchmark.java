@@ -0,0 +1,90 @@
+package sqlsolver.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sqlsolver.superopt.liastar.LiaSolver;
+import sqlsolver.superopt.logic.SetSolver;
+import sqlsolver.superopt.logic.SqlSolver;
+import sqlsolver.superopt.logic.VerificationContext;
+import sqlsolver.superopt.uexpr.UExprSupport;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the prover, from U-expression translation to LIA* solving.
+ * Each operation goes through all pairs of the corpus that reach the stage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ProverBenchmark {
+  private static final Properties[] LIA_SOLVER_CONFIGS;
+
+  static {
+    // the same configs as SqlSolver
+    LIA_SOLVER_CONFIGS = new Properties[2];
+    LIA_SOLVER_CONFIGS[0] = new Properties();
+    LIA_SOLVER_CONFIGS[0].setProperty(LiaSolver.CONFIG_KEY_PARAM_REMOVAL_MODE, LiaSolver.CONFIG_VALUE_PARAM_REMOVAL_MODE_INWARD);
+    LIA_SOLVER_CONFIGS[1] = new Properties();
+    LIA_SOLVER_CONFIGS[1].setProperty(LiaSolver.CONFIG_KEY_PARAM_REMOVAL_MODE, LiaSolver.CONFIG_VALUE_PARAM_REMOVAL_MODE_OUTWARD);
+  }
+
+  /** Translate plans into normalized U-expressions. */
+  @Benchmark
+  public void translateQueryToUExpr(PipelineState state, Blackhole bh) {
+    for (PipelineState.Input input : state.planned) {
+      try (final VerificationContext.Scope ignored = input.newVerificationContext().enter()) {
+        SqlSolver.initialize();
+        bh.consume(UExprSupport.translateQueryToUExpr(input.plan0, input.plan1, input.schema, 0));
+      }
+    }
+  }
+
+  /** Normalize translated U-expressions again by QueryUExprNormalizer. */
+  @Benchmark
+  public void normalizeTerm(PipelineState state, Blackhole bh) {
+    for (PipelineState.Input input : state.translated) {
+      try (final VerificationContext.Scope ignored = input.newVerificationContext().enter()) {
+        bh.consume(UExprSupport.renormalizeQuery(input.uExprs, input.schema, false));
+        bh.consume(UExprSupport.renormalizeQuery(input.uExprs, input.schema, true));
+      }
+    }
+  }
+
+  /** Prove U-expressions under set semantics. */
+  @Benchmark
+  public void setSolver(PipelineState state, Blackhole bh) {
+    for (PipelineState.Input input : state.translated) {
+      try (final VerificationContext.Scope ignored = input.newVerificationContext().enter()) {
+        bh.consume(new SetSolver(input.query0, input.query1, input.uExprs.getTupleVarSchemas(), input.schema)
+                .proveEq());
+      }
+    }
+  }
+
+  /** Translate U-expressions into the LIA* formula of the first bound var matching. */
+  @Benchmark
+  public void liaStarTranslation(PipelineState state, Blackhole bh) {
+    for (PipelineState.Input input : state.formulated) {
+      try (final VerificationContext.Scope ignored = input.newVerificationContext().enter()) {
+        SqlSolver.initialize();
+        bh.consume(input.translateLiaStar());
+      }
+    }
+  }
+
+  /** Solve LIA* formulas under all parameter removal modes. */
+  @Benchmark
+  public void liaSolve(PipelineState state, Blackhole bh) {
+    for (PipelineState.Input input : state.formulated) {
+      try (final VerificationContext.Scope ignored = input.newVerificationContext().enter()) {
+        for (Properties config : LIA_SOLVER_CONFIGS) {
+          bh.consume(new LiaSolver(config, input.formula).solve());
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package sqlsolver.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import sqlsolver.common.io.FileUtils;
+import sqlsolver.superopt.substitution.SubstitutionBank;
+import sqlsolver.superopt.substitution.SubstitutionSupport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of loading the bundled rule bank, from text and from the binary format.
+ * Each operation is a single load measured without warmup, as a process loads the bank once.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 5)
+@Fork(5)
+public class RuleBankBenchmark {
+  @State(Scope.Benchmark)
+  public static class Banks {
+    Path textBank;
+    Path binaryBank;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      textBank = FileUtils.dataFile("prepared", "rules.txt");
+      binaryBank = Files.createTempFile("rules", ".bin");
+      SubstitutionSupport.convertBank(textBank, binaryBank);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      Files.deleteIfExists(binaryBank);
+    }
+  }
+
+  /** Load the bank from text, which parses every rule. */
+  @Benchmark
+  public SubstitutionBank loadText(Banks banks) throws IOException {
+    return SubstitutionSupport.loadBank(banks.textBank);
+  }
+
+  /** Load the bank from the binary format, which parses rules on first use. */
+  @Benchmark
+  public SubstitutionBank loadBinary(Banks banks) throws IOException {
+    return SubstitutionSupport.loadBank(banks.binaryBank);
+  }
+}
@@ -58,6 +58,21 @@ public abstract class SqlSupport {
     return sql;
   }
 
+  /**
+   * Rewrite origin SQL like {@link #parsePreprocess(String, Planner)},
+   * and also keep the rewritten Calcite SqlNode,
+   * which {@code planner} can validate without parsing the rewritten SQL again.
+   *
+   * @param sql original SQL
+   * @return rewritten SQL and its SqlNode (null if the SQL cannot be parsed)
+   */
+  public static SqlNodePreprocess.Preprocessed parsePreprocessKeepNode(String sql, Planner planner) {
+    if (!sql.toUpperCase().contains("_DOLLAR_") && !sql.toUpperCase().contains("VALUES"))
+      sql = sql.replace("$", "_DOLLAR_");
+    sql = SqlHandler.handleAll(sql);
+    return SqlNodePreprocess.preprocessAllKeepNode(sql, planner);
+  }
+
   public static String[] parseCoPreprocess(String str0, String str1) {
     return SqlNodeCoPreprocess.coPreprocessAll(str0, str1);
   }
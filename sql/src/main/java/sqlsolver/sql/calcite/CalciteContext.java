@@ -0,0 +1,90 @@
+package sqlsolver.sql.calcite;
+
+import org.apache.calcite.sql.SqlOperator;
+import sqlsolver.common.utils.NameSequence;
+import sqlsolver.sql.schema.Schema;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static sqlsolver.sql.calcite.CalciteSupport.TEMP_COL_PREFIX;
+import static sqlsolver.sql.calcite.CalciteSupport.TEMP_TABLE_PREFIX;
+
+/**
+ * Mutable state of the Calcite front end, shared by the queries verified together.
+ * It holds the schema used by preprocessing, user defined functions,
+ * the sequence of value IDs and the names of temporary tables/columns.
+ * <p/>
+ * Each thread works on its current context, which is a context of its own
+ * unless another context is entered via {@link #enter()}.
+ * Entering the same context from several threads is allowed.
+ */
+public class CalciteContext {
+  private static final ThreadLocal<CalciteContext> CURRENT = ThreadLocal.withInitial(CalciteContext::new);
+
+  private final Set<SqlOperator> userDefinedFunctions;
+  private final AtomicInteger nextValueId;
+  private final NameSequence tempTableNameSequence;
+  private final NameSequence tempColNameSequence;
+  private volatile Schema schema;
+  private volatile boolean semiAntiJoinRewriteEnabled;
+
+  public CalciteContext() {
+    this.userDefinedFunctions = ConcurrentHashMap.newKeySet();
+    this.nextValueId = new AtomicInteger(0);
+    this.tempTableNameSequence = NameSequence.mkIndexed(TEMP_TABLE_PREFIX, 0);
+    this.tempColNameSequence = NameSequence.mkIndexed(TEMP_COL_PREFIX, 0);
+  }
+
+  public static CalciteContext current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Make this context the current context of this thread until the returned scope is closed.
+   */
+  public Scope enter() {
+    final CalciteContext previous = CURRENT.get();
+    CURRENT.set(this);
+    return () -> CURRENT.set(previous);
+  }
+
+  public Schema schema() {
+    return schema;
+  }
+
+  public void setSchema(Schema schema) {
+    this.schema = schema;
+  }
+
+  /** User defined functions, which are added to the operator table of planners. */
+  public Set<SqlOperator> userDefinedFunctions() {
+    return userDefinedFunctions;
+  }
+
+  public int nextValueId() {
+    return nextValueId.incrementAndGet();
+  }
+
+  public synchronized String nextTempTableName() {
+    return tempTableNameSequence.next();
+  }
+
+  public synchronized String nextTempColName() {
+    return tempColNameSequence.next();
+  }
+
+  public boolean isSemiAntiJoinRewriteEnabled() {
+    return semiAntiJoinRewriteEnabled;
+  }
+
+  public void setSemiAntiJoinRewriteEnabled(boolean enabled) {
+    this.semiAntiJoinRewriteEnabled = enabled;
+  }
+
+  public interface Scope extends AutoCloseable {
+    @Override
+    void close();
+  }
+}
@@ -24,7 +24,6 @@ import org.apache.calcite.sql.validate.SqlValidator;
 import org.apache.calcite.tools.*;
 import sqlsolver.common.utils.IterableSupport;
 import sqlsolver.common.utils.ListSupport;
-import sqlsolver.common.utils.NameSequence;
 import sqlsolver.sql.ast.constants.ConstraintKind;
 import sqlsolver.sql.plan.Value;
 import sqlsolver.sql.plan.ValueImpl;
@@ -52,38 +51,26 @@ public abstract class CalciteSupport {
    */
   public static final JavaTypeFactory JAVA_TYPE_FACTORY = new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
 
-  /** Constant of user defined functions. */
-  public static final Set<SqlOperator> USER_DEFINED_FUNCTIONS = new HashSet<>();
-
   /**
    * Constant of temporary table's name prefix.
    */
   public static final String TEMP_TABLE_PREFIX = "TEMP_";
 
-  /**
-   * Constant of temporary table's name sequence.
-   */
-  public static final NameSequence TEMP_TABLE_NAME_SEQUENCE = NameSequence.mkIndexed(TEMP_TABLE_PREFIX, 0);
-
   /**
    * Constant of temporary column's name prefix.
    */
   public static final String TEMP_COL_PREFIX = "temp_";
 
   /**
-   * Constant of temporary column's name sequence.
+   * Default database type for schema.
    */
-  public static final NameSequence TEMP_COL_NAME_SEQUENCE = NameSequence.mkIndexed(TEMP_COL_PREFIX, 0);
+  private static final String DB_TYPE = MySQL;
 
   /**
-   * Used for value ID.
+   * Cache of parsed schemas, keyed by their DDL.
+   * Schemas returned by {@link #getSchema(String)} are shared; do not modify them.
    */
-  private static int nextId = 0;
-
-  /**
-   * Default database type for schema.
-   */
-  private static final String DB_TYPE = MySQL;
+  private static final SchemaCache SCHEMA_CACHE = SchemaCache.mkDefault();
 
   /*
    * Support info
@@ -108,10 +95,10 @@ public abstract class CalciteSupport {
 
   /**
    * Given a string of schema.
-   * Return the Schema object.
+   * Return the Schema object, which is shared by callers with the same string.
    */
   public static Schema getSchema(String content) {
-    return SchemaSupport.parseSchema(DB_TYPE, content);
+    return SCHEMA_CACHE.schemaOf(content, CalciteSupport::parseSchema);
   }
 
   /**
@@ -119,7 +106,7 @@ public abstract class CalciteSupport {
    * Return the Calcite Schema object.
    */
   public static CalciteSchema getCalciteSchema(String content) {
-    return getCalciteSchema(getSchema(content));
+    return SCHEMA_CACHE.calciteSchemaOf(content, CalciteSupport::parseSchema, CalciteSupport::mkCalciteSchema);
   }
 
   /**
@@ -127,6 +114,14 @@ public abstract class CalciteSupport {
    * Return the Calcite Schema object.
    */
   public static CalciteSchema getCalciteSchema(Schema schema) {
+    return SCHEMA_CACHE.calciteSchemaOf(schema, CalciteSupport::mkCalciteSchema);
+  }
+
+  private static Schema parseSchema(String content) {
+    return SchemaSupport.parseSchema(DB_TYPE, content);
+  }
+
+  private static CalciteSchema mkCalciteSchema(Schema schema) {
     CalciteSchema calciteSchema = CalciteSchema.createRootSchema(false, false);
 
     for (Table table : schema.tables()) {
@@ -155,7 +150,7 @@ public abstract class CalciteSupport {
     final List<String> colNames = table.getRowType().getFieldNames();
     final List<Value> values = new ArrayList<>();
     for (String colName : colNames) {
-      final int id = ++nextId;
+      final int id = CalciteContext.current().nextValueId();
       final Value value = Value.mk(id, tableName, colName);
       // NOT NULL from table IC
       if (schema != null && tableName != null) {
@@ -206,7 +201,7 @@ public abstract class CalciteSupport {
         result.add(originList.get(inputRef.getIndex()));
       } else {
         // name the other case for "${index}", e.g. $1
-        int id = ++nextId;
+        int id = CalciteContext.current().nextValueId();
         final Value value = Value.mk(id, null, indexToColumnName(curIndex), index.getType().getSqlTypeName().getName(), isNotNullExpr(index, originList));
         result.add(value);
       }
@@ -259,7 +254,7 @@ public abstract class CalciteSupport {
     final List<Value> result = new ArrayList<>();
     for (int i = 0; i < size; i++) {
       // name the case for "${i}", e.g. $1
-      final int id = ++nextId;
+      final int id = CalciteContext.current().nextValueId();
       final Value value = new ValueImpl(id, null, indexToColumnName(i));
       result.add(value);
     }
@@ -272,7 +267,7 @@ public abstract class CalciteSupport {
    */
   public static Value getValueByIndex(int index) {
     // name the case for "${i}", e.g. $1
-    return new ValueImpl(++nextId, null, indexToColumnName(index));
+    return new ValueImpl(CalciteContext.current().nextValueId(), null, indexToColumnName(index));
   }
 
   /**
@@ -284,7 +279,7 @@ public abstract class CalciteSupport {
     final List<Value> result = new ArrayList<>();
     for (Integer index : indexes) {
       // name the case for "${i}", e.g. $1
-      final int id = ++nextId;
+      final int id = CalciteContext.current().nextValueId();
       final Value refValue = schema.get(index);
       final Value value = new ValueImpl(id, null, indexToColumnName(index), refValue.type(), refValue.isNotNull());
       result.add(value);
@@ -308,7 +303,7 @@ public abstract class CalciteSupport {
         result.add(originList.get(index));
       } else {
         // name the case for "${i}", e.g. $1
-        final int id = ++nextId;
+        final int id = CalciteContext.current().nextValueId();
         final AggregateCall aggCall = aggCallList.get(i - groupSize);
         final SqlKind aggFunc = aggCall.getAggregation().getKind();
         final List<Integer> argList = aggCall.getArgList();
@@ -438,19 +433,11 @@ public abstract class CalciteSupport {
 
   /**
    * Get calcite planner.
+   * Its config is prebuilt and shared with other planners of the same schema and UDFs.
+   * Use {@link PlannerPool#lease(CalciteSchema)} instead to reuse planners.
    */
   public static Planner getPlanner(CalciteSchema schema) {
-    // parser config
-    Frameworks.ConfigBuilder builder = Frameworks.newConfigBuilder()
-            .defaultSchema(schema.plus())
-            .parserConfig(SqlParser.config().withCaseSensitive(false).withParserFactory(SqlBabelParserImpl.FACTORY))
-            .operatorTable(SqlOperatorTables.chain(SqlLibraryOperatorTableFactory.INSTANCE.getOperatorTable(SqlLibrary.BIG_QUERY,
-                    SqlLibrary.SPARK,
-                    SqlLibrary.MYSQL,
-                    SqlLibrary.STANDARD), SqlOperatorTables.of(USER_DEFINED_FUNCTIONS)))
-            .sqlValidatorConfig(SqlValidator.Config.DEFAULT.withTypeCoercionEnabled(true));
-    FrameworkConfig config = builder.build();
-    return Frameworks.getPlanner(config);
+    return PlannerPool.newPlanner(schema);
   }
 
   /**
@@ -460,7 +447,7 @@ public abstract class CalciteSupport {
     // parser config
     Frameworks.ConfigBuilder builder = Frameworks.newConfigBuilder()
             .parserConfig(SqlParser.config().withCaseSensitive(false).withParserFactory(SqlBabelParserImpl.FACTORY))
-            .operatorTable(SqlOperatorTables.chain(getCalciteOperators(), SqlOperatorTables.of(USER_DEFINED_FUNCTIONS)))
+            .operatorTable(SqlOperatorTables.chain(getCalciteOperators(), SqlOperatorTables.of(CalciteContext.current().userDefinedFunctions())))
             .sqlValidatorConfig(SqlValidator.Config.DEFAULT.withTypeCoercionEnabled(true));
     FrameworkConfig config = builder.build();
     return Frameworks.getPlanner(config);
@@ -483,6 +470,17 @@ public abstract class CalciteSupport {
     }
   }
 
+  /**
+   * Get calcite AST by validating a SqlNode, which should be obtained via parsing by {@code planner}.
+   */
+  public static SqlNode validateAST(SqlNode sqlNode, Planner planner) {
+    try {
+      return planner.validate(sqlNode);
+    } catch (ValidationException | RuntimeException e) {
+      return null;
+    }
+  }
+
   /**
    * Whether an operator is aggregation operator
    */
@@ -541,7 +539,7 @@ public abstract class CalciteSupport {
             null,
             OperandTypes.family(Collections.nCopies(argumentNum, SqlTypeFamily.ANY)),
             SqlFunctionCategory.USER_DEFINED_FUNCTION);
-    USER_DEFINED_FUNCTIONS.add(custom_function);
+    CalciteContext.current().userDefinedFunctions().add(custom_function);
   }
 
   /**
@@ -841,11 +839,11 @@ public abstract class CalciteSupport {
    */
   public static String[] getNewTempTableAndProjString(int columnSize, List<RelDataTypeField> types) {
     final List<String> columns = new ArrayList<>();
-    final String tableName = TEMP_TABLE_NAME_SEQUENCE.next();
+    final String tableName = CalciteContext.current().nextTempTableName();
     String[] result = new String[2];
 
     for (int i = 0; i < columnSize; i++) {
-      columns.add(TEMP_COL_NAME_SEQUENCE.next());
+      columns.add(CalciteContext.current().nextTempColName());
     }
 
     result[0] = "CREATE TABLE " + tableName + " (";
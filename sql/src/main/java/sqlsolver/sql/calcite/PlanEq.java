@@ -11,8 +11,11 @@ public class PlanEq {
 
   private PlanContext sqlPlan0, sqlPlan1;
   public PlanEq(String sql0, String sql1, String schema) {
+    this(sql0, sql1, parseSchemaMuted(schema));
+  }
+
+  public PlanEq(String sql0, String sql1, Schema wetuneSchema) {
     SqlSupport.muteParsingError();
-    final Schema wetuneSchema = SchemaSupport.parseSchema(DbSupport.MySQL, schema);
     final SqlNode sqlAst0 = SqlSupport.parseSql(DbSupport.MySQL, sql0);
     if (sqlAst0 != null) {
       sqlPlan0 = PlanSupport.assemblePlan(sqlAst0, wetuneSchema);
@@ -28,6 +31,15 @@ public class PlanEq {
     SqlSupport.unMuteParsingError();
   }
 
+  private static Schema parseSchemaMuted(String schema) {
+    SqlSupport.muteParsingError();
+    try {
+      return SchemaSupport.parseSchema(DbSupport.MySQL, schema);
+    } finally {
+      SqlSupport.unMuteParsingError();
+    }
+  }
+
   public boolean isEqTree() {
     if (sqlPlan0 == null || sqlPlan1 == null) return false;
     return PlanSupport.isLiteralEq(sqlPlan0, sqlPlan1);
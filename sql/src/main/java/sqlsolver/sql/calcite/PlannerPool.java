@@ -0,0 +1,176 @@
+package sqlsolver.sql.calcite;
+
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.sql.SqlOperator;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.parser.babel.SqlBabelParserImpl;
+import org.apache.calcite.sql.util.SqlOperatorTables;
+import org.apache.calcite.sql.validate.SqlValidator;
+import org.apache.calcite.tools.FrameworkConfig;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.Planner;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of Calcite planners, keyed by the Calcite schema and the user defined functions
+ * of the current {@link CalciteContext}.
+ * <p/>
+ * Each key has a prebuilt {@link FrameworkConfig} (including the chained operator table),
+ * and planners returned to the pool are closed and reset, so that they can parse a new query.
+ * Plans built by a planner stay valid after the planner is reused,
+ * since a planner makes a new cluster whenever it starts over.
+ * The pool is safe for use from multiple threads, but a borrowed planner is not.
+ * <pre>
+ * try (final PlannerPool.Lease planners = PlannerPool.lease(schema)) {
+ *   final Planner planner = planners.newPlanner();
+ *   ...
+ * }
+ * </pre>
+ */
+public class PlannerPool {
+  private static final int MAX_KEYS = 16;
+  private static final int MAX_IDLE_PLANNERS = 16;
+
+  private static final LinkedHashMap<Key, Slot> SLOTS = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Slot> eldest) {
+      return size() > MAX_KEYS;
+    }
+  };
+  private static final AtomicLong NUM_CREATED = new AtomicLong(0);
+  private static final AtomicLong NUM_REUSED = new AtomicLong(0);
+  private static final AtomicLong CREATION_NANOS = new AtomicLong(0);
+
+  private PlannerPool() {}
+
+  /** Borrow planners of a schema, which are returned to the pool when the lease is closed. */
+  public static Lease lease(CalciteSchema schema) {
+    return new Lease(slotOf(schema));
+  }
+
+  /** A new planner of a schema, whose config is shared with the pooled planners. */
+  static Planner newPlanner(CalciteSchema schema) {
+    return slotOf(schema).create();
+  }
+
+  /** Number of planners created by the pool. */
+  public static long numCreated() {
+    return NUM_CREATED.get();
+  }
+
+  /** Number of times a planner is reused instead of being created. */
+  public static long numReused() {
+    return NUM_REUSED.get();
+  }
+
+  /** Total time (in nanos) spent on creating planners and their configs. */
+  public static long creationNanos() {
+    return CREATION_NANOS.get();
+  }
+
+  /** The estimated time (in millis) saved by reusing planners. */
+  public static double savedMillis() {
+    final long created = NUM_CREATED.get();
+    if (created == 0) return 0;
+    return (double) CREATION_NANOS.get() / created * NUM_REUSED.get() / 1e6;
+  }
+
+  public static String stats() {
+    return "Calcite planners: created %d (%.1f ms), reused %d (saved %.1f ms)"
+            .formatted(numCreated(), creationNanos() / 1e6, numReused(), savedMillis());
+  }
+
+  private static Slot slotOf(CalciteSchema schema) {
+    final Set<SqlOperator> udfs = Collections.newSetFromMap(new IdentityHashMap<>());
+    udfs.addAll(CalciteContext.current().userDefinedFunctions());
+    final Key key = new Key(schema, udfs);
+    synchronized (SLOTS) {
+      final Slot slot = SLOTS.get(key);
+      if (slot != null) return slot;
+    }
+    final long begin = System.nanoTime();
+    final Slot created = new Slot(mkConfig(key));
+    CREATION_NANOS.addAndGet(System.nanoTime() - begin);
+    synchronized (SLOTS) {
+      return SLOTS.computeIfAbsent(key, k -> created);
+    }
+  }
+
+  private static FrameworkConfig mkConfig(Key key) {
+    return Frameworks.newConfigBuilder()
+            .defaultSchema(key.schema().plus())
+            .parserConfig(SqlParser.config().withCaseSensitive(false).withParserFactory(SqlBabelParserImpl.FACTORY))
+            .operatorTable(SqlOperatorTables.chain(CalciteSupport.getCalciteOperators(),
+                    SqlOperatorTables.of(key.userDefinedFunctions())))
+            .sqlValidatorConfig(SqlValidator.Config.DEFAULT.withTypeCoercionEnabled(true))
+            .build();
+  }
+
+  /**
+   * The key of pooled planners.
+   * Calcite schemas and UDFs are compared by identity,
+   * since UDFs of the same name may differ in their signatures.
+   */
+  private record Key(CalciteSchema schema, Set<SqlOperator> userDefinedFunctions) {}
+
+  private static class Slot {
+    private final FrameworkConfig config;
+    private final Deque<Planner> idle = new ConcurrentLinkedDeque<>();
+
+    private Slot(FrameworkConfig config) {
+      this.config = config;
+    }
+
+    private Planner create() {
+      final long begin = System.nanoTime();
+      final Planner planner = Frameworks.getPlanner(config);
+      CREATION_NANOS.addAndGet(System.nanoTime() - begin);
+      NUM_CREATED.incrementAndGet();
+      return planner;
+    }
+
+    private Planner borrow() {
+      final Planner planner = idle.pollFirst();
+      if (planner == null) return create();
+      NUM_REUSED.incrementAndGet();
+      return planner;
+    }
+
+    private void giveBack(Planner planner) {
+      try {
+        planner.close();
+        planner.reset();
+      } catch (RuntimeException e) {
+        // the planner is in an unexpected state; drop it
+        return;
+      }
+      if (idle.size() < MAX_IDLE_PLANNERS) idle.addFirst(planner);
+    }
+  }
+
+  /** Planners borrowed by a thread. Closing the lease returns all of them to the pool. */
+  public static class Lease implements AutoCloseable {
+    private final Slot slot;
+    private final List<Planner> borrowed = new ArrayList<>(4);
+
+    private Lease(Slot slot) {
+      this.slot = slot;
+    }
+
+    /** A planner that has not parsed any query. */
+    public Planner newPlanner() {
+      final Planner planner = slot.borrow();
+      borrowed.add(planner);
+      return planner;
+    }
+
+    @Override
+    public void close() {
+      for (Planner planner : borrowed) slot.giveBack(planner);
+      borrowed.clear();
+    }
+  }
+}
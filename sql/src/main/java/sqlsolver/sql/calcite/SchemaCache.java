@@ -0,0 +1,96 @@
+package sqlsolver.sql.calcite;
+
+import org.apache.calcite.jdbc.CalciteSchema;
+import sqlsolver.common.config.GlobalConfig;
+import sqlsolver.sql.schema.Schema;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU cache of parsed schemas and their Calcite schemas, keyed by the schema DDL.
+ * <p/>
+ * Cached schemas are shared by all callers and must not be modified;
+ * {@link Schema#copy()} a cached schema before adding tables to it.
+ */
+class SchemaCache {
+  private final int capacity;
+  private final LinkedHashMap<String, Entry> byContent;
+
+  SchemaCache(int capacity) {
+    this.capacity = Math.max(0, capacity);
+    this.byContent = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > SchemaCache.this.capacity;
+      }
+    };
+  }
+
+  static SchemaCache mkDefault() {
+    return new SchemaCache(GlobalConfig.SQLSOLVER_SCHEMA_CACHE_SIZE);
+  }
+
+  /** The schema parsed from {@code content}, which is parsed upon the first request. */
+  Schema schemaOf(String content, Function<String, Schema> parser) {
+    return entryOf(content, parser).schema;
+  }
+
+  /** The Calcite schema of the schema parsed from {@code content}. */
+  CalciteSchema calciteSchemaOf(String content, Function<String, Schema> parser,
+                                Function<Schema, CalciteSchema> converter) {
+    final Entry entry = entryOf(content, parser);
+    synchronized (entry) {
+      if (entry.calciteSchema == null) entry.calciteSchema = converter.apply(entry.schema);
+      return entry.calciteSchema;
+    }
+  }
+
+  /**
+   * The Calcite schema of a schema.
+   * It is only cached if the schema is returned by this cache, since other schemas may be modified.
+   */
+  CalciteSchema calciteSchemaOf(Schema schema, Function<Schema, CalciteSchema> converter) {
+    final Entry entry = cachedEntryOf(schema);
+    if (entry == null) return converter.apply(schema);
+    synchronized (entry) {
+      if (entry.calciteSchema == null) entry.calciteSchema = converter.apply(entry.schema);
+      return entry.calciteSchema;
+    }
+  }
+
+  synchronized int size() {
+    return byContent.size();
+  }
+
+  private synchronized Entry cachedEntryOf(Schema schema) {
+    // the cache is small; a linear scan is cheaper than parsing
+    for (Entry entry : byContent.values()) {
+      if (entry.schema == schema) return entry;
+    }
+    return null;
+  }
+
+  private Entry entryOf(String content, Function<String, Schema> parser) {
+    synchronized (this) {
+      final Entry entry = byContent.get(content);
+      if (entry != null) return entry;
+    }
+    // parse outside the lock; a concurrent parse of the same content is harmless
+    final Entry parsed = new Entry(parser.apply(content));
+    synchronized (this) {
+      return byContent.computeIfAbsent(content, k -> parsed);
+    }
+  }
+
+  private static class Entry {
+    private final Schema schema;
+    // guarded by this
+    private CalciteSchema calciteSchema;
+
+    private Entry(Schema schema) {
+      this.schema = schema;
+    }
+  }
+}
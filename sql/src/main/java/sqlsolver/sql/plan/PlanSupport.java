@@ -652,4 +652,12 @@ public abstract class PlanSupport {
       return false;
     }
   }
+
+  public static boolean isLiteralEq(String sql0, String sql1, Schema schema) {
+    try {
+      return new sqlsolver.sql.calcite.PlanEq(sql0, sql1, schema).isEqTree();
+    } catch (Exception e) {
+      return false;
+    }
+  }
 }
@@ -15,16 +15,14 @@ import static sqlsolver.common.datasource.DbSupport.MySQL;
 // It is the pre-"parsePreprocess" version of CASTSupport.
 public class CastHandler {
 
-  private static Schema schema;
-
   public static String handle(String sql) {
-    schema = SqlNodePreprocess.getSchema();
+    final Schema schema = SqlNodePreprocess.getSchema();
     sql = ConvertCastIntegerToSigned(sql);
     sql = CastRemover.removeUselessCastNull(sql);
     sql = removeUselessCastSigned(sql);
     if (!needsHandle(sql)) return sql;
     try {
-      PlanContext planContext = sqlToPlanContext(sql);
+      PlanContext planContext = sqlToPlanContext(sql, schema);
       String strOld = planContextToSql(planContext);
       CastRemover.removeUselessCast(planContext);
       String strNew = planContextToSql(planContext);
@@ -73,7 +71,7 @@ public class CastHandler {
     return false;
   }
 
-  private static PlanContext sqlToPlanContext(String sql) {
+  private static PlanContext sqlToPlanContext(String sql, Schema schema) {
     final SqlNode q0 = SqlSupport.parseSql(MySQL, sql);
     q0.context().setSchema(schema);
     NormalizationSupport.normalizeAst(q0);
@@ -18,8 +18,6 @@ public class SemiAntiJoinHandler extends SqlHandler {
   //   it should choose the "left-most" condition
   //  regardless of precedence of ops
 
-  private static String sqlUpper = null;
-
   // the position of the " ON " corresponding to the join at <start>
   private static int findJoinCondition(String sql, int start) {
     int firstLeftParen = sql.indexOf("(", start);
@@ -44,6 +42,7 @@ public class SemiAntiJoinHandler extends SqlHandler {
   // joinType is semi/anti
   // not support recursive semi/anti joins (e.g. "semi join ( ... semi join ...)")
   private static String handleOfType(String sql, String joinType) {
+    final String sqlUpper = sql.toUpperCase();
     StringBuilder sb = new StringBuilder();
     String patternStr = " " + joinType + " JOIN ";
     Pattern pattern = Pattern.compile(patternStr, Pattern.CASE_INSENSITIVE);
@@ -84,12 +83,11 @@ public class SemiAntiJoinHandler extends SqlHandler {
 
   @Override
   public String handle(String sql) {
-    sqlUpper = sql.toUpperCase();
+    final String sqlUpper = sql.toUpperCase();
     try {
       if (!initRewriter(sqlUpper)) return sql;
       if (!needsHandle(sqlUpper)) return sql;
       sql = handleOfType(sql, "SEMI");
-      sqlUpper = sql.toUpperCase();
       return handleOfType(sql, "ANTI");
     } catch (Throwable e) {
       return sql;
@@ -3,6 +3,7 @@ package sqlsolver.sql.preprocess.rewrite;
 import org.apache.calcite.sql.*;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.parser.SqlParserPos;
+import sqlsolver.sql.calcite.CalciteContext;
 
 import java.util.Collections;
 
@@ -17,10 +18,8 @@ import java.util.Collections;
 public class SemiAntiJoinRewriter extends RecursiveRewriter {
   // not support recursive semi/anti-join
 
-  private static boolean enabled = false;
-
   public static void setEnabled(boolean enabled) {
-    SemiAntiJoinRewriter.enabled = enabled;
+    CalciteContext.current().setSemiAntiJoinRewriteEnabled(enabled);
   }
 
   public SemiAntiJoinRewriter() {
@@ -118,7 +117,7 @@ public class SemiAntiJoinRewriter extends RecursiveRewriter {
 
   @Override
   protected boolean prepare(SqlNode node) {
-    return enabled;
+    return CalciteContext.current().isSemiAntiJoinRewriteEnabled();
   }
 
 }
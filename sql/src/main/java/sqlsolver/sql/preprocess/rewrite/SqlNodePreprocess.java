@@ -1,11 +1,15 @@
 package sqlsolver.sql.preprocess.rewrite;
 
+import org.apache.calcite.sql.SqlIdentifier;
 import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
 import org.apache.calcite.tools.Planner;
+import sqlsolver.sql.calcite.CalciteContext;
 import sqlsolver.sql.schema.Schema;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,7 +21,6 @@ import java.util.regex.Pattern;
 public abstract class SqlNodePreprocess {
 
   private static List<SqlNodePreprocess> rewriters = null;
-  private static Schema schema;
 
   /**
    * HINT: Add new SqlNode preprocessors HERE.
@@ -39,12 +42,15 @@ public abstract class SqlNodePreprocess {
 //    rewriters.add(new AggSelectLargerGroupRewriter());
   }
 
+  /**
+   * Set the schema of queries to preprocess in the current {@link CalciteContext}.
+   */
   public static void setSchema(Schema s) {
-    schema = s;
+    CalciteContext.current().setSchema(s);
   }
 
   public static Schema getSchema() {
-    return schema;
+    return CalciteContext.current().schema();
   }
 
   /**
@@ -55,6 +61,23 @@ public abstract class SqlNodePreprocess {
    * @return the query after preprocessed by all registered preprocessors
    */
   public static String preprocessAll(String sql, Planner planner) {
+    return preprocessAllKeepNode(sql, planner).sql();
+  }
+
+  /**
+   * Apply all the registered preprocessors one by one
+   * to preprocess the given query, and keep the preprocessed SqlNode.
+   * Upon success, {@code planner} has parsed the query,
+   * so it is ready to validate the returned SqlNode.
+   * The returned SqlNode is the one parsed from the returned query:
+   * its identifiers are upper-cased like the parser does for unquoted ones,
+   * since the printed query has no quotes.
+   *
+   * @param sql the SQL query to be preprocessed
+   * @return the query after preprocessed by all registered preprocessors and its SqlNode;
+   *     the SqlNode is null if the query cannot be parsed
+   */
+  public static Preprocessed preprocessAllKeepNode(String sql, Planner planner) {
     try {
       // parse sql string into SqlNode
       sql = sql.replace('\"', '\'').replace(';', ' ');
@@ -62,15 +85,36 @@ public abstract class SqlNodePreprocess {
       // preprocess SqlNode with all rewriters
       node = preprocessAll(node);
       // restore SqlNode to sql string
+      // (before validation, which modifies the SqlNode)
       String strNew = node.toString();
       strNew = postProcess(strNew);
-      return strNew;
+      node.accept(IDENTIFIER_UPPER_CASER);
+      return new Preprocessed(strNew, node);
     } catch (Exception e) {
       // stay unchanged upon exception
-      return sql;
+      return new Preprocessed(sql, null);
     }
   }
 
+  /**
+   * A preprocessed query and its preprocessed SqlNode (null if unavailable).
+   */
+  public record Preprocessed(String sql, SqlNode node) {}
+
+  /**
+   * Upper-cases identifiers in place, e.g. the lower-case ones introduced by rewriters,
+   * which become upper-case when the printed query is parsed again.
+   */
+  private static final SqlBasicVisitor<Void> IDENTIFIER_UPPER_CASER = new SqlBasicVisitor<>() {
+    @Override
+    public Void visit(SqlIdentifier id) {
+      final List<String> names = new ArrayList<>(id.names.size());
+      for (String name : id.names) names.add(name.toUpperCase(Locale.ROOT));
+      if (!names.equals(id.names)) id.setNames(names, null);
+      return null;
+    }
+  };
+
   /**
    * Process SQL text after preprocessing.
    */
@@ -1,8 +1,10 @@
 package sqlsolver.superopt;
 
+import sqlsolver.superopt.substitution.SubstitutionSupport;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.logging.LogManager;
 
 public class Entry {
@@ -22,5 +24,11 @@ public class Entry {
   }
 
   public static void main(String[] args) throws Exception {
+    // convert-bank <path/to/text/bank> <path/to/binary/bank>
+    if (args.length == 3 && args[0].equals("convert-bank")) {
+      SubstitutionSupport.convertBank(Path.of(args[1]), Path.of(args[2]));
+      return;
+    }
+    System.err.println("usage: convert-bank <path/to/text/bank> <path/to/binary/bank>");
   }
 }
@@ -33,20 +33,6 @@ public class LiaAndImpl extends LiaStar {
     flattenFormula(operands, operand2);
   }
 
-  @Override
-  public Set<String> collectVarNames() {
-    Set<String> varSet = operand1.collectVarNames();
-    varSet.addAll(operand2.collectVarNames());
-    return varSet;
-  }
-
-  @Override
-  public Set<String> collectAllVarNames() {
-    Set<String> varSet = operand1.collectAllVarNames();
-    varSet.addAll(operand2.collectAllVarNames());
-    return varSet;
-  }
-
   @Override
   protected void prettyPrint(PrettyBuilder builder) {
     boolean needsParen1 = (operand1 instanceof LiaOrImpl);
@@ -71,13 +57,6 @@ public class LiaAndImpl extends LiaStar {
     return operand1.isLia() && operand2.isLia();
   }
 
-  @Override
-  public Set<String> getVars() {
-    Set<String> result = operand1.getVars();
-    result.addAll(operand2.getVars());
-    return result;
-  }
-
   @Override
   public LiaStar deepcopy() {
     LiaStar tmp = mkAnd(innerStar, operand1.deepcopy(), operand2.deepcopy());
@@ -35,26 +35,11 @@ public class LiaConstImpl extends LiaStar {
     return value;
   }
 
-  @Override
-  public Set<String> collectVarNames() {
-    return new HashSet<>();
-  }
-
-  @Override
-  public Set<String> collectAllVarNames() {
-    return new HashSet<>();
-  }
-
   @Override
   public LiaStar mergeMult(Map<LiaMulImpl, LiaVarImpl> multToVar) {
     return this;
   }
 
-  @Override
-  public Set<String> getVars() {
-    return new HashSet<>();
-  }
-
   @Override
   public LiaStar deepcopy() {
     return mkConst(innerStar, value);
@@ -34,6 +34,11 @@ public class LiaFuncImpl extends LiaStar {
     this.allowsUndefined = allowsUndefined;
   }
 
+  /** Whether this function is allowed not to be pre-defined, in which case it returns int. */
+  public boolean allowsUndefined() {
+    return allowsUndefined;
+  }
+
   @Override
   public boolean isLia() {
     return true;
@@ -65,22 +70,6 @@ public class LiaFuncImpl extends LiaStar {
     return this;
   }
 
-  @Override
-  public Set<String> collectVarNames() {
-    HashSet<String> result = new HashSet<>();
-    for (LiaStar var : vars)
-      result.addAll(var.collectVarNames());
-    return result;
-  }
-
-  @Override
-  public Set<String> collectAllVarNames() {
-    HashSet<String> result = new HashSet<>();
-    for (LiaStar var : vars)
-      result.addAll(var.collectAllVarNames());
-    return result;
-  }
-
   @Override
   public LiaStar expandStar() {
     return this;
@@ -112,14 +101,6 @@ public class LiaFuncImpl extends LiaStar {
     return null;
   }
 
-  @Override
-  public Set<String> getVars() {
-    HashSet<String> result = new HashSet<>();
-    for (LiaStar var : vars)
-      result.addAll(var.getVars());
-    return result;
-  }
-
   @Override
   protected void prettyPrint(PrettyBuilder builder) {
     int indent = funcName.length() + 1;
@@ -183,8 +164,13 @@ public class LiaFuncImpl extends LiaStar {
     return mkFunc(innerStar, funcName, newVars, allowsUndefined);
   }
 
+  @Override
+  public boolean containsFunc(String funcName) {
+    return this.funcName.equals(funcName) || super.containsFunc(funcName);
+  }
+
   @Override
   public List<LiaStar> subNodes() {
-    return new ArrayList<>(vars);
+    return Collections.unmodifiableList(vars);
   }
 }
@@ -20,22 +20,6 @@ public class LiaIteImpl extends LiaStar {
     operand2 = op2;
   }
 
-  @Override
-  public Set<String> collectVarNames() {
-    Set<String> varSet = operand1.collectVarNames();
-    varSet.addAll(operand2.collectVarNames());
-    varSet.addAll(cond.collectVarNames());
-    return varSet;
-  }
-
-  @Override
-  public Set<String> collectAllVarNames() {
-    Set<String> varSet = operand1.collectAllVarNames();
-    varSet.addAll(operand2.collectAllVarNames());
-    varSet.addAll(cond.collectAllVarNames());
-    return varSet;
-  }
-
   @Override
   protected void prettyPrint(PrettyBuilder builder) {
     builder.print("ite(").indent(4);
@@ -76,14 +60,6 @@ public class LiaIteImpl extends LiaStar {
     return LiaOpType.LITE;
   }
 
-  @Override
-  public Set<String> getVars() {
-    Set<String> result = operand1.getVars();
-    result.addAll(operand2.getVars());
-    result.addAll(cond.getVars());
-    return result;
-  }
-
   @Override
   public LiaStar deepcopy() {
     return mkIte(innerStar, cond.deepcopy(), operand1.deepcopy(), operand2.deepcopy());
@@ -20,20 +20,6 @@ public class LiaLeImpl extends LiaStar {
     operand2 = op2;
   }
 
-  @Override
-  public Set<String> collectVarNames() {
-    Set<String> varSet = operand1.collectVarNames();
-    varSet.addAll(operand2.collectVarNames());
-    return varSet;
-  }
-
-  @Override
-  public Set<String> collectAllVarNames() {
-    Set<String> varSet = operand1.collectAllVarNames();
-    varSet.addAll(operand2.collectAllVarNames());
-    return varSet;
-  }
-
   @Override
   protected void prettyPrint(PrettyBuilder builder) {
     prettyPrintBinaryOp(builder, operand1, operand2,
@@ -56,13 +42,6 @@ public class LiaLeImpl extends LiaStar {
     return true;
   }
 
-  @Override
-  public Set<String> getVars() {
-    Set<String> result = operand1.getVars();
-    result.addAll(operand2.getVars());
-    return result;
-  }
-
   @Override
   public LiaStar deepcopy() {
     return mkLe(innerStar, operand1.deepcopy(), operand2.deepcopy());
@@ -49,13 +49,6 @@ public class LiaMulImpl extends LiaStar {
     return LiaOpType.LMULT;
   }
 
-  @Override
-  public Set<String> getVars() {
-    Set<String> result = operand1.getVars();
-    result.addAll(operand2.getVars());
-    return result;
-  }
-
   @Override
   public LiaStar deepcopy() {
     return mkMul(innerStar, operand1.deepcopy(), operand2.deepcopy());
@@ -153,20 +146,6 @@ public class LiaMulImpl extends LiaStar {
     return result;
   }
 
-  @Override
-  public Set<String> collectVarNames() {
-    Set<String> varSet = operand1.collectVarNames();
-    varSet.addAll(operand2.collectVarNames());
-    return varSet;
-  }
-
-  @Override
-  public Set<String> collectAllVarNames() {
-    Set<String> varSet = operand1.collectAllVarNames();
-    varSet.addAll(operand2.collectAllVarNames());
-    return varSet;
-  }
-
   @Override
   public LiaStar simplifyMult(Map<LiaStar, String> multToVar) {
     operand1.innerStar = innerStar;
@@ -27,11 +27,6 @@ public class LiaNotImpl extends LiaStar {
     return operand.isLia();
   }
 
-  @Override
-  public Set<String> getVars() {
-    return operand.getVars();
-  }
-
   @Override
   public LiaStar deepcopy() {
     return mkNot(innerStar, operand.deepcopy());
@@ -49,16 +44,6 @@ public class LiaNotImpl extends LiaStar {
     return operand.isPrettyPrintMultiLine();
   }
 
-  @Override
-  public Set<String> collectVarNames() {
-    return operand.collectVarNames();
-  }
-
-  @Override
-  public Set<String> collectAllVarNames() {
-    return operand.collectAllVarNames();
-  }
-
   @Override
   public LiaStar multToBin(int n) {
     operand = operand.multToBin(n);
@@ -36,26 +36,12 @@ public class LiaOrImpl extends LiaStar {
     return operand1.isLia() && operand2.isLia();
   }
 
-  @Override
-  public Set<String> getVars() {
-    Set<String> result = operand1.getVars();
-    result.addAll(operand2.getVars());
-    return result;
-  }
-
   @Override
   public LiaStar deepcopy() {
     LiaStar tmp = mkOr(innerStar, operand1.deepcopy(), operand2.deepcopy());
     return tmp;
   }
 
-  @Override
-  public Set<String> collectVarNames() {
-    final Set<String> varSet = operand1.collectVarNames();
-    varSet.addAll(operand2.collectVarNames());
-    return varSet;
-  }
-
   @Override
   public Set<LiaVarImpl> collectParams() {
     final Set<LiaVarImpl> result = operand1.collectParams();
@@ -63,13 +49,6 @@ public class LiaOrImpl extends LiaStar {
     return result;
   }
 
-  @Override
-  public Set<String> collectAllVarNames() {
-    Set<String> varSet = operand1.collectAllVarNames();
-    varSet.addAll(operand2.collectAllVarNames());
-    return varSet;
-  }
-
   @Override
   protected void prettyPrint(PrettyBuilder builder) {
     boolean needsParen1 = (operand1 instanceof LiaAndImpl);
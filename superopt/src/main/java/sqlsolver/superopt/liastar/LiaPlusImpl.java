@@ -35,13 +35,6 @@ public class LiaPlusImpl extends LiaStar {
     return LiaOpType.LPLUS;
   }
 
-  @Override
-  public Set<String> getVars() {
-    Set<String> result = operand1.getVars();
-    result.addAll(operand2.getVars());
-    return result;
-  }
-
   @Override
   public LiaStar deepcopy() {
     return mkPlus(innerStar, operand1.deepcopy(), operand2.deepcopy());
@@ -59,20 +52,6 @@ public class LiaPlusImpl extends LiaStar {
             || operand2.isPrettyPrintMultiLine();
   }
 
-  @Override
-  public Set<String> collectVarNames() {
-    Set<String> varSet = operand1.collectVarNames();
-    varSet.addAll(operand2.collectVarNames());
-    return varSet;
-  }
-
-  @Override
-  public Set<String> collectAllVarNames() {
-    Set<String> varSet = operand1.collectAllVarNames();
-    varSet.addAll(operand2.collectAllVarNames());
-    return varSet;
-  }
-
   @Override
   public LiaStar multToBin(int n) {
     operand1 = operand1.multToBin(n);
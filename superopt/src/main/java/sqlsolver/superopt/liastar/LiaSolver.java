@@ -2,11 +2,14 @@ package sqlsolver.superopt.liastar;
 
 import com.microsoft.z3.*;
 import java.util.*;
+import sqlsolver.common.utils.LongMetric;
 import sqlsolver.superopt.liastar.parameter.InwardParamRemover;
 import sqlsolver.superopt.logic.LogicSupport;
 import sqlsolver.superopt.logic.SqlSolver;
+import sqlsolver.superopt.logic.VerificationMetrics;
 import sqlsolver.superopt.uexpr.PredefinedFunctions;
 import sqlsolver.superopt.util.Timeout;
+import sqlsolver.superopt.util.Z3ContextPool;
 import sqlsolver.superopt.util.Z3Support;
 
 public class LiaSolver {
@@ -16,6 +19,7 @@ public class LiaSolver {
 
   private final Properties config;
   private final LiaStar liaFormula;
+  private final LiaSolverSession session;
 
   /**
    * Solve satisfiability of a LIA* formula with certain configuration.
@@ -29,19 +33,36 @@ public class LiaSolver {
     return new LiaSolver(config, f).solve();
   }
 
+  /**
+   * Solve satisfiability of a LIA* formula with certain configuration,
+   * checking its LIA formulas in an incremental session.
+   * @param session the session, or <code>null</code> to check each LIA formula with a fresh solver
+   * @see #solveWithConfig(LiaStar, Properties)
+   */
+  public static LiaSolverStatus solveWithConfig(LiaStar f, Properties config, LiaSolverSession session) {
+    return new LiaSolver(config, f, session).solve();
+  }
+
   public LiaSolver(Properties config, LiaStar f) {
+    this(config, f, null);
+  }
+
+  public LiaSolver(Properties config, LiaStar f, LiaSolverSession session) {
     this.config = config;
     liaFormula = f;
+    this.session = session;
   }
 
   public LiaSolverStatus solve() {
-    try {
+    final VerificationMetrics metrics = VerificationMetrics.current();
+    metrics.numLiaSolverRuns.increment();
+    try (final LongMetric.Timer ignored = VerificationMetrics.time(metrics.elapsedUnderapp)) {
       String result = checkUnderapp();
       if (result.equals("SAT")) return LiaSolverStatus.SAT;
     } catch (Exception e) {
     }
 
-    try {
+    try (final LongMetric.Timer ignored = VerificationMetrics.time(metrics.elapsedOverapp)) {
       String result = checkOverapp();
       if (result.equals("UNSAT")) return LiaSolverStatus.UNSAT;
       if (result.equals("SAT")) return LiaSolverStatus.SAT;
@@ -57,8 +78,8 @@ public class LiaSolver {
 
   String checkUnderapp() {
     try {
-      LiaStar curexp = liaFormula.deepcopy();
-      curexp = LiaStar.calculateUnderApprox(curexp, curexp.embeddingLayers() > 4 ? 1 : 2);
+      // under-approximation shares the formula rather than modifying it
+      final LiaStar curexp = LiaStar.calculateUnderApprox(liaFormula, liaFormula.embeddingLayers() > 4 ? 1 : 2);
       return solveLia(curexp);
     } catch (Exception e) {
       return "UNKNOWN";
@@ -87,7 +108,7 @@ public class LiaSolver {
   }
 
   /** forall t1 t2. ((isnull(t1)<>0) /\ (isnull(t2)<>0)) -> t1 = t2 */
-  private BoolExpr ruleNullEquals(Context ctx) {
+  static BoolExpr ruleNullEquals(Context ctx) {
     String strVar1 = "t1", strVar2 = "t2", strIsNull = "IsNull";
     Expr[] vars = new Expr[2];
     vars[0] = ctx.mkIntConst(strVar1);
@@ -136,50 +157,57 @@ public class LiaSolver {
   }
 
   String solveLia(LiaStar f) {
-    try (final Context ctx = new Context()) {
-      BoolExpr target = ctx.mkTrue();
-
-      Set<LiaVarImpl> vars = new HashSet<>();
-      f.transformPostOrder(
-          lia -> {
-            if (lia instanceof LiaVarImpl var) {
-              vars.add(var);
-            }
-            return lia;
-          });
-      Map<String, Expr> varDef = new HashMap<>();
-      final BoolExpr varConstraints = Z3Support.defineVarsByVars(ctx, varDef, vars);
-      target = ctx.mkAnd(target, varConstraints);
-
-      BoolExpr coreExpr = (BoolExpr) f.transToSMT(ctx, varDef);
-      coreExpr = appendMultipleConditions(ctx, coreExpr);
-      target = ctx.mkAnd(target, coreExpr);
-
-      // the formula f does not contain stars
-      // append rules applicable to f
-      target = appendRules(ctx, target);
-
-      Solver s =
-          (f.toString().contains(PredefinedFunctions.NAME_SQRT))
-              ? ctx.mkSolver()
-              : ctx.mkSolver(ctx.tryFor(ctx.mkTactic("qflia"), SqlSolver.Z3_TIMEOUT));
-      //       Solver s = ctx.mkSolver();
-      s.add(target);
-
+    final Status q;
+    if (session != null) {
+      // rules are the background of the session
+      final BoolExpr target = encodeLia(session.context(), f);
       if (LogicSupport.dumpLiaFormulas) {
-        System.out.println("FOL: " + s);
+        System.out.println("FOL: " + target);
       }
-
-      Status q = s.check();
-      if (LogicSupport.dumpLiaFormulas) {
-        System.out.println("smt solver: " + q.toString());
+      q = session.check(target);
+    } else {
+      try (final Z3ContextPool.Lease lease = Z3ContextPool.borrow()) {
+        final Context ctx = lease.context();
+        // the formula f does not contain stars
+        // append rules applicable to f
+        final BoolExpr target = appendRules(ctx, encodeLia(ctx, f));
+
+        Solver s =
+            f.containsFunc(PredefinedFunctions.NAME_SQRT)
+                ? ctx.mkSolver()
+                : ctx.mkSolver(ctx.tryFor(ctx.mkTactic("qflia"), SqlSolver.Z3_TIMEOUT));
+        //       Solver s = ctx.mkSolver();
+        s.add(target);
+
+        if (LogicSupport.dumpLiaFormulas) {
+          System.out.println("FOL: " + s);
+        }
+
+        q = Z3Support.check(s);
       }
-      return switch (q) {
-        case UNKNOWN -> "UNKNOWN";
-        case SATISFIABLE -> "SAT";
-        case UNSATISFIABLE -> "UNSAT";
-      };
     }
+    if (LogicSupport.dumpLiaFormulas) {
+      System.out.println("smt solver: " + q.toString());
+    }
+    return switch (q) {
+      case UNKNOWN -> "UNKNOWN";
+      case SATISFIABLE -> "SAT";
+      case UNSATISFIABLE -> "UNSAT";
+    };
+  }
+
+  /** Translate a LIA formula with its var definitions into Z3. */
+  private BoolExpr encodeLia(Context ctx, LiaStar f) {
+    BoolExpr target = ctx.mkTrue();
+
+    Set<LiaVarImpl> vars = f.collectAllVars();
+    Map<String, Expr> varDef = new HashMap<>();
+    final BoolExpr varConstraints = Z3Support.defineVarsByVars(ctx, varDef, vars);
+    target = ctx.mkAnd(target, varConstraints);
+
+    BoolExpr coreExpr = (BoolExpr) f.transToSMT(ctx, varDef);
+    coreExpr = appendMultipleConditions(ctx, coreExpr);
+    return ctx.mkAnd(target, coreExpr);
   }
 
   String solveNestedLiastar(LiaStar f) throws Exception {
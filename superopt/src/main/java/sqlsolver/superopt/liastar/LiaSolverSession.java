@@ -0,0 +1,57 @@
+package sqlsolver.superopt.liastar;
+
+import com.microsoft.z3.*;
+import sqlsolver.common.config.GlobalConfig;
+import sqlsolver.superopt.logic.SqlSolver;
+import sqlsolver.superopt.util.Z3ContextPool;
+import sqlsolver.superopt.util.Z3Support;
+
+/**
+ * An incremental Z3 solver shared by the LIA formulas that {@link LiaSolver} checks
+ * for the bound var matchings of one verification.
+ * <p/>
+ * The background rules, which all formulas share, are asserted once.
+ * Each formula is checked in a scope of its own (push/pop),
+ * so that Z3 keeps what it has learned about the background across formulas.
+ * Unlike the solvers made for single formulas, which use the QF_LIA tactic,
+ * a session uses the default incremental solver, which may behave differently on some formulas.
+ * It is thus only used when {@link GlobalConfig#SQLSOLVER_LIA_INCREMENTAL} is set.
+ * <p/>
+ * A session borrows a Z3 context of the thread creating it,
+ * so it must be used and closed by that thread.
+ */
+public class LiaSolverSession implements AutoCloseable {
+  private final Z3ContextPool.Lease lease;
+  private final Solver solver;
+
+  public LiaSolverSession() {
+    this.lease = Z3ContextPool.borrow();
+    final Context ctx = lease.context();
+    final Params params = ctx.mkParams();
+    params.add("timeout", SqlSolver.Z3_TIMEOUT);
+    this.solver = ctx.mkSolver();
+    solver.setParameters(params);
+    solver.add(LiaSolver.ruleNullEquals(ctx));
+  }
+
+  /** The context in which formulas to check are built. */
+  Context context() {
+    return lease.context();
+  }
+
+  /** Check satisfiability of a formula together with the background rules. */
+  Status check(BoolExpr formula) {
+    solver.push();
+    try {
+      solver.add(formula);
+      return Z3Support.check(solver);
+    } finally {
+      solver.pop();
+    }
+  }
+
+  @Override
+  public void close() {
+    lease.close();
+  }
+}
@@ -1,12 +1,13 @@
 package sqlsolver.superopt.liastar;
 
 import com.microsoft.z3.*;
-import sqlsolver.common.utils.SetSupport;
 import sqlsolver.sql.plan.Value;
+import sqlsolver.superopt.logic.VerificationContext;
 import sqlsolver.superopt.util.PrettyBuilder;
 
 import java.util.*;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import static sqlsolver.superopt.liastar.LiaOpType.*;
@@ -16,12 +17,6 @@ public abstract class LiaStar {
 
   boolean innerStar = false;
 
-  private static ThreadLocal<Integer> freshVarId = new ThreadLocal<Integer>() {
-    public Integer initialValue() {
-      return 0;
-    }
-  };
-
   private static final Integer dnfTimeout = 2000000;
   private static ThreadLocal<Integer> dnfStartTime  = new ThreadLocal<Integer>() {
     public Integer initialValue() {
@@ -78,13 +73,12 @@ public abstract class LiaStar {
   public abstract int embeddingLayers();
 
   public static String newId() {
-    freshVarId.set(freshVarId.get() + 1);
-    return String.valueOf(freshVarId.get());
+    return String.valueOf(VerificationContext.current().nextLiaVarId());
   }
 
   public static String resetId() {
-    freshVarId.set(0);
-    return String.valueOf(freshVarId.get());
+    VerificationContext.current().resetLiaVarId();
+    return String.valueOf(0);
   }
 
   public static String newVarName() {
@@ -95,10 +89,9 @@ public abstract class LiaStar {
    * Collect vars from formulas in a batch.
    */
   public static Set<String> collectVarNames(Collection<LiaStar> formulas) {
-    return formulas.stream()
-            .map(LiaStar::collectVarNames)
-            .reduce(SetSupport::union)
-            .orElseGet(HashSet::new);
+    final Set<String> names = new HashSet<>();
+    for (LiaStar formula : formulas) formula.collectVarNames(names);
+    return names;
   }
 
   /**
@@ -106,7 +99,30 @@ public abstract class LiaStar {
    * This should be used after removal of parameters except for
    * the case where it is used to collect parameters.
    */
-  public abstract Set<String> collectVarNames();
+  public Set<String> collectVarNames() {
+    final Set<String> names = new HashSet<>();
+    collectVarNames(names);
+    return names;
+  }
+
+  /**
+   * Add free vars to <code>names</code>.
+   * Nodes add their vars to a single set instead of returning a set each.
+   */
+  protected void collectVarNames(Set<String> names) {
+    for (LiaStar child : subNodes()) child.collectVarNames(names);
+  }
+
+  /**
+   * Whether a function named <code>funcName</code> occurs in this formula.
+   * Unlike searching in {@link #toString()}, it does not print the formula and stops at the first occurrence.
+   */
+  public boolean containsFunc(String funcName) {
+    for (LiaStar child : subNodes()) {
+      if (child.containsFunc(funcName)) return true;
+    }
+    return false;
+  }
 
   /**
    * Collect free vars only.
@@ -114,31 +130,60 @@ public abstract class LiaStar {
    */
   public Set<LiaVarImpl> collectVars() {
     final Set<LiaVarImpl> result = new HashSet<>();
-    this.transformPostOrder(f -> {
+    this.visitPostOrder(f -> {
       if (f instanceof LiaVarImpl var) {
         result.add(var);
       } else if (f instanceof LiaSumImpl sum) {
         result.removeIf(p -> sum.innerVector.contains(p.getName()));
       }
-      return f;
     });
     return result;
   }
 
   /** Collect vars, no matter free or bound. */
-  public abstract Set<String> collectAllVarNames();
+  public Set<String> collectAllVarNames() {
+    final Set<String> names = new HashSet<>();
+    collectAllVarNames(names);
+    return names;
+  }
+
+  /** Add vars to <code>names</code>, no matter free or bound. */
+  protected void collectAllVarNames(Set<String> names) {
+    for (LiaStar child : subNodes()) child.collectAllVarNames(names);
+  }
 
   public Set<LiaVarImpl> collectAllVars() {
     final Set<LiaVarImpl> result = new HashSet<>();
-    this.transformPostOrder(f -> {
+    this.visitPostOrder(f -> {
       if (f instanceof LiaVarImpl var) {
         result.add(var);
       }
-      return f;
     });
     return result;
   }
 
+  /**
+   * Collect vars whose names are in <code>names</code>, no matter free or bound.
+   */
+  public Set<LiaVarImpl> collectVarsNamedIn(Set<String> names) {
+    final Set<LiaVarImpl> result = new HashSet<>();
+    this.visitPostOrder(f -> {
+      if (f instanceof LiaVarImpl var && names.contains(var.getName())) {
+        result.add(var);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Visit each node of this formula in post-order.
+   * Unlike {@link #transformPostOrder(Function)}, it does not rebuild the formula.
+   */
+  public void visitPostOrder(Consumer<LiaStar> visitor) {
+    for (LiaStar child : subNodes()) child.visitPostOrder(visitor);
+    visitor.accept(this);
+  }
+
   public abstract LiaStar expandStar();
 
   public LiaStar liaAndConcat(LiaStar[] array) {
@@ -363,7 +408,10 @@ public abstract class LiaStar {
     return mkNot(isInnerStar, mkEq(isInnerStar, a, b));
   }
 
-  public abstract Set<String> getVars();
+  /** Vars, no matter free or bound; the same as {@link #collectAllVarNames()}. */
+  public Set<String> getVars() {
+    return collectAllVarNames();
+  }
 
   public boolean isConstV(long v) {
     if(this instanceof LiaConstImpl)
@@ -1121,6 +1169,15 @@ public abstract class LiaStar {
     return List.of();
   }
 
+  /**
+   * Return the number of nodes of this formula.
+   */
+  public int size() {
+    int size = 1;
+    for (LiaStar child : subNodes()) size += child.size();
+    return size;
+  }
+
   @Override
   public String toString() {
     PrettyBuilder builder = new PrettyBuilder();
@@ -1228,11 +1285,16 @@ public abstract class LiaStar {
     return result;
   }
 
+  /** Under-approximate <code>formula</code> without modifying it. */
   public static LiaStar calculateUnderApprox(LiaStar formula, int n) {
     LiaStar result = spanLiastarByNVectors(formula, n);
     return expandStarWithUnderapp(result, 1);
   }
 
+  /**
+   * Span each star in <code>formula</code> by <code>n</code> vectors.
+   * <code>formula</code> is not modified; subformulas without stars are shared with the result.
+   */
   public static LiaStar spanLiastarByNVectors(LiaStar formula, int n) {
     switch (formula.getType()) {
       case LPLUS: case LMULT: case LVAR: case LLT: case LLE: case LEQ: case LDIV: case LCONST: case LSTRING: case LFUNC: {
@@ -1240,27 +1302,44 @@ public abstract class LiaStar {
       }
       case LOR: {
         LiaOrImpl orFormula = (LiaOrImpl) formula;
-        orFormula.operand1 = spanLiastarByNVectors(orFormula.operand1, n);
-        orFormula.operand2 = spanLiastarByNVectors(orFormula.operand2, n);
-        return orFormula;
+        LiaStar operand1 = spanLiastarByNVectors(orFormula.operand1, n);
+        LiaStar operand2 = spanLiastarByNVectors(orFormula.operand2, n);
+        if (operand1 == orFormula.operand1 && operand2 == orFormula.operand2) {
+          return orFormula;
+        }
+        LiaStar result = new LiaOrImpl(operand1, operand2);
+        result.innerStar = orFormula.innerStar;
+        return result;
       }
       case LAND: {
         LiaAndImpl andFormula = (LiaAndImpl) formula;
-        andFormula.operand1 = spanLiastarByNVectors(andFormula.operand1, n);
-        andFormula.operand2 = spanLiastarByNVectors(andFormula.operand2, n);
-        return andFormula;
+        LiaStar operand1 = spanLiastarByNVectors(andFormula.operand1, n);
+        LiaStar operand2 = spanLiastarByNVectors(andFormula.operand2, n);
+        if (operand1 == andFormula.operand1 && operand2 == andFormula.operand2) {
+          return andFormula;
+        }
+        LiaStar result = new LiaAndImpl(operand1, operand2);
+        result.innerStar = andFormula.innerStar;
+        return result;
       }
       case LITE: {
         LiaIteImpl iteFormula = (LiaIteImpl) formula;
-        iteFormula.cond = spanLiastarByNVectors(iteFormula.cond, n);
-        return iteFormula;
+        LiaStar cond = spanLiastarByNVectors(iteFormula.cond, n);
+        if (cond == iteFormula.cond) {
+          return iteFormula;
+        }
+        return mkIte(iteFormula.innerStar, cond, iteFormula.operand1, iteFormula.operand2);
       }
       case LNOT: {
         LiaNotImpl notFormula = (LiaNotImpl) formula;
-        notFormula.operand = spanLiastarByNVectors(notFormula.operand, n);
-        return notFormula;
+        LiaStar operand = spanLiastarByNVectors(notFormula.operand, n);
+        if (operand == notFormula.operand) {
+          return notFormula;
+        }
+        return mkNot(notFormula.innerStar, operand);
       }
       case LSUM: {
+        // the copies of the sum are renamed in place, so the sum itself is untouched
         LiaSumImpl sumFormula = (LiaSumImpl) formula;
         List<List<String>> newNameVectors = new ArrayList<>();
         for (int i = 0; i < n; ++ i) {
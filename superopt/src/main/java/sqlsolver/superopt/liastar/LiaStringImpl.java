@@ -33,26 +33,11 @@ public class LiaStringImpl extends LiaStar {
     return value;
   }
 
-  @Override
-  public Set<String> collectVarNames() {
-    return new HashSet<>();
-  }
-
-  @Override
-  public Set<String> collectAllVarNames() {
-    return new HashSet<>();
-  }
-
   @Override
   public LiaStar mergeMult(Map<LiaMulImpl, LiaVarImpl> multToVar) {
     return this;
   }
 
-  @Override
-  public Set<String> getVars() {
-    return new HashSet<>();
-  }
-
   @Override
   public LiaStar deepcopy() {
     return mkString(innerStar, value);
@@ -100,13 +100,6 @@ public class LiaSumImpl extends LiaStar {
     return true;
   }
 
-  @Override
-  public Set<String> getVars() {
-    Set<String> result = new HashSet<>(constraints.getVars());
-    result.addAll(outerVector);
-    return result;
-  }
-
   @Override
   public LiaStar deepcopy() {
     List<String> v1 = new ArrayList<>();
@@ -119,15 +112,15 @@ public class LiaSumImpl extends LiaStar {
   }
 
   @Override
-  public Set<String> collectVarNames() {
-    return new HashSet<>(outerVector);
+  protected void collectVarNames(Set<String> names) {
+    // vars in constraints are bound except the outer vector
+    names.addAll(outerVector);
   }
 
   @Override
-  public Set<String> collectAllVarNames() {
-    Set<String> varSet = constraints.collectAllVarNames();
-    varSet.addAll(outerVector);
-    return varSet;
+  protected void collectAllVarNames(Set<String> names) {
+    constraints.collectAllVarNames(names);
+    names.addAll(outerVector);
   }
 
   @Override
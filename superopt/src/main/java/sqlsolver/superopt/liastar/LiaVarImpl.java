@@ -17,17 +17,13 @@ public class LiaVarImpl extends LiaStar {
   }
 
   @Override
-  public Set<String> collectVarNames() {
-    Set<String> varSet = new HashSet<>();
-    varSet.add(varName);
-    return varSet;
+  protected void collectVarNames(Set<String> names) {
+    names.add(varName);
   }
 
   @Override
-  public Set<String> collectAllVarNames() {
-    Set<String> varSet = new HashSet<>();
-    varSet.add(varName);
-    return varSet;
+  protected void collectAllVarNames(Set<String> names) {
+    names.add(varName);
   }
 
   @Override
@@ -73,13 +69,6 @@ public class LiaVarImpl extends LiaStar {
     return LiaOpType.LVAR;
   }
 
-  @Override
-  public Set<String> getVars() {
-    Set<String> result = new HashSet<>();
-    result.add(varName);
-    return result;
-  }
-
   public String getName() {
     return varName;
   }
@@ -4,6 +4,8 @@ import com.microsoft.z3.*;
 import sqlsolver.superopt.liastar.LiaStar;
 import sqlsolver.superopt.logic.SqlSolver;
 import sqlsolver.superopt.util.Timeout;
+import sqlsolver.superopt.util.Z3ContextPool;
+import sqlsolver.superopt.util.Z3Support;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -67,7 +69,8 @@ public class AugmentationFinder {
    * Return null if no vector is found.
    */
   private List<Long> find(boolean withLimit, int lowerBound, int upperBound) {
-    try (final Context ctx = new Context()) {
+    try (final Z3ContextPool.Lease lease = Z3ContextPool.borrow()) {
+      final Context ctx = lease.context();
       // construct "target(vector) /\ ~LIA(sls)(vector)"
       // where LIA(sls)(vector) is a LIA formula indicating that vector is in sls
       final Map<String, Expr> varDef = new HashMap<>();
@@ -117,7 +120,7 @@ public class AugmentationFinder {
     // check its satisfiability
     final Solver s = ctx.mkSolver(ctx.tryFor(ctx.mkTactic("lia"), SqlSolver.Z3_TIMEOUT));
     s.add(toCheck);
-    final Status q = s.check();
+    final Status q = Z3Support.check(s);
     if (q == Status.UNSATISFIABLE) {
       return null;
     }
@@ -99,14 +99,14 @@ public class LiaTransformer {
     // TODO: (assumption) g does not contain var names like "contra_..."
     final List<String> x = createVarVector("contra_x", 0, vSize);
     final List<String> y = createVarVector("contra_y", 0, vSize);
-    // rename vars in g to z1,z2,z3
+    // rename vars in g to z1,z2,z3 (transformPostOrder builds new formulas and leaves g unchanged)
     final Set<String> usedVarNames = g.collectVarNames();
     final Map<String, String> renameMap1 = new HashMap<>();
     final Map<String, String> renameMap2 = new HashMap<>();
     final Map<String, String> renameMap3 = new HashMap<>();
-    final LiaStar g1 = g.deepcopy().transformPostOrder(fm -> renameVarsBesides(fm, v, renameMap1, usedVarNames));
-    final LiaStar g2 = g.deepcopy().transformPostOrder(fm -> renameVarsBesides(fm, v, renameMap2, usedVarNames));
-    final LiaStar g3 = g.deepcopy().transformPostOrder(fm -> renameVarsBesides(fm, v, renameMap3, usedVarNames));
+    final LiaStar g1 = g.transformPostOrder(fm -> renameVarsBesides(fm, v, renameMap1, usedVarNames));
+    final LiaStar g2 = g.transformPostOrder(fm -> renameVarsBesides(fm, v, renameMap2, usedVarNames));
+    final LiaStar g3 = g.transformPostOrder(fm -> renameVarsBesides(fm, v, renameMap3, usedVarNames));
     // construct condition 3
     final List<LiaStar> cond3Parts = new ArrayList<>();
     cond3Parts.add(apply(g1, v, nameToLia(x)));
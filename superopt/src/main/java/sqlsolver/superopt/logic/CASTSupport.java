@@ -10,15 +10,17 @@ public class CASTSupport {
 
   private final PlanContext plan0, plan1;
 
-  public static Schema schema;
-
   CASTSupport(PlanContext p0, PlanContext p1) {
     plan0 = p0;
     plan1 = p1;
   }
 
   public static void setSchema(Schema s) {
-    schema = s;
+    VerificationContext.current().setCastSchema(s);
+  }
+
+  public static Schema schema() {
+    return VerificationContext.current().castSchema();
   }
 
   public static boolean castHandler(PlanContext p0, PlanContext p1) {
@@ -0,0 +1,172 @@
+package sqlsolver.superopt.logic;
+
+import sqlsolver.sql.schema.Schema;
+import sqlsolver.superopt.uexpr.UExprConcreteTranslationBase;
+import sqlsolver.superopt.uexpr.UExprConcreteTranslationResult;
+import sqlsolver.superopt.uexpr.UExprSupport;
+import sqlsolver.superopt.util.Timeout;
+import sqlsolver.superopt.util.Z3ContextPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Prove a pair of plans under several IC variants concurrently,
+ * where the i-th variant only rewrites the i-th nonempty integrity constraint,
+ * and stop as soon as one of them is EQ.
+ * <p/>
+ * Variants are tried in waves of a fixed width. A wave is the last one
+ * if some of its variants select no IC, i.e. all ICs have been tried.
+ * A variant that fails is not conclusive, like a variant that is not EQ, and the search goes on.
+ * If it fails before its IC is selected, it does not tell whether ICs remain,
+ * so the search only stops when every variant of a wave fails that early.
+ * <p/>
+ * Each variant finishes the shared translation base and is proved in a fork of the verification context
+ * with its own IC selection, whose metrics are merged into the verification context once the variant is done.
+ * Like {@link LiaPortfolio}, cancelled variants are stopped by interrupting both their threads and Z3 contexts.
+ */
+class ICVariantPortfolio implements AutoCloseable {
+  // separate from the LIA portfolio, whose tasks are awaited by the variants
+  private static final ExecutorService EXECUTOR =
+          Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            final Thread thread = new Thread(runnable, "ic-variant");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final VerificationContext context;
+  private final UExprConcreteTranslationBase base;
+  private final Schema schema;
+  private final int flags;
+  private final CompletionService<Outcome> completion;
+  private final List<Task> pending;
+
+  ICVariantPortfolio(VerificationContext context, UExprConcreteTranslationBase base, Schema schema, int extraFlags) {
+    this.context = context;
+    this.base = base;
+    this.schema = schema;
+    this.flags = UExprSupport.UEXPR_FLAG_INTEGRITY_CONSTRAINT_REWRITE | extraFlags;
+    this.completion = new ExecutorCompletionService<>(EXECUTOR);
+    this.pending = new ArrayList<>();
+  }
+
+  /** Try variants <code>width</code> at a time until one of them is EQ or all ICs are tried. */
+  VerificationResult prove(int width) {
+    int selectedIC = 0;
+    boolean exhausted = false;
+    while (!exhausted) {
+      boolean selected = false;
+      for (int i = 0; i < width; i++) {
+        context.metrics().numICVariants.increment();
+        final Task task = new Task(context.fork(), selectedIC++);
+        task.future = completion.submit(task);
+        pending.add(task);
+      }
+      try {
+        while (!pending.isEmpty()) {
+          final Future<Outcome> done = completion.take();
+          Task doneTask = null;
+          for (Task task : pending) {
+            if (task.future == done) {
+              // the task has finished, so its metrics are no longer modified
+              context.metrics().merge(task.context.metrics());
+              pending.remove(task);
+              doneTask = task;
+              break;
+            }
+          }
+          final Outcome outcome = outcomeOf(doneTask, done);
+          if (outcome.result() == VerificationResult.EQ) {
+            cancelAll();
+            return VerificationResult.EQ;
+          }
+          if (outcome.hasIC() == null) continue;
+          selected = true;
+          if (!outcome.hasIC()) exhausted = true;
+        }
+        // every variant of the wave has failed before selecting its IC, so later ones are not tried
+        if (!selected) exhausted = true;
+      } catch (InterruptedException e) {
+        // the verification itself is interrupted
+        cancelAll();
+        Thread.currentThread().interrupt();
+        Timeout.checkTimeout();
+        return VerificationResult.UNKNOWN;
+      }
+    }
+    return VerificationResult.NEQ;
+  }
+
+  @Override
+  public void close() {
+    cancelAll();
+  }
+
+  private void cancelAll() {
+    for (Task task : pending) {
+      task.cancel();
+    }
+    pending.clear();
+  }
+
+  private static Outcome outcomeOf(Task task, Future<Outcome> done) throws InterruptedException {
+    try {
+      return done.get();
+    } catch (ExecutionException | CancellationException e) {
+      // a failed variant is not conclusive, but may still tell whether its IC exists
+      return new Outcome(VerificationResult.UNKNOWN, task == null ? null : task.hasIC);
+    }
+  }
+
+  /** The result of a variant and whether the variant has selected an IC, or null if that is unknown. */
+  private record Outcome(VerificationResult result, Boolean hasIC) {}
+
+  private class Task implements Callable<Outcome> {
+    private final VerificationContext context;
+    private final int selectedIC;
+    private Future<Outcome> future;
+    // whether the selected IC exists, once the plans are translated
+    private volatile Boolean hasIC;
+    // guarded by this
+    private Thread runner;
+    private boolean cancelled;
+
+    private Task(VerificationContext context, int selectedIC) {
+      this.context = context;
+      this.selectedIC = selectedIC;
+    }
+
+    @Override
+    public Outcome call() {
+      synchronized (this) {
+        if (cancelled) return new Outcome(VerificationResult.UNKNOWN, false);
+        runner = Thread.currentThread();
+      }
+      try (final VerificationContext.Scope ignored = context.enter()) {
+        context.selectIC(selectedIC);
+        // the IC rewriter records whether the selected IC exists;
+        // a variant that is never rewritten (e.g. the plans are not translated) ends the search
+        context.setHasIC(false);
+        final UExprConcreteTranslationResult uExprs = UExprSupport.finishQueryToUExpr(base, flags);
+        final boolean hasIC = context.hasIC();
+        this.hasIC = hasIC;
+        if (uExprs == null) return new Outcome(VerificationResult.UNKNOWN, hasIC);
+        return new Outcome(LogicSupport.proveEqByLIAStar(uExprs, schema), hasIC);
+      } finally {
+        synchronized (this) {
+          runner = null;
+        }
+      }
+    }
+
+    private void cancel() {
+      synchronized (this) {
+        cancelled = true;
+        // the runner is only interrupted while it is still working on this task
+        if (runner != null) Z3ContextPool.interrupt(runner);
+      }
+      future.cancel(true);
+    }
+  }
+}
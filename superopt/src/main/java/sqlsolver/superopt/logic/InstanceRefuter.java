@@ -0,0 +1,415 @@
+package sqlsolver.superopt.logic;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.interpreter.Interpreter;
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.linq4j.QueryProvider;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelShuttleImpl;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.logical.LogicalValues;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.rex.*;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.sql.type.SqlTypeFamily;
+import org.apache.calcite.util.DateString;
+import sqlsolver.sql.ast.constants.ConstraintKind;
+import sqlsolver.sql.schema.Column;
+import sqlsolver.sql.schema.Constraint;
+import sqlsolver.sql.schema.Schema;
+import sqlsolver.sql.schema.Table;
+import sqlsolver.superopt.util.Timeout;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * Refute the equivalence of two plans by running them on small databases of a schema,
+ * before trying to prove them equivalent.
+ * <p/>
+ * The first database is empty, and the others are random ones with a few rows per table,
+ * whose values are drawn from boundary values (e.g. 0 and -1) and the constants of the plans (and their neighbours).
+ * Databases honor NOT NULL, unique keys and foreign keys of the schema;
+ * tables with CHECK constraints are not supported.
+ * Plans are run by Calcite's interpreter, with the scanned tables replaced by the rows of the database,
+ * and a database on which their results differ as bags is a witness of NEQ.
+ * <p/>
+ * Results follow Calcite's semantics, e.g. strings are compared case-sensitively,
+ * which may differ from the SQL dialect of the queries. Refutation is thus only enabled by configuration.
+ * Plans that the interpreter does not support (e.g. those with subqueries) are not refuted.
+ */
+class InstanceRefuter {
+  // rows of a random table are at most this many
+  private static final int MAX_ROWS = 3;
+  // times to regenerate a row that violates constraints
+  private static final int MAX_ROW_TRIES = 4;
+  // larger results are not compared
+  private static final int MAX_RESULT_ROWS = 10000;
+  // larger constants are not used as values, which may overflow
+  private static final BigDecimal MAX_CONSTANT = BigDecimal.valueOf(1_000_000);
+  // approximate numbers (e.g. averages) are compared up to this precision
+  private static final MathContext APPROX_PRECISION = new MathContext(10);
+
+  private final RelNode p0, p1;
+  private final Schema schema;
+  private final Set<BigDecimal> numbers;
+  private final Set<String> strings;
+  private final Set<DateString> dates;
+
+  InstanceRefuter(RelNode p0, RelNode p1, Schema schema) {
+    this.p0 = p0;
+    this.p1 = p1;
+    this.schema = schema;
+    this.numbers = new TreeSet<>();
+    this.strings = new TreeSet<>();
+    this.dates = new TreeSet<>();
+    for (int i = -1; i <= 2; i++) {
+      numbers.add(BigDecimal.valueOf(i));
+    }
+    strings.addAll(List.of("", "a", "b"));
+    dates.addAll(List.of(DateString.fromDaysSinceEpoch(0), DateString.fromDaysSinceEpoch(10957)));
+    collectConstants(p0);
+    collectConstants(p1);
+  }
+
+  /**
+   * Search a database on which the plans differ,
+   * trying at most <code>maxInstances</code> databases within <code>timeoutMillis</code>.
+   *
+   * @return the database, or null if none is found
+   */
+  NeqWitness refute(int maxInstances, long timeoutMillis) {
+    final List<Table> tables = tablesToFill();
+    if (tables == null) return null;
+    final long deadline = System.currentTimeMillis() + timeoutMillis;
+    final VerificationMetrics metrics = VerificationMetrics.current();
+    // the seed is fixed, so that witnesses are reproducible
+    final Random random = new Random(0);
+    for (int i = 0; i < maxInstances && System.currentTimeMillis() < deadline; i++) {
+      Timeout.checkTimeout();
+      metrics.numInstances.increment();
+      final Map<String, List<List<Object>>> db = new LinkedHashMap<>();
+      for (Table table : tables) {
+        // the first database is empty
+        db.put(table.name(), i == 0 ? List.of() : fill(table, db, random));
+      }
+      final List<List<Object>> result0, result1;
+      try {
+        result0 = run(p0, db);
+        result1 = run(p1, db);
+      } catch (RuntimeException e) {
+        Timeout.bypassTimeout(e);
+        // the empty database does not fail unless the plans are not supported
+        if (i == 0) return null;
+        // e.g. division by zero
+        continue;
+      }
+      if (result0 == null || result1 == null) continue;
+      if (!countRows(result0).equals(countRows(result1))) return new NeqWitness(db, result0, result1);
+    }
+    return null;
+  }
+
+  /*
+   * Databases
+   */
+
+  /**
+   * Tables scanned by the plans, preceded by the tables they refer to by foreign keys.
+   * Returns null if some table is not supported.
+   */
+  private List<Table> tablesToFill() {
+    final Set<String> scanned = new LinkedHashSet<>();
+    collectScannedTables(p0, scanned);
+    collectScannedTables(p1, scanned);
+    final List<Table> tables = new ArrayList<>();
+    final Set<String> visited = new HashSet<>();
+    for (String name : scanned) {
+      final Table table = schema.table(name);
+      if (table == null || !addWithReferredTables(table, tables, visited)) return null;
+    }
+    return tables;
+  }
+
+  private static boolean addWithReferredTables(Table table, List<Table> tables, Set<String> visited) {
+    // tables on a cycle of foreign keys are filled in the order they are visited
+    if (!visited.add(table.name())) return true;
+    if (table.constraints(ConstraintKind.CHECK).iterator().hasNext()) return false;
+    for (Column column : table.columns()) {
+      if (column.isFlag(Column.Flag.HAS_CHECK)) return false;
+    }
+    for (Constraint foreignKey : table.constraints(ConstraintKind.FOREIGN)) {
+      if (foreignKey.refTable() != null && !addWithReferredTables(foreignKey.refTable(), tables, visited)) {
+        return false;
+      }
+    }
+    tables.add(table);
+    return true;
+  }
+
+  private static void collectScannedTables(RelNode node, Set<String> names) {
+    if (node instanceof TableScan scan) names.add(tableNameOf(scan));
+    for (RelNode input : node.getInputs()) {
+      collectScannedTables(input, names);
+    }
+  }
+
+  private static String tableNameOf(TableScan scan) {
+    final List<String> qualifiedName = scan.getTable().getQualifiedName();
+    return qualifiedName.get(qualifiedName.size() - 1);
+  }
+
+  /** Random rows of a table, whose referred tables are already in <code>db</code>. */
+  private List<List<Object>> fill(Table table, Map<String, List<List<Object>>> db, Random random) {
+    final List<Column> columns = List.copyOf(table.columns());
+    final List<List<Object>> rows = new ArrayList<>();
+    final int numRows = random.nextInt(MAX_ROWS + 1);
+    for (int i = 0; i < numRows; i++) {
+      for (int tries = 0; tries < MAX_ROW_TRIES; tries++) {
+        final List<Object> row = mkRow(table, columns, db, random);
+        if (row != null && !violatesUniqueKeys(table, columns, rows, row)) {
+          rows.add(row);
+          break;
+        }
+      }
+    }
+    return rows;
+  }
+
+  /** A random row of a table that satisfies NOT NULL and foreign keys, or null if it fails to. */
+  private List<Object> mkRow(Table table, List<Column> columns, Map<String, List<List<Object>>> db, Random random) {
+    final Set<String> notNullColumns = notNullColumnsOf(table);
+    final List<Object> row = new ArrayList<>(columns.size());
+    for (Column column : columns) {
+      final boolean isNull = !notNullColumns.contains(column.name()) && random.nextInt(4) == 0;
+      row.add(isNull ? null : mkValue(column, random));
+    }
+    for (Constraint foreignKey : table.constraints(ConstraintKind.FOREIGN)) {
+      final Table refTable = foreignKey.refTable();
+      final List<List<Object>> refRows = refTable == null ? null : db.get(refTable.name());
+      if (refRows == null || refRows.isEmpty()) {
+        // nothing to refer to; the key must be null
+        for (Column column : foreignKey.columns()) {
+          row.set(indexOf(columns, column), null);
+        }
+        continue;
+      }
+      // keys referring to columns implicitly are not supported
+      if (foreignKey.refColumns() == null || foreignKey.refColumns().size() != foreignKey.columns().size()) return null;
+      final List<Column> refColumns = List.copyOf(refTable.columns());
+      final List<Object> refRow = refRows.get(random.nextInt(refRows.size()));
+      for (int i = 0; i < foreignKey.columns().size(); i++) {
+        final Object value = refRow.get(indexOf(refColumns, foreignKey.refColumns().get(i)));
+        row.set(indexOf(columns, foreignKey.columns().get(i)), value);
+      }
+    }
+    for (int i = 0; i < columns.size(); i++) {
+      if (row.get(i) == null && notNullColumns.contains(columns.get(i).name())) return null;
+    }
+    return row;
+  }
+
+  private static Set<String> notNullColumnsOf(Table table) {
+    final Set<String> names = new HashSet<>();
+    for (Column column : table.columns()) {
+      if (column.isFlag(Column.Flag.NOT_NULL)) names.add(column.name());
+    }
+    for (Constraint primaryKey : table.constraints(ConstraintKind.PRIMARY)) {
+      for (Column column : primaryKey.columns()) {
+        names.add(column.name());
+      }
+    }
+    return names;
+  }
+
+  private static boolean violatesUniqueKeys(Table table, List<Column> columns, List<List<Object>> rows, List<Object> row) {
+    for (Constraint key : table.constraints(ConstraintKind.UNIQUE)) {
+      final List<Integer> indices = new ArrayList<>();
+      for (Column column : key.columns()) {
+        indices.add(indexOf(columns, column));
+      }
+      // keys with nulls are not compared
+      if (indices.stream().anyMatch(i -> row.get(i) == null)) continue;
+      for (List<Object> other : rows) {
+        if (indices.stream().allMatch(i -> Objects.equals(row.get(i), other.get(i)))) return true;
+      }
+    }
+    return false;
+  }
+
+  private static int indexOf(List<Column> columns, Column column) {
+    for (int i = 0; i < columns.size(); i++) {
+      if (columns.get(i).name().equals(column.name())) return i;
+    }
+    throw new IllegalArgumentException("Unknown column: " + column.name());
+  }
+
+  /** A random non-null value of a column, or null if the type of the column is not supported. */
+  private Object mkValue(Column column, Random random) {
+    // types follow the table types of Calcite, e.g. DECIMAL has no fraction digits
+    return switch (column.dataType().category()) {
+      case INTEGRAL, FRACTION -> pick(numbers, random);
+      case BOOLEAN -> random.nextBoolean();
+      case STRING -> pick(strings, random);
+      case TIME -> pick(dates, random);
+      default -> null;
+    };
+  }
+
+  private static <T> T pick(Set<T> values, Random random) {
+    final int index = random.nextInt(values.size());
+    final Iterator<T> iterator = values.iterator();
+    for (int i = 0; i < index; i++) {
+      iterator.next();
+    }
+    return iterator.next();
+  }
+
+  /** Use the constants of a plan (and neighbouring numbers) as values. */
+  private void collectConstants(RelNode node) {
+    node.accept(new RexShuttle() {
+      @Override
+      public RexNode visitLiteral(RexLiteral literal) {
+        collectConstant(literal);
+        return literal;
+      }
+    });
+    for (RelNode input : node.getInputs()) {
+      collectConstants(input);
+    }
+  }
+
+  private void collectConstant(RexLiteral literal) {
+    if (literal.isNull()) return;
+    final SqlTypeFamily family = literal.getTypeName().getFamily();
+    if (family == SqlTypeFamily.NUMERIC) {
+      final BigDecimal value = literal.getValueAs(BigDecimal.class);
+      if (value == null || value.abs().compareTo(MAX_CONSTANT) > 0) return;
+      final BigDecimal integral = value.setScale(0, RoundingMode.FLOOR);
+      numbers.add(integral.subtract(BigDecimal.ONE));
+      numbers.add(integral);
+      numbers.add(integral.add(BigDecimal.ONE));
+    } else if (family == SqlTypeFamily.CHARACTER) {
+      final String value = literal.getValueAs(String.class);
+      if (value != null) strings.add(value);
+    } else if (family == SqlTypeFamily.DATE) {
+      final DateString value = literal.getValueAs(DateString.class);
+      if (value != null) dates.add(value);
+    }
+  }
+
+  /*
+   * Execution
+   */
+
+  /** Rows of a plan on a database, or null if there are too many of them. */
+  static List<List<Object>> run(RelNode plan, Map<String, List<List<Object>>> db) {
+    final RelNode instance = plan.accept(new RelShuttleImpl() {
+      @Override
+      public RelNode visit(TableScan scan) {
+        return mkValues(scan, db.get(tableNameOf(scan)));
+      }
+    });
+    final List<List<Object>> rows = new ArrayList<>();
+    try (final Interpreter interpreter = new Interpreter(new InstanceDataContext(plan), instance)) {
+      for (Object[] row : interpreter) {
+        Timeout.checkTimeout();
+        if (rows.size() >= MAX_RESULT_ROWS) return null;
+        final List<Object> values = new ArrayList<>(row.length);
+        for (Object value : row) {
+          values.add(normalizeValue(value));
+        }
+        rows.add(values);
+      }
+    }
+    return rows;
+  }
+
+  private static RelNode mkValues(TableScan scan, List<List<Object>> rows) {
+    final RexBuilder rexBuilder = scan.getCluster().getRexBuilder();
+    final List<RelDataTypeField> fields = scan.getRowType().getFieldList();
+    final ImmutableList.Builder<ImmutableList<RexLiteral>> tuples = ImmutableList.builder();
+    for (List<Object> row : rows) {
+      if (row.size() != fields.size()) throw new IllegalArgumentException("Mismatched row: " + row);
+      final ImmutableList.Builder<RexLiteral> tuple = ImmutableList.builder();
+      for (int i = 0; i < fields.size(); i++) {
+        tuple.add(mkLiteral(rexBuilder, row.get(i), fields.get(i).getType()));
+      }
+      tuples.add(tuple.build());
+    }
+    return LogicalValues.create(scan.getCluster(), scan.getRowType(), tuples.build());
+  }
+
+  private static RexLiteral mkLiteral(RexBuilder rexBuilder, Object value, RelDataType type) {
+    if (value == null) return rexBuilder.makeNullLiteral(type);
+    if (value instanceof BigDecimal number) return rexBuilder.makeExactLiteral(number, type);
+    if (value instanceof Boolean bool) return rexBuilder.makeLiteral(bool);
+    if (value instanceof String string) return rexBuilder.makeLiteral(string);
+    if (value instanceof DateString date) return rexBuilder.makeDateLiteral(date);
+    throw new IllegalArgumentException("Unsupported value: " + value);
+  }
+
+  /** Make values that are equal in SQL equal in Java, e.g. 1 (int) and 1.0 (decimal). */
+  private static Object normalizeValue(Object value) {
+    if (value instanceof Double || value instanceof Float) {
+      final double number = ((Number) value).doubleValue();
+      if (Double.isNaN(number) || Double.isInfinite(number)) return number;
+      return new BigDecimal(number).round(APPROX_PRECISION).stripTrailingZeros();
+    }
+    if (value instanceof Number number) return new BigDecimal(number.toString()).stripTrailingZeros();
+    // CHAR values are padded
+    if (value instanceof String string) return string.stripTrailing();
+    return value;
+  }
+
+  static Map<List<Object>, Integer> countRows(List<List<Object>> rows) {
+    final Map<List<Object>, Integer> counts = new HashMap<>();
+    for (List<Object> row : rows) {
+      counts.merge(row, 1, Integer::sum);
+    }
+    return counts;
+  }
+
+  /** Variables of the interpreter, which are fixed so that both plans see the same ones. */
+  private static class InstanceDataContext implements DataContext {
+    private final JavaTypeFactory typeFactory;
+
+    private InstanceDataContext(RelNode plan) {
+      final RelDataTypeFactory typeFactory = plan.getCluster().getTypeFactory();
+      this.typeFactory = typeFactory instanceof JavaTypeFactory javaTypeFactory
+              ? javaTypeFactory : new JavaTypeFactoryImpl();
+    }
+
+    @Override
+    public SchemaPlus getRootSchema() {
+      return null;
+    }
+
+    @Override
+    public JavaTypeFactory getTypeFactory() {
+      return typeFactory;
+    }
+
+    @Override
+    public QueryProvider getQueryProvider() {
+      return null;
+    }
+
+    @Override
+    public Object get(String name) {
+      if (Variable.TIME_ZONE.camelName.equals(name)) return TimeZone.getTimeZone("UTC");
+      if (Variable.CURRENT_TIMESTAMP.camelName.equals(name)
+              || Variable.LOCAL_TIMESTAMP.camelName.equals(name)
+              || Variable.UTC_TIMESTAMP.camelName.equals(name)) {
+        return 0L;
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package sqlsolver.superopt.logic;
+
+import sqlsolver.superopt.liastar.LiaSolver;
+import sqlsolver.superopt.liastar.LiaSolverStatus;
+import sqlsolver.superopt.liastar.LiaStar;
+import sqlsolver.superopt.util.Timeout;
+import sqlsolver.superopt.util.Z3ContextPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.*;
+
+/**
+ * Solve several LIA* formulas (or a formula under several configurations) concurrently
+ * and stop as soon as one of them is UNSAT, which is enough to conclude query equivalence.
+ * <p/>
+ * Each formula is solved by {@link LiaSolver} in a fork of the verification context,
+ * whose metrics are merged into the verification context once the formula is solved.
+ * Cancelled solvers are stopped by interrupting both their threads and their Z3 contexts.
+ */
+class LiaPortfolio implements AutoCloseable {
+  private static final ExecutorService EXECUTOR =
+          Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            final Thread thread = new Thread(runnable, "lia-portfolio");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final VerificationContext context;
+  private final CompletionService<LiaSolverStatus> completion;
+  private final List<Task> pending;
+
+  LiaPortfolio(VerificationContext context) {
+    this.context = context;
+    this.completion = new ExecutorCompletionService<>(EXECUTOR);
+    this.pending = new ArrayList<>();
+  }
+
+  /** Start solving a LIA* formula with certain configuration. The formula is not modified. */
+  void submit(LiaStar f, Properties config) {
+    final Task task = new Task(context.fork(), f, config);
+    task.future = completion.submit(task);
+    pending.add(task);
+  }
+
+  /**
+   * Wait until a submitted formula is UNSAT or all of them are solved.
+   * The remaining formulas are cancelled once an UNSAT one is found.
+   *
+   * @return whether some formula is UNSAT
+   */
+  boolean awaitUnsat() {
+    try {
+      while (!pending.isEmpty()) {
+        final Future<LiaSolverStatus> done = completion.take();
+        for (Task task : pending) {
+          if (task.future == done) {
+            // the task has finished, so its metrics are no longer modified
+            context.metrics().merge(task.context.metrics());
+            pending.remove(task);
+            break;
+          }
+        }
+        if (statusOf(done) == LiaSolverStatus.UNSAT) {
+          cancelAll();
+          return true;
+        }
+      }
+      return false;
+    } catch (InterruptedException e) {
+      // the verification itself is interrupted
+      cancelAll();
+      Thread.currentThread().interrupt();
+      Timeout.checkTimeout();
+      return false;
+    }
+  }
+
+  @Override
+  public void close() {
+    cancelAll();
+  }
+
+  private void cancelAll() {
+    for (Task task : pending) {
+      task.cancel();
+    }
+    pending.clear();
+  }
+
+  private static LiaSolverStatus statusOf(Future<LiaSolverStatus> done) throws InterruptedException {
+    try {
+      return done.get();
+    } catch (ExecutionException | CancellationException e) {
+      return LiaSolverStatus.UNKNOWN;
+    }
+  }
+
+  private static class Task implements Callable<LiaSolverStatus> {
+    private final VerificationContext context;
+    private final LiaStar formula;
+    private final Properties config;
+    private Future<LiaSolverStatus> future;
+    // guarded by this
+    private Thread runner;
+    private boolean cancelled;
+
+    private Task(VerificationContext context, LiaStar formula, Properties config) {
+      this.context = context;
+      this.formula = formula;
+      this.config = config;
+    }
+
+    @Override
+    public LiaSolverStatus call() {
+      synchronized (this) {
+        if (cancelled) return LiaSolverStatus.UNKNOWN;
+        runner = Thread.currentThread();
+      }
+      try (final VerificationContext.Scope ignored = context.enter()) {
+        return LiaSolver.solveWithConfig(formula, config);
+      } finally {
+        synchronized (this) {
+          runner = null;
+        }
+      }
+    }
+
+    private void cancel() {
+      synchronized (this) {
+        cancelled = true;
+        // the runner is only interrupted while it is still working on this task
+        if (runner != null) Z3ContextPool.interrupt(runner);
+      }
+      future.cancel(true);
+    }
+  }
+}
@@ -11,6 +11,7 @@ import sqlsolver.superopt.uexpr.*;
 import sqlsolver.superopt.fragment.Op;
 import sqlsolver.superopt.fragment.Symbols;
 import sqlsolver.superopt.uexpr.*;
+import sqlsolver.superopt.util.Z3Support;
 
 import java.util.*;
 
@@ -689,7 +690,7 @@ class LogicProver {
     LogicSupport.incrementNumInvocations();
     solver.push();
     solver.add(exprs);
-    final Status res = solver.check();
+    final Status res = Z3Support.check(solver);
     if (LogicSupport.dumpFormulas) {
       System.out.println("==== Begin of Snippet-" + (++callCount) + " ====");
       System.out.println(solver);
@@ -5,15 +5,17 @@ import com.microsoft.z3.Global;
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.*;
+import sqlsolver.common.config.GlobalConfig;
+import sqlsolver.common.utils.LongMetric;
 import sqlsolver.sql.schema.Schema;
 import sqlsolver.superopt.fragment.Agg;
 import sqlsolver.superopt.substitution.Substitution;
 import sqlsolver.superopt.substitution.SubstitutionTranslatorResult;
 import sqlsolver.superopt.uexpr.*;
-import sqlsolver.superopt.uexpr.normalizer.QueryUExprICRewriter;
 import sqlsolver.superopt.fragment.AggFuncKind;
 import sqlsolver.superopt.fragment.Symbol;
 import sqlsolver.superopt.util.Timeout;
+import sqlsolver.superopt.util.Z3ContextPool;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -61,19 +63,22 @@ public abstract class LogicSupport {
   }
 
   public static VerificationResult proveEq(UExprTranslationResult uExprs) {
-    try (final Context z3 = new Context()) {
+    try (final Z3ContextPool.Lease lease = Z3ContextPool.borrow()) {
+      final Context z3 = lease.context();
       return new LogicProver(uExprs, z3, 0).proveEq();
     }
   }
 
   public static VerificationResult proveEqNotNeedLia(UExprTranslationResult uExprs) {
-    try (final Context z3 = new Context()) {
+    try (final Z3ContextPool.Lease lease = Z3ContextPool.borrow()) {
+      final Context z3 = lease.context();
       return new LogicProver(uExprs, z3, 0).proveEqNotNeedLia();
     }
   }
 
   public static VerificationResult proveEq(UExprTranslationResult uExprs, int tweaks) {
-    try (final Context z3 = new Context()) {
+    try (final Z3ContextPool.Lease lease = Z3ContextPool.borrow()) {
+      final Context z3 = lease.context();
       return new LogicProver(uExprs, z3, tweaks).proveEq();
     }
   }
@@ -191,53 +196,70 @@ public abstract class LogicSupport {
     return VerificationResult.EQ;
   }
 
-  private static VerificationResult proveEqByLIAStarSelectedIC(RelNode p0, RelNode p1, Schema schema,
+  private static VerificationResult proveEqByLIAStarSelectedIC(UExprConcreteTranslationBase base, Schema schema,
                                                                int extraFlags) {
+    final VerificationContext context = VerificationContext.current();
+    final VerificationMetrics metrics = context.metrics();
+    final int icParallelism = context.icParallelism();
+    if (icParallelism > 0) {
+      try (final LongMetric.Timer ignored = VerificationMetrics.time(metrics.elapsedICSelection);
+           final ICVariantPortfolio portfolio = new ICVariantPortfolio(context, base, schema, extraFlags)) {
+        return portfolio.prove(icParallelism);
+      }
+    }
     int selectedIC = 0;
-    do {
-      QueryUExprICRewriter.selectIC(selectedIC);
-      final UExprConcreteTranslationResult uExprsWithICRewrite =
-              UExprSupport.translateQueryToUExpr(p0, p1, schema,
-                      UExprSupport.UEXPR_FLAG_INTEGRITY_CONSTRAINT_REWRITE
-                              | extraFlags);
-      if (uExprsWithICRewrite != null) {
-        final VerificationResult res1 = LogicSupport.proveEqByLIAStar(uExprsWithICRewrite, schema);
-        if (res1 == VerificationResult.EQ) {
-          QueryUExprICRewriter.selectIC(-1);
-          return res1;
+    try (final LongMetric.Timer ignored = VerificationMetrics.time(metrics.elapsedICSelection)) {
+      do {
+        metrics.numICVariants.increment();
+        context.selectIC(selectedIC);
+        final UExprConcreteTranslationResult uExprsWithICRewrite =
+                UExprSupport.finishQueryToUExpr(base,
+                        UExprSupport.UEXPR_FLAG_INTEGRITY_CONSTRAINT_REWRITE
+                                | extraFlags);
+        if (uExprsWithICRewrite != null) {
+          final VerificationResult res1 = LogicSupport.proveEqByLIAStar(uExprsWithICRewrite, schema);
+          if (res1 == VerificationResult.EQ) return res1;
         }
-      }
-      selectedIC = selectedIC + 1;
-    } while (QueryUExprICRewriter.hasIC());
-    QueryUExprICRewriter.selectIC(-1);
-    return VerificationResult.NEQ;
+        selectedIC = selectedIC + 1;
+      } while (context.hasIC());
+      return VerificationResult.NEQ;
+    } finally {
+      context.selectIC(-1);
+    }
   }
 
-  private static VerificationResult proveEqByLIAStarConcreteNoSortWithIC(RelNode p0, RelNode p1, Schema schema, int extraFlags) {
+  private static VerificationResult proveEqByLIAStarConcreteNoSortWithIC(UExprConcreteTranslationBase base, Schema schema, int extraFlags) {
     final UExprConcreteTranslationResult uExprsWithIC =
-            UExprSupport.translateQueryToUExpr(p0, p1, schema,
+            UExprSupport.finishQueryToUExpr(base,
                     UExprSupport.UEXPR_FLAG_INTEGRITY_CONSTRAINT_REWRITE
                             | extraFlags);
     if (uExprsWithIC != null) {
       if (!isEqualTwoValueList(uExprsWithIC.srcTupleVarSchemaOf(uExprsWithIC.sourceOutVar()), uExprsWithIC.tgtTupleVarSchemaOf(uExprsWithIC.targetOutVar()))) {
+        VerificationContext.current().markRefuted();
         return VerificationResult.NEQ;
       }
       final VerificationResult noSelectedICResult = LogicSupport.proveEqByLIAStar(uExprsWithIC, schema);
       if (noSelectedICResult == VerificationResult.EQ) return VerificationResult.EQ;
-      if (proveEqByLIAStarSelectedIC(p0, p1, schema, extraFlags) == VerificationResult.EQ) return VerificationResult.EQ;
+      if (proveEqByLIAStarSelectedIC(base, schema, extraFlags) == VerificationResult.EQ) return VerificationResult.EQ;
     }
     return (uExprsWithIC == null) ? VerificationResult.UNKNOWN : VerificationResult.NEQ;
   }
 
   private static VerificationResult proveEqByLIAStarConcreteNoSort(RelNode p0, RelNode p1, Schema schema) {
-    VerificationResult resICUnexplainedPred = proveEqByLIAStarConcreteNoSortWithIC(p0, p1, schema,
+    if (GlobalConfig.SQLSOLVER_REFUTE_INSTANCES > 0 && refuteByInstances(p0, p1, schema)) return VerificationResult.NEQ;
+    // translations are shared by the attempts with and without IC rewriting
+    final UExprConcreteTranslationBase unexplainedPredBase =
+            UExprSupport.translateQueryToUExprBase(p0, p1, schema, UExprSupport.UEXPR_FLAG_NO_EXPLAIN_PREDICATES);
+    VerificationResult resICUnexplainedPred = proveEqByLIAStarConcreteNoSortWithIC(unexplainedPredBase, schema,
             UExprSupport.UEXPR_FLAG_NO_EXPLAIN_PREDICATES);
     if (resICUnexplainedPred == VerificationResult.EQ) return VerificationResult.EQ;
-    VerificationResult resIC = proveEqByLIAStarConcreteNoSortWithIC(p0, p1, schema, 0);
+    final UExprConcreteTranslationBase base = UExprSupport.translateQueryToUExprBase(p0, p1, schema, 0);
+    VerificationResult resIC = proveEqByLIAStarConcreteNoSortWithIC(base, schema, 0);
     if (resIC == VerificationResult.EQ) return VerificationResult.EQ;
-    final UExprConcreteTranslationResult uExprs = UExprSupport.translateQueryToUExpr(p0, p1, schema, 0);
+    final UExprConcreteTranslationResult uExprs = UExprSupport.finishQueryToUExpr(base, 0);
     if (uExprs != null) {
       if (!isEqualTwoValueList(uExprs.srcTupleVarSchemaOf(uExprs.sourceOutVar()), uExprs.tgtTupleVarSchemaOf(uExprs.targetOutVar()))) {
+        VerificationContext.current().markRefuted();
         return VerificationResult.NEQ;
       }
       final VerificationResult res0 = LogicSupport.proveEqByLIAStar(uExprs, schema);
@@ -247,6 +269,32 @@ public abstract class LogicSupport {
             VerificationResult.UNKNOWN : VerificationResult.NEQ;
   }
 
+  /**
+   * Try to refute the equivalence of two plans by running them on small databases.
+   * The database on which they differ is recorded in the verification context.
+   */
+  private static boolean refuteByInstances(RelNode p0, RelNode p1, Schema schema) {
+    final VerificationContext context = VerificationContext.current();
+    try (final LongMetric.Timer ignored = VerificationMetrics.time(context.metrics().elapsedRefutation)) {
+      final NeqWitness witness = new InstanceRefuter(p0, p1, schema)
+              .refute(GlobalConfig.SQLSOLVER_REFUTE_INSTANCES, GlobalConfig.SQLSOLVER_REFUTE_TIMEOUT);
+      if (witness == null) return false;
+      context.setWitness(witness);
+      return true;
+    }
+  }
+
+  /**
+   * Prove the equivalence of two concrete plans under the given verification context,
+   * which becomes the current context of this thread during the proof.
+   */
+  public static VerificationResult proveEqByLIAStarConcrete(RelNode p0, RelNode p1, Schema schema,
+                                                            VerificationContext context) {
+    try (final VerificationContext.Scope ignored = context.enter()) {
+      return proveEqByLIAStarConcrete(p0, p1, schema);
+    }
+  }
+
   public static VerificationResult proveEqByLIAStarConcrete(RelNode p0, RelNode p1, Schema schema) {
     if (!hasNodeOfKind(p0, Sort.class) && !hasNodeOfKind(p1, Sort.class)) {
       return proveEqByLIAStarConcreteNoSort(p0, p1, schema);
@@ -0,0 +1,20 @@
+package sqlsolver.superopt.logic;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A database on which two plans have different results, which witnesses that they are not equivalent.
+ * Tables are keyed by their names, and each row lists the values of the columns of its table in order.
+ */
+public record NeqWitness(Map<String, List<List<Object>>> tables,
+                         List<List<Object>> result0,
+                         List<List<Object>> result1) {
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder();
+    tables.forEach((name, rows) -> builder.append(name).append(": ").append(rows).append('\n'));
+    return builder.append("result0: ").append(result0).append('\n')
+            .append("result1: ").append(result1).toString();
+  }
+}
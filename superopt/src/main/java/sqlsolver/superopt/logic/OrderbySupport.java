@@ -44,7 +44,8 @@ public class OrderbySupport {
    * The interface that called by others.
    */
   public static VerificationResult sortHandler(RelNode p0, RelNode p1, Schema schema) {
-    OrderbySupport os = new OrderbySupport(p0, p1, schema);
+    // temporary tables are added to the schema, so work on a copy of the caller's schema
+    OrderbySupport os = new OrderbySupport(p0, p1, schema.copy());
     return os.trRules();
   }
 
@@ -6,6 +6,8 @@ import sqlsolver.sql.schema.Schema;
 import sqlsolver.superopt.uexpr.UTerm;
 import sqlsolver.superopt.uexpr.UVar;
 import sqlsolver.superopt.util.Timeout;
+import sqlsolver.superopt.util.Z3ContextPool;
+import sqlsolver.superopt.util.Z3Support;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -60,7 +62,8 @@ public class SetSolver {
 
   private VerificationResult proveEq(SetTranslator.Config config) {
     // TODO: add IC if necessary
-    try (final Context z3 = new Context()) {
+    try (final Z3ContextPool.Lease lease = Z3ContextPool.borrow()) {
+      final Context z3 = lease.context();
       try {
         // translate to FOL
         final TranslatorContext ctx = new TranslatorContext(z3, varSchema, tableSchema);
@@ -79,7 +82,7 @@ public class SetSolver {
         // solve
         final Solver solver = ctx.getSolver();
         solver.add(z3.mkNot(z3.mkEq(arithExp1, arithExp2)));
-        return trResult(solver.check());
+        return trResult(Z3Support.check(solver));
       } catch (Throwable e) {
         Timeout.bypassTimeout(e);
         return VerificationResult.UNKNOWN;
@@ -2,17 +2,20 @@ package sqlsolver.superopt.logic;
 
 import org.apache.commons.lang3.tuple.Pair;
 import sqlsolver.common.config.GlobalConfig;
+import sqlsolver.common.utils.LongMetric;
 import sqlsolver.common.utils.SetSupport;
 import sqlsolver.sql.plan.Value;
 import sqlsolver.sql.schema.Schema;
 import sqlsolver.superopt.liastar.LiaSolverStatus;
 import sqlsolver.superopt.liastar.LiaSolver;
+import sqlsolver.superopt.liastar.LiaSolverSession;
 import sqlsolver.superopt.liastar.LiaStar;
 import sqlsolver.superopt.liastar.translator.BVM;
 import sqlsolver.superopt.liastar.translator.BvmEnumerator;
 import sqlsolver.superopt.liastar.translator.HeuristicBvmEnumerator;
 import sqlsolver.superopt.liastar.translator.LiaStarTranslator;
 import sqlsolver.superopt.uexpr.*;
+import sqlsolver.superopt.uexpr.normalizer.QueryUExprICRewriter;
 
 import java.util.*;
 
@@ -37,8 +40,10 @@ public class SqlSolver {
   private UTerm query2;
   private UVar outVar1;
   private UVar outVar2;
+  private final VerificationContext context;
 
   public SqlSolver(UExprTranslationResult uExprs) {
+    this.context = VerificationContext.current();
     this.query1 = uExprs.sourceExpr().copy();
     this.query2 = uExprs.targetExpr().copy();
     this.outVar1 = uExprs.sourceOutVar().copy();
@@ -46,6 +51,15 @@ public class SqlSolver {
   }
 
   public SqlSolver(UExprConcreteTranslationResult uExprs, Schema schema) {
+    this(uExprs, schema, VerificationContext.current());
+  }
+
+  /**
+   * Prove the translated queries under the given verification context.
+   * The context must be the current context of the thread calling {@link #proveEq()}.
+   */
+  public SqlSolver(UExprConcreteTranslationResult uExprs, Schema schema, VerificationContext context) {
+    this.context = context;
     tableSchema = schema;
     this.varSchema = uExprs.getTupleVarSchemas();
     this.query1 = uExprs.sourceExpr().copy();
@@ -61,6 +75,8 @@ public class SqlSolver {
     // compare both U-expressions
     // completely the same U-expressions are equal obviously
     preprocess();
+    final VerificationMetrics metrics = context.metrics();
+    metrics.uexprSize.add(query1.size() + query2.size());
     if (LogicSupport.dumpLiaFormulas) {
       System.out.println("==> Rewritten UExpressions sent to Lia solver: ");
       System.out.println("[[q0]](" + outVar1 + ") := ");
@@ -70,18 +86,21 @@ public class SqlSolver {
       query2.prettyPrint();
       System.out.println();
     }
-    UMulImpl.useWeakEquals = true;
-    if (query1.equals(query2)) {
-      UMulImpl.useWeakEquals = false;
-      return VerificationResult.EQ;
-    }
-    UMulImpl.useWeakEquals = false;
+    UExprSupport.setUseWeakEquals(query1, true);
+    UExprSupport.setUseWeakEquals(query2, true);
+    final boolean weaklyEqual = query1.equals(query2);
+    UExprSupport.setUseWeakEquals(query1, false);
+    UExprSupport.setUseWeakEquals(query2, false);
+    if (weaklyEqual) return VerificationResult.EQ;
 
     // try to prove equivalence when summations are under set semantics
     if (LogicSupport.dumpLiaFormulas) {
       System.out.println("==> Try set solver:");
     }
-    final VerificationResult setResult = new SetSolver(query1, query2, varSchema, tableSchema).proveEq();
+    final VerificationResult setResult;
+    try (final LongMetric.Timer ignored = VerificationMetrics.time(metrics.elapsedSetSolver)) {
+      setResult = new SetSolver(query1, query2, varSchema, tableSchema).proveEq();
+    }
     if (LogicSupport.dumpLiaFormulas) {
       System.out.println("Set solver result: " + setResult);
     }
@@ -92,39 +111,107 @@ public class SqlSolver {
     boolean allSAT = true;
     LiaStarTranslator translator = new LiaStarTranslator(varSchema, query1, query2, outVar1);
     BvmEnumerator bvmEnumerator = new HeuristicBvmEnumerator(query1, query2, outVar1);
-    BVM currentBVM = bvmEnumerator.next();
-    int count = 0;
-    while (currentBVM != null) {
-      // given a BVM, translate U-exp to LIA*
-      if (LogicSupport.dumpLiaFormulas) {
-        System.out.println("==> Using bound var matching " + (++count) + ": ");
-        System.out.println(currentBVM);
-      }
-      LiaStar fstar = translator.uexpPairToLiastar(currentBVM);
-      if (LogicSupport.dumpLiaFormulas) {
-        System.out.println("==> Lia* formula: ");
-        System.out.println(fstar);
-      }
-      // solve LIA*
-      for (Properties config : LIA_SOLVER_CONFIGS) {
-        final LiaSolverStatus result = LiaSolver.solveWithConfig(fstar, config);
-        switch (result) {
-          case UNSAT:
-            // one UNSAT indicates query equivalence
-            return VerificationResult.EQ;
-          default:
-            allSAT = allSAT && result == LiaSolverStatus.UNKNOWN;
+    if (GlobalConfig.SQLSOLVER_LIA_PORTFOLIO > 0) {
+      return proveEqByLiaPortfolio(translator, bvmEnumerator, GlobalConfig.SQLSOLVER_LIA_PORTFOLIO);
+    }
+    // LIA formulas of all BVMs may share an incremental solver
+    try (final LiaSolverSession session = GlobalConfig.SQLSOLVER_LIA_INCREMENTAL ? new LiaSolverSession() : null) {
+      BVM currentBVM = nextBVM(bvmEnumerator);
+      int count = 0;
+      while (currentBVM != null) {
+        // given a BVM, translate U-exp to LIA*
+        if (LogicSupport.dumpLiaFormulas) {
+          System.out.println("==> Using bound var matching " + (++count) + ": ");
+          System.out.println(currentBVM);
+        }
+        LiaStar fstar = translateToLiaStar(translator, currentBVM);
+        if (LogicSupport.dumpLiaFormulas) {
+          System.out.println("==> Lia* formula: ");
+          System.out.println(fstar);
+        }
+        // solve LIA*
+        for (Properties config : LIA_SOLVER_CONFIGS) {
+          final LiaSolverStatus result = LiaSolver.solveWithConfig(fstar, config, session);
+          switch (result) {
+            case UNSAT:
+              // one UNSAT indicates query equivalence
+              return VerificationResult.EQ;
+            default:
+              allSAT = allSAT && result == LiaSolverStatus.UNKNOWN;
+          }
         }
+        // move onto next BVM
+        currentBVM = nextBVM(bvmEnumerator);
       }
-      // move onto next BVM
-      currentBVM = bvmEnumerator.next();
     }
     // a handful of BVMs have been enumerated; the result is perceived as NEQ
     return VerificationResult.NEQ;
   }
 
+  /**
+   * Solve the LIA* formulas of {@code width} BVMs at a time, each under all LIA solver configs,
+   * concurrently. Like the sequential search, any UNSAT formula indicates query equivalence.
+   */
+  private VerificationResult proveEqByLiaPortfolio(
+          LiaStarTranslator translator, BvmEnumerator bvmEnumerator, int width) {
+    try (final LiaPortfolio portfolio = new LiaPortfolio(context)) {
+      BVM currentBVM = nextBVM(bvmEnumerator);
+      int count = 0;
+      while (currentBVM != null) {
+        for (int i = 0; i < width && currentBVM != null; i++) {
+          if (LogicSupport.dumpLiaFormulas) {
+            System.out.println("==> Using bound var matching " + (++count) + ": ");
+            System.out.println(currentBVM);
+          }
+          final LiaStar fstar = translateToLiaStar(translator, currentBVM);
+          if (LogicSupport.dumpLiaFormulas) {
+            System.out.println("==> Lia* formula: ");
+            System.out.println(fstar);
+          }
+          for (Properties config : LIA_SOLVER_CONFIGS) {
+            portfolio.submit(fstar, config);
+          }
+          currentBVM = nextBVM(bvmEnumerator);
+        }
+        if (portfolio.awaitUnsat()) return VerificationResult.EQ;
+      }
+    }
+    return VerificationResult.NEQ;
+  }
+
+  private BVM nextBVM(BvmEnumerator bvmEnumerator) {
+    final VerificationMetrics metrics = context.metrics();
+    try (final LongMetric.Timer ignored = VerificationMetrics.time(metrics.elapsedBvmEnumeration)) {
+      final BVM bvm = bvmEnumerator.next();
+      if (bvm != null) metrics.numBvms.increment();
+      return bvm;
+    }
+  }
+
+  private LiaStar translateToLiaStar(LiaStarTranslator translator, BVM bvm) {
+    final VerificationMetrics metrics = context.metrics();
+    try (final LongMetric.Timer ignored = VerificationMetrics.time(metrics.elapsedLiaTranslation)) {
+      final LiaStar fstar = translator.uexpPairToLiastar(bvm);
+      metrics.liaSize.add(fstar.size());
+      return fstar;
+    }
+  }
+
+  /**
+   * Preprocess both U-expressions as {@link #proveEq()} does and return them,
+   * i.e. the input of the set solver and LIA* translation. Used by benchmarks.
+   */
+  public Pair<UTerm, UTerm> preprocessedQueries() {
+    preprocess();
+    return Pair.of(query1, query2);
+  }
+
+  /**
+   * Reset the per-verification state of the current verification context.
+   */
   public static void initialize() {
     LiaStar.resetId();
+    QueryUExprICRewriter.selectIC(-1);
   }
 
   Set<UVar> decomposeUVar(UVar outVar) {
@@ -0,0 +1,228 @@
+package sqlsolver.superopt.logic;
+
+import sqlsolver.common.config.GlobalConfig;
+import sqlsolver.common.utils.NameSequence;
+import sqlsolver.sql.calcite.CalciteContext;
+import sqlsolver.sql.schema.Schema;
+import sqlsolver.superopt.util.LiaQueryCache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mutable state of a single verification.
+ * <p/>
+ * The prover keeps a handful of switches and name sequences
+ * (e.g. the selected integrity constraint and fresh variable names)
+ * which used to be global. They live here so that verifications in one JVM
+ * do not interfere with each other.
+ * <p/>
+ * Each thread works on its current context, which is a context of its own
+ * unless another context is entered via {@link #enter()}.
+ * Entering a context also enters its {@link CalciteContext}.
+ * A context must not be entered by several threads at the same time;
+ * use {@link #fork()} to obtain a context for another thread of the same verification.
+ */
+public class VerificationContext {
+  // the default context of a thread lives as long as the thread, so it does not cache LIA checks
+  private static final ThreadLocal<VerificationContext> CURRENT =
+          ThreadLocal.withInitial(() -> new VerificationContext(
+                  CalciteContext.current(), new VerificationMetrics(), new LiaQueryCache(0)));
+
+  private final CalciteContext calciteContext;
+  // shared with forked contexts
+  private final AtomicInteger nextLiaVarId;
+  private final LiaQueryCache liaQueryCache;
+  private final VerificationMetrics metrics;
+
+  private Schema castSchema;
+  private int selectedIC;
+  private boolean hasIC;
+  private int icParallelism;
+  private NameSequence freshVarNameSequence;
+  private NameSequence freeVarNameSequence;
+  private NeqWitness witness;
+  private boolean refuted;
+
+  public VerificationContext() {
+    this(new CalciteContext());
+  }
+
+  public VerificationContext(CalciteContext calciteContext) {
+    this(calciteContext, new VerificationMetrics());
+  }
+
+  /**
+   * A context whose stages record into {@code metrics}.
+   */
+  public VerificationContext(CalciteContext calciteContext, VerificationMetrics metrics) {
+    this(calciteContext, metrics, LiaQueryCache.mkDefault());
+  }
+
+  private VerificationContext(CalciteContext calciteContext, VerificationMetrics metrics, LiaQueryCache liaQueryCache) {
+    this.calciteContext = calciteContext;
+    this.nextLiaVarId = new AtomicInteger(0);
+    this.liaQueryCache = liaQueryCache;
+    this.metrics = metrics;
+    this.selectedIC = -1;
+    this.hasIC = true;
+    this.icParallelism = GlobalConfig.SQLSOLVER_IC_PARALLELISM;
+  }
+
+  private VerificationContext(VerificationContext parent) {
+    this.calciteContext = parent.calciteContext;
+    this.nextLiaVarId = parent.nextLiaVarId;
+    this.liaQueryCache = parent.liaQueryCache;
+    this.metrics = new VerificationMetrics();
+    this.castSchema = parent.castSchema;
+    this.selectedIC = parent.selectedIC;
+    this.hasIC = parent.hasIC;
+    this.icParallelism = parent.icParallelism;
+    // name sequences are not thread-safe, so each fork counts on from a copy
+    this.freshVarNameSequence = parent.freshVarNameSequence == null ? null : parent.freshVarNameSequence.copy();
+    this.freeVarNameSequence = parent.freeVarNameSequence == null ? null : parent.freeVarNameSequence.copy();
+  }
+
+  public static VerificationContext current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Make a context for another thread working on the same verification.
+   * The fork starts with the switches and (copies of) the name sequences of this context and
+   * shares the Calcite context, the LIA* variable IDs and the cache of LIA checks with it.
+   * It has its own metrics, which should be merged into {@link #metrics()} once the fork finishes.
+   */
+  public VerificationContext fork() {
+    return new VerificationContext(this);
+  }
+
+  /**
+   * Make this context the current context of this thread until the returned scope is closed.
+   */
+  public Scope enter() {
+    final VerificationContext previous = CURRENT.get();
+    final CalciteContext.Scope calciteScope = calciteContext.enter();
+    CURRENT.set(this);
+    return () -> {
+      CURRENT.set(previous);
+      calciteScope.close();
+    };
+  }
+
+  public CalciteContext calciteContext() {
+    return calciteContext;
+  }
+
+  public VerificationMetrics metrics() {
+    return metrics;
+  }
+
+  /* LIA* variables */
+
+  public int nextLiaVarId() {
+    return nextLiaVarId.incrementAndGet();
+  }
+
+  public void resetLiaVarId() {
+    nextLiaVarId.set(0);
+  }
+
+  /**
+   * Results of LIA checks made by Z3 during this verification.
+   * The cache of the default context of a thread is disabled, since that context is never discarded.
+   */
+  public LiaQueryCache liaQueryCache() {
+    return liaQueryCache;
+  }
+
+  /* U-expressions */
+
+  public Schema castSchema() {
+    return castSchema;
+  }
+
+  public void setCastSchema(Schema castSchema) {
+    this.castSchema = castSchema;
+  }
+
+  public NameSequence freshVarNameSequence() {
+    return freshVarNameSequence;
+  }
+
+  public void setFreshVarNameSequence(NameSequence freshVarNameSequence) {
+    this.freshVarNameSequence = freshVarNameSequence;
+  }
+
+  public NameSequence freeVarNameSequence() {
+    return freeVarNameSequence;
+  }
+
+  public void setFreeVarNameSequence(NameSequence freeVarNameSequence) {
+    this.freeVarNameSequence = freeVarNameSequence;
+  }
+
+  /* Integrity constraints */
+
+  /**
+   * The index of the only nonempty integrity constraint applied by
+   * the IC rewriter, or a negative number if all of them are applied.
+   */
+  public int selectedIC() {
+    return selectedIC;
+  }
+
+  public void selectIC(int index) {
+    this.selectedIC = index;
+  }
+
+  /** Whether the IC selected by {@link #selectedIC()} exists. */
+  public boolean hasIC() {
+    return hasIC;
+  }
+
+  public void setHasIC(boolean hasIC) {
+    this.hasIC = hasIC;
+  }
+
+  /**
+   * Number of IC variants proved at a time, or 0 to prove them one by one in the verifying thread.
+   * Defaults to {@link GlobalConfig#SQLSOLVER_IC_PARALLELISM}.
+   */
+  public int icParallelism() {
+    return icParallelism;
+  }
+
+  public void setICParallelism(int icParallelism) {
+    this.icParallelism = icParallelism;
+  }
+
+  /* Results */
+
+  /** A database on which the plans of this verification differ, if one has been found. */
+  public NeqWitness witness() {
+    return witness;
+  }
+
+  public void setWitness(NeqWitness witness) {
+    this.witness = witness;
+    this.refuted = true;
+  }
+
+  /**
+   * Whether the plans of this verification are known to be NEQ regardless of the time budget,
+   * e.g. they differ on a database or in their output schemas.
+   * Otherwise, NEQ may only mean that the prover has failed to prove EQ in time.
+   */
+  public boolean isRefuted() {
+    return refuted;
+  }
+
+  public void markRefuted() {
+    this.refuted = true;
+  }
+
+  public interface Scope extends AutoCloseable {
+    @Override
+    void close();
+  }
+}
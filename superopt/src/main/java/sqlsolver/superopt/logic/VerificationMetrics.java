@@ -0,0 +1,130 @@
+package sqlsolver.superopt.logic;
+
+import sqlsolver.common.utils.IntMetric;
+import sqlsolver.common.utils.LongMetric;
+import sqlsolver.common.utils.Metric;
+import sqlsolver.common.utils.Metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of verifying a query pair: wall time (in micros) of each stage,
+ * numbers of tries (e.g. databases tried to refute equivalence), hits and misses of cached LIA checks,
+ * and total sizes (numbers of nodes) of U-expressions and LIA* formulas sent to solvers.
+ * <p/>
+ * Each {@link VerificationContext} has its own metrics, and stages record into the metrics
+ * of the current context, i.e. {@link #current()}. Metrics are not thread-safe;
+ * a forked context has its own metrics, which are merged into its parent's by {@link #merge}.
+ * <p/>
+ * Stages may be nested, e.g. normalization is part of translation and Z3 checks are part of LIA* solving.
+ * Besides, the number of times each normalization rule modifies a U-expression is recorded.
+ */
+public class VerificationMetrics implements Metrics<VerificationMetrics> {
+  public final LongMetric elapsedFrontend = new LongMetric("Frontend(us)");
+  public final LongMetric elapsedRefutation = new LongMetric("Refute(us)");
+  public final LongMetric elapsedTranslation = new LongMetric("Translate(us)");
+  public final LongMetric elapsedNormalization = new LongMetric("Normalize(us)");
+  public final LongMetric elapsedICSelection = new LongMetric("SelectIC(us)");
+  public final LongMetric elapsedSetSolver = new LongMetric("SetSolver(us)");
+  public final LongMetric elapsedBvmEnumeration = new LongMetric("EnumBVM(us)");
+  public final LongMetric elapsedLiaTranslation = new LongMetric("TranslateLia(us)");
+  public final LongMetric elapsedUnderapp = new LongMetric("Underapp(us)");
+  public final LongMetric elapsedOverapp = new LongMetric("Overapp(us)");
+  public final LongMetric elapsedZ3 = new LongMetric("Z3(us)");
+  public final IntMetric numInstances = new IntMetric("#Instance");
+  public final IntMetric numICVariants = new IntMetric("#IC");
+  public final IntMetric numBvms = new IntMetric("#BVM");
+  public final IntMetric numLiaSolverRuns = new IntMetric("#LiaSolver");
+  public final IntMetric numZ3Checks = new IntMetric("#Z3");
+  public final IntMetric numZ3CacheHits = new IntMetric("#Z3CacheHit");
+  public final IntMetric numZ3CacheMisses = new IntMetric("#Z3CacheMiss");
+  public final IntMetric uexprSize = new IntMetric("UExprSize");
+  public final IntMetric liaSize = new IntMetric("LiaSize");
+
+  private final List<Metric> metrics =
+      List.of(
+          elapsedFrontend,
+          elapsedRefutation,
+          elapsedTranslation,
+          elapsedNormalization,
+          elapsedICSelection,
+          elapsedSetSolver,
+          elapsedBvmEnumeration,
+          elapsedLiaTranslation,
+          elapsedUnderapp,
+          elapsedOverapp,
+          elapsedZ3,
+          numInstances,
+          numICVariants,
+          numBvms,
+          numLiaSolverRuns,
+          numZ3Checks,
+          numZ3CacheHits,
+          numZ3CacheMisses,
+          uexprSize,
+          liaSize);
+  // keyed by rule names
+  private final Map<String, Integer> normalizationRuleFires = new TreeMap<>();
+
+  /** Metrics of the current verification. */
+  public static VerificationMetrics current() {
+    return VerificationContext.current().metrics();
+  }
+
+  /** Time a stage in micros. */
+  public static LongMetric.Timer time(LongMetric metric) {
+    return metric.timeIt(TimeUnit.MICROSECONDS);
+  }
+
+  /** Record that a normalization rule has modified a U-expression. */
+  public void recordRuleFire(String rule) {
+    normalizationRuleFires.merge(rule, 1, Integer::sum);
+  }
+
+  /** Fire counts of normalization rules, keyed by rule names. */
+  public Map<String, Integer> normalizationRuleFires() {
+    return Collections.unmodifiableMap(normalizationRuleFires);
+  }
+
+  /**
+   * Add the metrics of a forked context to this one.
+   * It must be called by the thread of this context after the fork has finished.
+   */
+  public void merge(VerificationMetrics fork) {
+    accumulate(fork);
+    fork.normalizationRuleFires.forEach((rule, count) -> normalizationRuleFires.merge(rule, count, Integer::sum));
+  }
+
+  @Override
+  public List<Metric> metrics() {
+    return metrics;
+  }
+
+  /** The metrics as a JSON object, keyed by metric names. */
+  public String toJson() {
+    final StringBuilder builder = new StringBuilder("{");
+    for (Metric metric : metrics) {
+      if (builder.length() > 1) builder.append(", ");
+      builder.append('"').append(metric.name()).append("\": ").append(metric.value());
+    }
+    builder.append(", \"NormalizeRules\": {");
+    boolean first = true;
+    for (Map.Entry<String, Integer> fire : normalizationRuleFires.entrySet()) {
+      if (!first) builder.append(", ");
+      builder.append('"').append(fire.getKey()).append("\": ").append(fire.getValue());
+      first = false;
+    }
+    return builder.append("}}").toString();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder builder = stringify(new StringBuilder());
+    normalizationRuleFires.forEach((rule, count) -> builder.append('\n').append(rule).append(": ").append(count));
+    return builder.toString();
+  }
+}
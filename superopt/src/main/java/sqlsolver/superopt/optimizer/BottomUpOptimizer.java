@@ -1,5 +1,6 @@
 package sqlsolver.superopt.optimizer;
 
+import sqlsolver.common.config.GlobalConfig;
 import sqlsolver.common.utils.Lazy;
 import sqlsolver.common.utils.ListSupport;
 import sqlsolver.sql.plan.PlanContext;
@@ -8,9 +9,14 @@ import sqlsolver.sql.plan.PlanNode;
 import sqlsolver.sql.plan.PlanSupport;
 import sqlsolver.superopt.substitution.Substitution;
 import sqlsolver.superopt.substitution.SubstitutionBank;
-import sqlsolver.superopt.util.Fingerprint;
+import sqlsolver.superopt.substitution.SubstitutionSupport;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static java.util.Collections.*;
 import static java.util.Objects.requireNonNull;
@@ -28,11 +34,20 @@ class BottomUpOptimizer implements Optimizer {
   private boolean tracing, verbose, extended, keepOriginal;
   private final Lazy<Map<String, OptimizationStep>> traces;
 
+  // 0 for sequential optimization
+  private int parallelism;
+
+  // lookups of candidate rules, and the candidates found, which are fully matched
+  private final LongAdder numRuleLookups, numCandidateRules;
+
   BottomUpOptimizer(SubstitutionBank rules) {
     this.rules = requireNonNull(rules);
     this.traces = Lazy.mk(HashMap::new);
     this.startAt = Long.MIN_VALUE;
     this.timeout = Long.MAX_VALUE;
+    this.parallelism = GlobalConfig.SQLSOLVER_OPTIMIZER_PARALLELISM;
+    this.numRuleLookups = new LongAdder();
+    this.numCandidateRules = new LongAdder();
   }
 
   @Override
@@ -60,6 +75,11 @@ class BottomUpOptimizer implements Optimizer {
     this.keepOriginal = keepOriginal;
   }
 
+  @Override
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
   @Override
   public List<OptimizationStep> traceOf(PlanContext plan) {
     return collectTrace(plan);
@@ -75,10 +95,13 @@ class BottomUpOptimizer implements Optimizer {
     plan = plan.copy();
     int planRoot = preprocess(plan);
 
-    memo = new Memo();
+    memo = new Memo(isParallel());
+    numRuleLookups.reset();
+    numCandidateRules.reset();
     startAt = System.currentTimeMillis();
 
-    final Set<SubPlan> results = optimize0(new SubPlan(plan, planRoot));
+    final Set<SubPlan> results = explore(new SubPlan(plan, planRoot));
+    if (verbose) printStats();
     return collectRewritten(originalPlan, results);
   }
 
@@ -96,13 +119,33 @@ class BottomUpOptimizer implements Optimizer {
 
     final int subTreeRoot = plan.nodeIdOf(subTreeRootNode);
 
-    memo = new Memo();
+    memo = new Memo(isParallel());
+    numRuleLookups.reset();
+    numCandidateRules.reset();
     startAt = System.currentTimeMillis();
 
-    final Set<SubPlan> results = optimize0(new SubPlan(plan, subTreeRoot));
+    final Set<SubPlan> results = explore(new SubPlan(plan, subTreeRoot));
+    if (verbose) printStats();
     return collectRewritten(originalPlan, results);
   }
 
+  private Set<SubPlan> explore(SubPlan subPlan) {
+    if (!isParallel()) return optimize0(subPlan);
+
+    // Threads only read the plans that they share, so everything computed lazily
+    // by reading plans and rules must be computed beforehand (see `settle`).
+    settle(subPlan.plan());
+    SubstitutionSupport.settleRules(rules);
+
+    // the pool lives as long as this exploration, so idle optimizers hold no threads
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      return pool.invoke(ForkJoinTask.adapt(() -> optimize0(subPlan)));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
   private Set<SubPlan> optimize0(SubPlan subPlan) {
     // A plan is "fully optimized" if:
     // 1. itself has been registered in memo, and
@@ -118,8 +161,32 @@ class BottomUpOptimizer implements Optimizer {
     // Obviously, P1 and P3 is equivalent. P1 and P3 thus reside in the same group.
     // Then, when P2 are transformed to P3, the group is accordingly updated.
 
-    if (isTimedOut() || isFullyOptimized(subPlan)) return memo.eqClassOf(subPlan);
-    else return dispatch(subPlan);
+    if (isTimedOut()) return memo.eqClassOf(subPlan);
+    if (!memo.isConcurrent() || !isGroupHead(subPlan)) {
+      if (memo.isFullyOptimized(subPlan)) return memo.eqClassOf(subPlan);
+      else return dispatch(subPlan);
+    }
+
+    // In parallel, a worker that fails to claim `subPlan` takes its group as is,
+    // like that of a fully-optimized plan whose group is still being transformed.
+    if (!memo.claim(subPlan)) return memo.eqClassOf(subPlan);
+    try {
+      return dispatch(subPlan);
+    } finally {
+      memo.release(subPlan);
+    }
+  }
+
+  /* whether `dispatch` optimizes `subPlan` as a whole and registers its group */
+  private static boolean isGroupHead(SubPlan subPlan) {
+    final PlanContext plan = subPlan.plan();
+    final PlanKind parentKind = plan.kindOf(plan.parentOf(subPlan.nodeId()));
+    return switch (subPlan.rootKind()) {
+      case Input -> false;
+      case Filter, InSub, Exists -> !parentKind.isFilter();
+      case Join -> parentKind != PlanKind.Join;
+      default -> true;
+    };
   }
 
   private Set<SubPlan> optimizeChild(SubPlan n) {
@@ -139,8 +206,14 @@ class BottomUpOptimizer implements Optimizer {
 
     // 1. Recursively optimize the children (or retrieve from memo)
     Set<SubPlan> lhsOpts = emptySet(), rhsOpts = emptySet();
-    if (numChildren >= 1) lhsOpts = optimize0(n.child(0));
-    if (numChildren >= 2) rhsOpts = optimize0(n.child(1));
+    if (numChildren >= 2 && isParallel()) {
+      final ForkJoinTask<Set<SubPlan>> rhsTask = ForkJoinTask.adapt(() -> optimize0(n.child(1))).fork();
+      lhsOpts = optimize0(n.child(0));
+      rhsOpts = rhsTask.join();
+    } else {
+      if (numChildren >= 1) lhsOpts = optimize0(n.child(0));
+      if (numChildren >= 2) rhsOpts = optimize0(n.child(1));
+    }
 
     Set<SubPlan> opts = new HashSet<>(lhsOpts.size());
     if (numChildren >= 1) {
@@ -174,10 +247,10 @@ class BottomUpOptimizer implements Optimizer {
     // pass the `candidates` instead.
 
     // 4. do transformation
-    final List<SubPlan> transformed = ListSupport.flatMap(candidates, this::transform);
+    final List<SubPlan> transformed = flatMap(candidates, this::transform);
 
     // 5. recursively optimize the transformed plan
-    for (SubPlan p : transformed) optimize0(p);
+    forEach(transformed, this::optimize0);
 
     group.addAll(transformed);
     return group;
@@ -193,45 +266,61 @@ class BottomUpOptimizer implements Optimizer {
     if (kind.isFilter() && plan.kindOf(plan.parentOf(root)).isFilter()) return emptySet();
 
     final Set<SubPlan> group = memo.eqClassOf(subPlan);
-    final Set<SubPlan> transformed = new MinCostSet();
+    final Set<SubPlan> transformed = new MinCostSet(memo);
     // 1. fast search for candidate substitution by fingerprint
     final Iterable<Substitution> rules = fastMatchRules(subPlan);
-    for (Substitution rule : rules) {
-      if (isTimedOut()) break;
-
-      // 2. full match
-      final Match baseMatch = new Match(rule).setSourcePlan(plan).setMatchRootNode(root);
-      final List<Match> fullMatches = Match.match(baseMatch, rule._0().root(), root);
-
-      for (Match match : fullMatches) {
-        if (match.assembleModifiedPlan()) {
-          // 3. generate new plan according to match
-          final PlanContext newPlan = match.modifiedPlan();
-          int newSubPlanRoot = match.modifiedRootNode();
-
-          final int normalizedRoot = OptimizerSupport.normalizePlan(newPlan, newSubPlanRoot);
-          if (normalizedRoot == NO_SUCH_NODE) continue;
-
-          final SubPlan newSubPlan = new SubPlan(newPlan, normalizedRoot);
-          // If the `newNode` has been bound with a group, then no need to further optimize it.
-          // (because it must either have been or is being optimized.)
-          final boolean registered = memo.isRegistered(newSubPlan);
-
-          if (group.add(newSubPlan)) {
-            if (!registered) transformed.add(newSubPlan);
-            traceStep(subPlan.plan(), newSubPlan.plan(), rule);
-          }
-
-        } else if (verbose) {
-          System.err.printf("instantiation failed: %s\n%s\n%s\n", subPlan, rule, OptimizerSupport.getLastError());
-        }
+    // 2. full match and generate new plans, one rule per task in parallel
+    final List<Rewrite> rewrites = flatMap(rules, rule -> rewrite(subPlan, rule));
+
+    for (Rewrite rewrite : rewrites) {
+      final SubPlan newSubPlan = rewrite.subPlan();
+      // If the `newNode` has been bound with a group, then no need to further optimize it.
+      // (because it must either have been or is being optimized.)
+      final boolean registered, added;
+      synchronized (memo) {
+        registered = memo.isRegistered(newSubPlan);
+        added = group.add(newSubPlan);
+      }
+
+      if (added) {
+        if (!registered) transformed.add(newSubPlan);
+        traceStep(subPlan.plan(), newSubPlan.plan(), rewrite.rule());
       }
     }
 
-    transformed.addAll(ListSupport.flatMap(transformed, this::transform));
+    transformed.addAll(flatMap(transformed, this::transform));
     return transformed;
   }
 
+  /* match `rule` against `subPlan` and generate new plans according to the matches */
+  private List<Rewrite> rewrite(SubPlan subPlan, Substitution rule) {
+    if (isTimedOut()) return emptyList();
+
+    final PlanContext plan = subPlan.plan();
+    final int root = subPlan.nodeId();
+    final Match baseMatch = new Match(rule).setSourcePlan(plan).setMatchRootNode(root);
+    final List<Match> fullMatches = Match.match(baseMatch, rule._0().root(), root);
+
+    final List<Rewrite> rewrites = new ArrayList<>(fullMatches.size());
+    for (Match match : fullMatches) {
+      if (match.assembleModifiedPlan()) {
+        // 3. generate new plan according to match
+        final PlanContext newPlan = match.modifiedPlan();
+        int newSubPlanRoot = match.modifiedRootNode();
+
+        final int normalizedRoot = OptimizerSupport.normalizePlan(newPlan, newSubPlanRoot);
+        if (normalizedRoot == NO_SUCH_NODE) continue;
+
+        if (isParallel()) settle(newPlan);
+        rewrites.add(new Rewrite(new SubPlan(newPlan, normalizedRoot), rule));
+
+      } else if (verbose) {
+        System.err.printf("instantiation failed: %s\n%s\n%s\n", subPlan, rule, OptimizerSupport.getLastError());
+      }
+    }
+    return rewrites;
+  }
+
   protected Set<SubPlan> onInput(SubPlan input) {
     return singleton(input);
   }
@@ -295,20 +384,19 @@ class BottomUpOptimizer implements Optimizer {
     }
   }
 
-  private boolean isFullyOptimized(SubPlan subPlan) {
-    if (!memo.isRegistered(subPlan)) return false;
-    final PlanContext plan = subPlan.plan();
-    final int node = subPlan.nodeId();
-    final PlanKind kind = subPlan.rootKind();
-    for (int i = 0, bound = kind.numChildren(); i < bound; ++i) {
-      if (!memo.isRegistered(plan, plan.childOf(node, i))) return false;
-    }
-    return true;
+  private Iterable<Substitution> fastMatchRules(SubPlan subPlan) {
+    final List<Substitution> candidates = rules.ruleOfPlan(subPlan.plan(), subPlan.nodeId());
+    numRuleLookups.increment();
+    numCandidateRules.add(candidates.size());
+    return candidates;
   }
 
-  private Iterable<Substitution> fastMatchRules(SubPlan subPlan) {
-    final Set<Fingerprint> fingerprints = Fingerprint.mk(subPlan.plan(), subPlan.nodeId());
-    return ListSupport.flatMap(fingerprints, rules::ruleOfFingerprint);
+  private void printStats() {
+    System.err.println(memo.stats());
+    final long lookups = numRuleLookups.sum(), candidates = numCandidateRules.sum();
+    final long filtered = lookups * rules.size() - candidates;
+    System.err.printf("rule index: %d lookups, %d candidates matched, %d rules filtered before matching (%.1f per lookup)\n",
+            lookups, candidates, filtered, lookups == 0 ? 0.0 : (double) filtered / lookups);
   }
 
   private List<OptimizationStep> collectTrace(PlanContext plan) {
@@ -330,7 +418,8 @@ class BottomUpOptimizer implements Optimizer {
       if (replaced.plan().childOf(replaced.nodeId(), childIdx) == replacement.nodeId())
         return replaced;
     }
-    if (replaced.child(childIdx).toString().equals(replacement.toString())) {
+    final SubPlan child = replaced.child(childIdx);
+    if (memo.treeKeyOf(child).equals(memo.treeKeyOf(replacement))) {
       return replaced;
     }
 
@@ -340,6 +429,7 @@ class BottomUpOptimizer implements Optimizer {
     final ReplaceSubPlan replace = new ReplaceSubPlan(replacedPlan, replacementPlan);
     final int result = replace.replace(replacedSubPlan, replacementSubPlan);
     if (!replacedPlan.isPresent(result)) return null;
+    if (isParallel()) settle(replacedPlan);
     return new SubPlan(replacedPlan, replacedPlan.parentOf(result));
   }
 
@@ -421,19 +511,58 @@ class BottomUpOptimizer implements Optimizer {
     return rewritings;
   }
 
+  private boolean isParallel() {
+    return parallelism > 0;
+  }
+
+  /* applies `func` to each of `xs` (in parallel if enabled) and concatenates the results in order */
+  private <T, R> List<R> flatMap(Iterable<? extends T> xs, Function<? super T, ? extends Collection<R>> func) {
+    if (!isParallel()) return ListSupport.flatMap(xs, func);
+
+    final List<ForkJoinTask<? extends Collection<R>>> tasks = new ArrayList<>();
+    for (T x : xs) tasks.add(ForkJoinTask.adapt(() -> func.apply(x)));
+    ForkJoinTask.invokeAll(tasks);
+
+    final List<R> results = new ArrayList<>();
+    for (ForkJoinTask<? extends Collection<R>> task : tasks) results.addAll(task.join());
+    return results;
+  }
+
+  private void forEach(Collection<SubPlan> subPlans, Consumer<SubPlan> func) {
+    if (!isParallel()) subPlans.forEach(func);
+    else ForkJoinTask.invokeAll(ListSupport.map(subPlans, p -> ForkJoinTask.adapt(() -> func.accept(p))));
+  }
+
+  /*
+   * Computes the values of all nodes in `plan`, which are otherwise computed (and cached) on first read.
+   * Afterwards, reading `plan` no longer modifies it, so that it can be shared by threads.
+   */
+  private static void settle(PlanContext plan) {
+    settle(plan, plan.root());
+  }
+
+  private static void settle(PlanContext plan, int node) {
+    plan.valuesReg().valuesOf(node);
+    for (int child : plan.childrenOf(node)) {
+      if (child != NO_SUCH_NODE) settle(plan, child);
+    }
+  }
+
   private boolean isTimedOut() {
     return System.currentTimeMillis() - startAt >= timeout;
   }
 
-  private void traceStep(PlanContext source, PlanContext target, Substitution rule) {
+  private synchronized void traceStep(PlanContext source, PlanContext target, Substitution rule) {
     if (!tracing) return;
     final String key = stringifyTree(target, target.root(), true);
     traces.get().computeIfAbsent(key, ignored -> new OptimizationStep(source, target, rule, 0));
   }
 
-  private void traceStep(PlanContext source, PlanContext target, int extra) {
+  private synchronized void traceStep(PlanContext source, PlanContext target, int extra) {
     if (!tracing) return;
     final String key = stringifyTree(target, target.root(), true);
     traces.get().computeIfAbsent(key, ignored -> new OptimizationStep(source, target, null, extra));
   }
+
+  private record Rewrite(SubPlan subPlan, Substitution rule) {}
 }
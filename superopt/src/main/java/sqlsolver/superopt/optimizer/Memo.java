@@ -1,25 +1,155 @@
 package sqlsolver.superopt.optimizer;
 
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
 import sqlsolver.common.utils.BaseCongruence;
 import sqlsolver.common.utils.BaseCongruentClass;
 import sqlsolver.sql.plan.PlanContext;
 import sqlsolver.sql.plan.PlanKind;
 
+import java.util.*;
+
+import static sqlsolver.common.tree.TreeContext.NO_SUCH_NODE;
 import static sqlsolver.sql.plan.PlanSupport.stringifyNode;
 
-class Memo extends BaseCongruence<String, SubPlan> {
-  boolean isRegistered(SubPlan node) {
+/**
+ * Groups of equivalent sub-plans, keyed by {@link SubPlanKey}.
+ * <p/>
+ * The key of a sub-plan is built from the keys of its children, which are cached by plan and node ID,
+ * so each node of a plan is printed once no matter how many of its sub-plans are looked up.
+ * A plan must not be modified once its sub-plans are looked up.
+ * <p/>
+ * A memo is guarded by its own monitor, which also guards its groups (see {@link OptGroup}).
+ * A concurrent memo is shared by the threads of a parallel optimizer,
+ * and its groups are iterated over snapshots since other threads may extend them meanwhile.
+ */
+class Memo extends BaseCongruence<SubPlanKey, SubPlan> {
+  private final boolean concurrent;
+  // weak, since most plans are transient candidates of rewriting
+  private final Map<PlanContext, TIntObjectMap<SubPlanKey>> keysOfPlans = new WeakHashMap<>();
+  private final Map<SubPlanKey, SubPlanKey> internedKeys = new HashMap<>();
+  // keys of the sub-plans being explored, see `claim`
+  private final Set<SubPlanKey> exploring = new HashSet<>();
+  private long numKeyLookups, numKeyHits;
+
+  Memo(boolean concurrent) {
+    this.concurrent = concurrent;
+  }
+
+  boolean isConcurrent() {
+    return concurrent;
+  }
+
+  synchronized boolean isRegistered(SubPlan node) {
     return classes.containsKey(extractKey(node));
   }
 
-  boolean isRegistered(PlanContext plan, int nodeId) {
+  synchronized boolean isRegistered(PlanContext plan, int nodeId) {
     return classes.containsKey(extractKey(new SubPlan(plan, nodeId)));
   }
 
+  /**
+   * Whether a sub-plan and its children are registered, in which case it is not explored again.
+   */
+  synchronized boolean isFullyOptimized(SubPlan subPlan) {
+    if (!isRegistered(subPlan)) return false;
+    final PlanContext plan = subPlan.plan();
+    final int node = subPlan.nodeId();
+    for (int i = 0, bound = subPlan.rootKind().numChildren(); i < bound; ++i) {
+      if (!isRegistered(plan, plan.childOf(node, i))) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Claims the exploration of a sub-plan, which fails if it is fully optimized
+   * or an equal sub-plan is being explored. Checking and claiming are atomic,
+   * so threads sharing this memo never explore equal sub-plans at the same time.
+   * A successful claim must be released once the exploration finishes.
+   */
+  synchronized boolean claim(SubPlan subPlan) {
+    return !isFullyOptimized(subPlan) && exploring.add(extractKey(subPlan));
+  }
+
+  synchronized void release(SubPlan subPlan) {
+    exploring.remove(extractKey(subPlan));
+  }
+
+  @Override
+  protected synchronized SubPlanKey extractKey(SubPlan subPlan) {
+    final PlanContext plan = subPlan.plan();
+    final int nodeId = subPlan.nodeId();
+    // inputs are distinguished by their node IDs
+    if (subPlan.rootKind() != PlanKind.Input) return keyOf(plan, nodeId);
+    else return intern(new SubPlanKey(PlanKind.Input, stringifyNode(plan, nodeId), SubPlanKey.NO_CHILDREN));
+  }
+
+  /** The key of a sub-plan as a part of others, where inputs are not distinguished by node IDs. */
+  synchronized SubPlanKey treeKeyOf(SubPlan subPlan) {
+    return keyOf(subPlan.plan(), subPlan.nodeId());
+  }
+
+  private SubPlanKey keyOf(PlanContext plan, int nodeId) {
+    ++numKeyLookups;
+    final TIntObjectMap<SubPlanKey> keys = keysOfPlans.computeIfAbsent(plan, ignored -> new TIntObjectHashMap<>());
+    final SubPlanKey cached = keys.get(nodeId);
+    if (cached != null) {
+      ++numKeyHits;
+      return cached;
+    }
+
+    final List<SubPlanKey> children = new ArrayList<>(2);
+    for (int child : plan.childrenOf(nodeId)) {
+      if (child != NO_SUCH_NODE) children.add(keyOf(plan, child));
+    }
+    final String node = stringifyNode(plan, nodeId, true);
+    final SubPlanKey key = intern(new SubPlanKey(plan.kindOf(nodeId), node, children.toArray(SubPlanKey.NO_CHILDREN)));
+    keys.put(nodeId, key);
+    return key;
+  }
+
+  @Override
+  public synchronized Set<SubPlan> mkEqClass(SubPlan x) {
+    return super.mkEqClass(x);
+  }
+
+  @Override
+  public synchronized Set<SubPlan> eqClassAt(SubPlanKey key) {
+    return super.eqClassAt(key);
+  }
+
   @Override
-  protected String extractKey(SubPlan subPlan) {
-    if (subPlan.rootKind() != PlanKind.Input) return subPlan.toString();
-    else return stringifyNode(subPlan.plan(), subPlan.nodeId());
+  public synchronized Set<SubPlan> eqClassOf(SubPlan x) {
+    return super.eqClassOf(x);
+  }
+
+  private SubPlanKey intern(SubPlanKey key) {
+    final SubPlanKey existing = internedKeys.putIfAbsent(key, key);
+    return existing != null ? existing : key;
+  }
+
+  /** Statistics of this memo, e.g. for tuning the optimizer. */
+  synchronized Stats stats() {
+    final Set<BaseCongruentClass<SubPlan>> groups = new HashSet<>(classes.values());
+    long bytes = 0;
+    for (SubPlanKey key : internedKeys.keySet()) bytes += key.approxBytes();
+    final double hitRate = numKeyLookups == 0 ? 0 : (double) numKeyHits / numKeyLookups;
+    return new Stats(groups.size(), classes.size(), internedKeys.size(), hitRate, bytes);
+  }
+
+  /**
+   * @param numGroups   number of groups of equivalent sub-plans
+   * @param numKeys     number of keys bound to the groups
+   * @param numInterned number of distinct keys of all looked-up sub-plans
+   * @param hitRate     fraction of key lookups answered by cached keys
+   * @param approxBytes approximate size of the distinct keys in bytes
+   */
+  record Stats(int numGroups, int numKeys, int numInterned, double hitRate, long approxBytes) {
+    @Override
+    public String toString() {
+      return String.format("memo: %d groups, %d keys, %d distinct keys, key hit rate %.2f, ~%d bytes",
+              numGroups, numKeys, numInterned, hitRate, approxBytes);
+    }
   }
 
   @Override
@@ -5,16 +5,19 @@ import sqlsolver.superopt.util.Complexity;
 import java.util.*;
 
 class MinCostSet implements Set<SubPlan> {
-  private final Map<String, SubPlan> subPlans;
-  private final Set<String> evicted;
+  private final Memo memo;
+  private final Map<SubPlanKey, SubPlan> subPlans;
+  private final Set<SubPlanKey> evicted;
   private Complexity minCost;
 
-  MinCostSet() {
+  /** A set whose sub-plans are told apart by their keys in <code>memo</code>. */
+  MinCostSet(Memo memo) {
+    this.memo = memo;
     this.subPlans = new HashMap<>();
     this.evicted = new HashSet<>();
   }
 
-  public Set<String> evicted() {
+  public Set<SubPlanKey> evicted() {
     return evicted;
   }
 
@@ -24,7 +27,7 @@ class MinCostSet implements Set<SubPlan> {
     final int cmp = minCost == null ? -1 : cost.compareTo(minCost);
     // the new plan is more costly, abandon it
     if (cmp > 0) {
-      evicted.add(subPlan.toString());
+      evicted.add(memo.extractKey(subPlan));
       return false;
     }
     // the new plan is cheaper, abandon existing ones
@@ -34,13 +37,13 @@ class MinCostSet implements Set<SubPlan> {
       minCost = cost;
     }
 
-    return subPlans.putIfAbsent(subPlan.toString(), subPlan) == null;
+    return subPlans.putIfAbsent(memo.extractKey(subPlan), subPlan) == null;
   }
 
   @Override
   public boolean remove(Object o) {
-    if (!(o instanceof SubPlan)) return false;
-    return subPlans.remove(o.toString()) != null;
+    if (!(o instanceof SubPlan subPlan)) return false;
+    return subPlans.remove(memo.extractKey(subPlan)) != null;
   }
 
   @Override
@@ -75,8 +78,8 @@ class MinCostSet implements Set<SubPlan> {
 
   @Override
   public boolean contains(Object o) {
-    if (!(o instanceof SubPlan)) return false;
-    return subPlans.containsKey(o.toString());
+    if (!(o instanceof SubPlan subPlan)) return false;
+    return subPlans.containsKey(memo.extractKey(subPlan));
   }
 
   @Override
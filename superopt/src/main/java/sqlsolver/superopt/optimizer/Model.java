@@ -181,7 +181,8 @@ class Model {
   private boolean isFuncsEq(List<Expression> v0, List<Expression> v1) {
     if (v0.size() != v1.size()) return false;
     for (var pair : zip(v0, v1)) {
-      if (!pair.getLeft().toString().equals(pair.getRight().toString())) return false;
+      if (pair.getLeft() != pair.getRight()
+          && !pair.getLeft().toString().equals(pair.getRight().toString())) return false;
     }
     return true;
   }
@@ -3,6 +3,8 @@ package sqlsolver.superopt.optimizer;
 import sqlsolver.common.utils.BaseCongruentClass;
 
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 class OptGroup extends BaseCongruentClass<SubPlan> {
@@ -10,6 +12,28 @@ class OptGroup extends BaseCongruentClass<SubPlan> {
     super(congruence);
   }
 
+  @Override
+  public boolean add(SubPlan subPlan) {
+    synchronized (congruence) {
+      return super.add(subPlan);
+    }
+  }
+
+  @Override
+  public Iterator<SubPlan> iterator() {
+    synchronized (congruence) {
+      if (((Memo) congruence).isConcurrent()) return List.copyOf(elements).iterator();
+      else return super.iterator();
+    }
+  }
+
+  @Override
+  public int size() {
+    synchronized (congruence) {
+      return super.size();
+    }
+  }
+
   @Override
   protected void merge(BaseCongruentClass<SubPlan> other) {
     super.merge(other);
@@ -17,17 +41,17 @@ class OptGroup extends BaseCongruentClass<SubPlan> {
     ((MinCostSet) elements).evicted().addAll(((OptGroup) other).evicted());
 
     final Memo memo = (Memo) this.congruence;
-    for (String key : ((OptGroup) other).evicted()) {
+    for (SubPlanKey key : ((OptGroup) other).evicted()) {
       ((OptGroup) memo.eqClassAt(key)).elements = elements;
     }
   }
 
-  private Set<String> evicted() {
+  private Set<SubPlanKey> evicted() {
     return ((MinCostSet) elements).evicted();
   }
 
   @Override
   protected Collection<SubPlan> mkCollection() {
-    return new MinCostSet();
+    return new MinCostSet((Memo) congruence);
   }
 }
@@ -26,6 +26,8 @@ public interface Optimizer {
 
   void setKeepOriginal(boolean keepOriginal);
 
+  void setParallelism(int parallelism);
+
   List<OptimizationStep> traceOf(PlanContext plan);
 
   static Optimizer mk(SubstitutionBank bank) {
@@ -30,6 +30,10 @@ public abstract class OptimizerSupport {
 
   private static final ThreadLocal<String> LAST_ERROR = new ThreadLocal<>();
 
+  public static int getOptimizerTweaks() {
+    return optimizerTweaks;
+  }
+
   public static void setOptimizerTweaks(int optimizerTweaks) {
     OptimizerSupport.optimizerTweaks = optimizerTweaks;
   }
@@ -167,7 +167,7 @@ class ReplaceSubPlan {
 
     final Boolean deduplicatedFlag = replacementPlan.infoCache().getDeduplicatedOf(fromNode);
     if (deduplicatedFlag != null)
-      replacementPlan.infoCache().putDeduplicatedOf(toNode, deduplicatedFlag);
+      replacedPlan.infoCache().putDeduplicatedOf(toNode, deduplicatedFlag);
 
     return toNode;
   }
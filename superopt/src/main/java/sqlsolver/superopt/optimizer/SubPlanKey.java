@@ -0,0 +1,64 @@
+package sqlsolver.superopt.optimizer;
+
+import sqlsolver.sql.plan.PlanKind;
+
+import java.util.Arrays;
+
+/**
+ * Structural key of a sub-plan in {@link Memo}: the kind and the text of its root node
+ * (without node IDs), together with the keys of its children.
+ * Two sub-plans have equal keys iff they are printed the same.
+ * <p/>
+ * The hash is computed once from the hashes of the children.
+ * Keys are interned by {@link Memo}, so children are usually compared by identity.
+ */
+final class SubPlanKey {
+  static final SubPlanKey[] NO_CHILDREN = new SubPlanKey[0];
+
+  private final PlanKind kind;
+  private final String node;
+  private final SubPlanKey[] children;
+  private final int hash;
+
+  SubPlanKey(PlanKind kind, String node, SubPlanKey[] children) {
+    this.kind = kind;
+    this.node = node;
+    this.children = children;
+    this.hash = (31 * kind.ordinal() + node.hashCode()) * 31 + Arrays.hashCode(children);
+  }
+
+  /** Approximate number of bytes taken by this key, excluding its children. */
+  int approxBytes() {
+    // header and fields of the key, the string and its array, and the children array
+    return 32 + 40 + node.length() + 16 + 4 * children.length;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) return true;
+    if (!(obj instanceof SubPlanKey that)) return false;
+    return hash == that.hash
+            && kind == that.kind
+            && node.equals(that.node)
+            && Arrays.equals(children, that.children);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder(node);
+    if (children.length > 0) {
+      builder.append('(');
+      for (int i = 0; i < children.length; i++) {
+        if (i > 0) builder.append(',');
+        builder.append(children[i]);
+      }
+      builder.append(')');
+    }
+    return builder.toString();
+  }
+}
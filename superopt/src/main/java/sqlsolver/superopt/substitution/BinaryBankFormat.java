@@ -0,0 +1,93 @@
+package sqlsolver.superopt.substitution;
+
+import sqlsolver.superopt.util.Fingerprint;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A binary format of rule banks, which loads a bank without parsing its rules.
+ * <p/>
+ * The file starts with {@link #MAGIC}, the version and the number of rules, followed by the rules.
+ * Each rule is its ID, its identity ({@link Substitution#canonicalStringify()}),
+ * the fingerprint of its source fragment, and its text (as parsed by {@link Substitution#parse}).
+ * A string is its length in bytes and its UTF-8 bytes.
+ * <p/>
+ * A bank is loaded by mapping the file into memory and reading the identities and fingerprints,
+ * which suffice to index the rules. Each rule is parsed from its text on first use (see {@link LazySubstitution}).
+ */
+final class BinaryBankFormat {
+  private static final int MAGIC = 0x53514c52; // "SQLR"
+  private static final int VERSION = 1;
+
+  private BinaryBankFormat() {}
+
+  static boolean isBinaryBank(Path path) throws IOException {
+    try (final InputStream in = Files.newInputStream(path)) {
+      final byte[] header = in.readNBytes(Integer.BYTES);
+      return header.length == Integer.BYTES && ByteBuffer.wrap(header).getInt() == MAGIC;
+    }
+  }
+
+  static void write(SubstitutionBank bank, Path path) throws IOException {
+    try (final DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(bank.size());
+      for (Substitution rule : bank.rules()) {
+        out.writeInt(rule.id());
+        writeString(out, rule.canonicalStringify());
+        writeString(out, Fingerprint.mk(rule._0()).fingerprint());
+        writeString(out, rule.toString());
+      }
+    }
+  }
+
+  static SubstitutionBank read(Path path) throws IOException {
+    final ByteBuffer buffer;
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    if (buffer.getInt() != MAGIC) throw new IOException("not a binary rule bank: " + path);
+    final int version = buffer.getInt();
+    if (version != VERSION) throw new IOException("unsupported version of rule bank: " + version);
+
+    final SubstitutionBankImpl bank = new SubstitutionBankImpl();
+    for (int i = 0, bound = buffer.getInt(); i < bound; ++i) {
+      final int id = buffer.getInt();
+      final String identity = readString(buffer);
+      final Fingerprint fingerprint = Fingerprint.mk(readString(buffer));
+      final int textLength = buffer.getInt();
+      final int textOffset = buffer.position();
+      buffer.position(textOffset + textLength);
+
+      final Substitution rule = new LazySubstitution(id, identity, fingerprint, buffer, textOffset, textLength);
+      bank.add(rule);
+      rule.setId(id);
+    }
+    return bank;
+  }
+
+  private static void writeString(DataOutputStream out, String str) throws IOException {
+    final byte[] bytes = str.getBytes(UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    final byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+}
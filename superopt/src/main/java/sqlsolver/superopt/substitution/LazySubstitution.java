@@ -0,0 +1,113 @@
+package sqlsolver.superopt.substitution;
+
+import sqlsolver.superopt.constraint.Constraints;
+import sqlsolver.superopt.fragment.Fragment;
+import sqlsolver.superopt.fragment.SymbolNaming;
+import sqlsolver.superopt.util.Fingerprint;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A rule loaded from a binary bank (see {@link BinaryBankFormat}), which is parsed on first use.
+ * <p/>
+ * The identity and the fingerprint are stored in the bank, so indexing the rule does not parse it.
+ * The text of the rule stays in the (usually memory-mapped) buffer of the bank until then.
+ */
+class LazySubstitution implements Substitution {
+  private final String identity;
+  private final Fingerprint fingerprint;
+  private final ByteBuffer buffer;
+  private final int textOffset, textLength;
+  private int id;
+
+  private volatile Substitution rule;
+
+  LazySubstitution(int id, String identity, Fingerprint fingerprint, ByteBuffer buffer, int textOffset, int textLength) {
+    this.id = id;
+    this.identity = identity;
+    this.fingerprint = fingerprint;
+    this.buffer = buffer;
+    this.textOffset = textOffset;
+    this.textLength = textLength;
+  }
+
+  @Override
+  public Fingerprint fingerprint() {
+    return fingerprint;
+  }
+
+  @Override
+  public void settle() {
+    // a rule not parsed yet is settled when it is parsed
+    final Substitution rule = this.rule;
+    if (rule != null) rule.settle();
+  }
+
+  boolean isParsed() {
+    return rule != null;
+  }
+
+  private Substitution rule() {
+    Substitution rule = this.rule;
+    if (rule != null) return rule;
+
+    synchronized (this) {
+      if (this.rule == null) {
+        final byte[] text = new byte[textLength];
+        buffer.get(textOffset, text); // absolute get, so the buffer is shared by all rules
+        final Substitution rule0 = Substitution.parse(new String(text, UTF_8));
+        // published settled, since threads may share the rule
+        rule0.settle();
+        this.rule = rule0;
+      }
+      return this.rule;
+    }
+  }
+
+  @Override
+  public int id() {
+    return id;
+  }
+
+  @Override
+  public void setId(int i) {
+    this.id = i;
+  }
+
+  @Override
+  public Fragment _0() {
+    return rule()._0();
+  }
+
+  @Override
+  public Fragment _1() {
+    return rule()._1();
+  }
+
+  @Override
+  public Constraints constraints() {
+    return rule().constraints();
+  }
+
+  @Override
+  public SymbolNaming naming() {
+    return rule().naming();
+  }
+
+  @Override
+  public void resetNaming() {
+    rule().resetNaming();
+  }
+
+  @Override
+  public String canonicalStringify() {
+    return identity;
+  }
+
+  @Override
+  public String toString() {
+    return rule().toString();
+  }
+}
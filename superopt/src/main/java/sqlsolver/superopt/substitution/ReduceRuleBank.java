@@ -1,5 +1,6 @@
 package sqlsolver.superopt.substitution;
 
+import com.google.common.util.concurrent.Uninterruptibles;
 import me.tongfei.progressbar.ProgressBar;
 import sqlsolver.common.utils.ListSupport;
 import sqlsolver.common.utils.SetSupport;
@@ -7,57 +8,212 @@ import sqlsolver.sql.plan.*;
 import sqlsolver.superopt.constraint.Constraints;
 import sqlsolver.superopt.fragment.*;
 import sqlsolver.superopt.optimizer.Optimizer;
+import sqlsolver.superopt.util.Fingerprint;
 import sqlsolver.superopt.fragment.*;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static sqlsolver.common.tree.TreeContext.NO_SUCH_NODE;
+import static sqlsolver.common.utils.IterableSupport.any;
 import static sqlsolver.common.utils.IterableSupport.zip;
 import static sqlsolver.sql.plan.PlanSupport.stringifyTree;
 import static sqlsolver.superopt.optimizer.OptimizerSupport.*;
 
+/**
+ * Removes the rules of a bank that are implied by the others,
+ * i.e. the rewritings of its probing plan are still found by the optimizer without it.
+ * <p/>
+ * Rules are examined in the bank order, each against the bank without itself, i.e. the rules kept so far
+ * and those not examined yet, so that two rules implying each other are not both removed.
+ * With parallelism, the next rules not decided yet are examined concurrently against the same bank,
+ * and their decisions are taken in order. A decision records the rules that the optimizer looked up for it,
+ * and stays valid until one of them is removed, since the optimizer sees the same bank until then.
+ * The result is thus the same as examining rules one by one.
+ * <p/>
+ * A reduced bank can be extended by {@link #reduce(Collection)}, which examines only the new rules
+ * and the rules whose probing plans the new rules apply to. A rule that the new rules only imply
+ * through intermediate rewritings is kept, which leaves the bank larger but never drops a needed rule.
+ */
 class ReduceRuleBank {
   private final SubstitutionBank bank;
+  private final int parallelism;
+  private final AtomicInteger numChecks = new AtomicInteger();
 
   ReduceRuleBank(SubstitutionBank bank) {
+    this(bank, Runtime.getRuntime().availableProcessors());
+  }
+
+  ReduceRuleBank(SubstitutionBank bank, int parallelism) {
     this.bank = bank;
+    this.parallelism = parallelism;
+  }
+
+  /** The number of rules checked so far, including the checks made again after the bank changed. */
+  int numChecks() {
+    return numChecks.get();
   }
 
   SubstitutionBank reduce() {
-    addOptimizerTweaks(TWEAK_DISABLE_JOIN_FLIP);
-    if (bank.isExtended()) addOptimizerTweaks(TWEAK_ENABLE_EXTENSIONS);
+    setupOptimizerTweaks();
+
+    bank.removeIf(rule -> isUseless(rule, bank.isExtended()));
+
+    return reduce0(new ArrayList<>(bank.rules()));
+  }
+
+  /** Adds <code>newRules</code> to the bank, which has been reduced, and reduces it again. */
+  SubstitutionBank reduce(Collection<Substitution> newRules) {
+    // whether the bank is extended once the new rules are added
+    final boolean extended = bank.isExtended() || any(newRules, Substitution::isExtended);
+    final SubstitutionBank added = new SubstitutionBankImpl();
+    for (Substitution rule : newRules) {
+      if (!bank.contains(rule) && !isUseless(rule, extended)) added.add(rule);
+    }
+    if (added.size() == 0) return bank;
+
+    // the rules already in the bank that the new rules may rewrite
+    final List<Substitution> affected = new ArrayList<>();
+    for (Substitution rule : bank.rules()) {
+      if (isRewrittenBy(rule, added)) affected.add(rule);
+    }
+
+    final List<Substitution> addedRules = new ArrayList<>(added.rules());
+    for (Substitution rule : addedRules) bank.add(rule);
+    setupOptimizerTweaks();
+
+    // re-examine in the bank order
+    final Set<Substitution> examined = Collections.newSetFromMap(new IdentityHashMap<>());
+    examined.addAll(affected);
+    examined.addAll(addedRules);
+    return reduce0(ListSupport.filter(bank.rules(), examined::contains));
+  }
 
-    bank.removeIf(ReduceRuleBank::isUselessHeuristic1);
-    bank.removeIf(ReduceRuleBank::isUselessHeuristic2);
-    bank.removeIf(ReduceRuleBank::isJoinFlipRule);
-    if (bank.isExtended()) bank.removeIf(ReduceRuleBank::isWrongDueToBug);
-
-    try (final ProgressBar pb = new ProgressBar("Reduce", bank.size())) {
-      final List<Substitution> rules = new ArrayList<>(bank.rules());
-      for (int i = 0, bound = rules.size(); i < bound; i++) {
-        pb.step();
-
-        final Substitution rule = rules.get(i);
-        try {
-          if (isImpliedRule(rule)) bank.remove(rule);
-          else bank.add(rule);
-
-        } catch (Throwable ex) {
-          System.err.println(i + " " + rule);
-          //          ex.printStackTrace();
-          bank.remove(rule);
-          //          throw ex;
+  private SubstitutionBank reduce0(List<Substitution> rules) {
+    final ExecutorService executor = parallelism > 1 ? mkExecutor() : null;
+    // decisions made ahead of their turn, dropped once a rule that they looked up is removed
+    final Map<Substitution, Decision> decisions = new IdentityHashMap<>();
+    try (final ProgressBar pb = new ProgressBar("Reduce", rules.size())) {
+      int i = 0;
+      while (i < rules.size()) {
+        // the next rules not decided yet are decided against the same bank, which they do not change
+        final List<Substitution> window = new ArrayList<>(Math.max(1, parallelism));
+        for (int j = i, bound = rules.size(); j < bound && window.size() < Math.max(1, parallelism); j++) {
+          if (!decisions.containsKey(rules.get(j))) window.add(rules.get(j));
+        }
+        zip(window, decide(window, executor), decisions::put);
+
+        while (i < rules.size() && decisions.containsKey(rules.get(i))) {
+          pb.step();
+          final Substitution rule = rules.get(i);
+          final Decision decision = decisions.remove(rule);
+          // a rule failed to check is removed
+          if (decision.implied() == null) System.err.println(i + " " + rule);
+          if (decision.implied() == null || decision.implied()) {
+            bank.remove(rule);
+            decisions.values().removeIf(it -> it.dependsOn(rule));
+          }
+          ++i;
         }
       }
+    } finally {
+      if (executor != null) executor.shutdownNow();
     }
 
     return bank;
   }
 
+  /**
+   * Whether a rule is implied by the bank without it (null if the check fails),
+   * and the rules looked up to decide it (null if unknown).
+   */
+  private record Decision(Boolean implied, Set<Substitution> lookedUp) {
+    private boolean dependsOn(Substitution rule) {
+      return lookedUp == null || lookedUp.contains(rule);
+    }
+  }
+
+  private List<Decision> decide(List<Substitution> rules, ExecutorService executor) {
+    if (executor == null || rules.size() == 1) {
+      final List<Decision> decisions = new ArrayList<>(rules.size());
+      for (Substitution rule : rules) decisions.add(decide(rule));
+      return decisions;
+    }
+
+    final List<Future<Decision>> futures = new ArrayList<>(rules.size());
+    for (Substitution rule : rules) futures.add(executor.submit(() -> decide(rule)));
+    final List<Decision> decisions = new ArrayList<>(rules.size());
+    for (Future<Decision> future : futures) {
+      try {
+        // all checks must be done before the bank is changed
+        decisions.add(Uninterruptibles.getUninterruptibly(future));
+      } catch (ExecutionException ex) {
+        decisions.add(new Decision(null, null));
+      }
+    }
+    return decisions;
+  }
+
+  private Decision decide(Substitution rule) {
+    numChecks.incrementAndGet();
+    // the optimizer may look up rules concurrently
+    final Set<Substitution> lookedUp = ConcurrentHashMap.newKeySet();
+    try {
+      return new Decision(isImpliedRule(rule, lookedUp), lookedUp);
+    } catch (Throwable ex) {
+      //      ex.printStackTrace();
+      return new Decision(null, null);
+    }
+  }
+
+  private ExecutorService mkExecutor() {
+    // rules are shared by the threads
+    SubstitutionSupport.settleRules(bank);
+    return Executors.newFixedThreadPool(parallelism, runnable -> {
+      final Thread thread = new Thread(runnable, "reduce-rule-bank");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private void setupOptimizerTweaks() {
+    addOptimizerTweaks(TWEAK_DISABLE_JOIN_FLIP);
+    if (bank.isExtended()) addOptimizerTweaks(TWEAK_ENABLE_EXTENSIONS);
+  }
+
+  private static boolean isUseless(Substitution rule, boolean extended) {
+    return isUselessHeuristic1(rule)
+        || isUselessHeuristic2(rule)
+        || isJoinFlipRule(rule)
+        || (extended && isWrongDueToBug(rule));
+  }
+
+  /* whether any rule in `rules` applies to the probing plan of `rule` */
+  private static boolean isRewrittenBy(Substitution rule, SubstitutionBank rules) {
+    final PlanContext plan;
+    try {
+      plan = mkProbingPlan(rule);
+    } catch (Throwable ex) {
+      return true;
+    }
+    if (plan == null) return false;
+    completePlan(plan);
+    return isRewrittenBy(plan, plan.root(), rules);
+  }
+
+  private static boolean isRewrittenBy(PlanContext plan, int node, SubstitutionBank rules) {
+    if (!rules.ruleOfPlan(plan, node).isEmpty()) return true;
+    for (int child : plan.childrenOf(node)) {
+      if (child != NO_SUCH_NODE && isRewrittenBy(plan, child, rules)) return true;
+    }
+    return false;
+  }
+
   private static boolean isUselessHeuristic1(Substitution rule) {
     // All LHS attrs symbols are required equal.
     final Constraints constraints = rule.constraints();
@@ -95,15 +251,23 @@ class ReduceRuleBank {
   }
 
   private boolean isImpliedRule(Substitution rule) {
+    return isImpliedRule(rule, new HashSet<>());
+  }
+
+  /* the rules that the optimizer looks up are added to `lookedUp` */
+  private boolean isImpliedRule(Substitution rule, Set<Substitution> lookedUp) {
+    return isImpliedRule(rule, new BankView(bank, null, lookedUp), new BankView(bank, rule, lookedUp));
+  }
+
+  private static boolean isImpliedRule(Substitution rule, SubstitutionBank with, SubstitutionBank without) {
     final PlanContext plan = mkProbingPlan(rule);
     if (plan == null) return true;
 
     final boolean isCappedByProj = completePlan(plan);
 
     final String str = stringifyTree(plan, plan.root());
-    final Set<String> optimized0 = optimizeAsString(plan, bank, isCappedByProj);
-    bank.remove(rule);
-    final Set<String> optimized1 = optimizeAsString(plan, bank, isCappedByProj);
+    final Set<String> optimized0 = optimizeAsString(plan, with, isCappedByProj);
+    final Set<String> optimized1 = optimizeAsString(plan, without, isCappedByProj);
     optimized0.remove(str);
     optimized1.remove(str);
 
@@ -150,6 +314,68 @@ class ReduceRuleBank {
     return left;
   }
 
+  /** A read-only view of a bank without one of its rules (if any), which records the rules looked up. */
+  private static class BankView implements SubstitutionBank {
+    private final SubstitutionBank bank;
+    private final Substitution excluded;
+    private final Set<Substitution> lookedUp;
+
+    private BankView(SubstitutionBank bank, Substitution excluded, Set<Substitution> lookedUp) {
+      this.bank = bank;
+      this.excluded = excluded;
+      this.lookedUp = lookedUp;
+    }
+
+    @Override
+    public int size() {
+      return excluded != null && bank.contains(excluded) ? bank.size() - 1 : bank.size();
+    }
+
+    @Override
+    public boolean add(Substitution substitution) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean contains(Substitution rule) {
+      return rule != excluded && bank.contains(rule);
+    }
+
+    @Override
+    public boolean isExtended() {
+      return bank.isExtended();
+    }
+
+    @Override
+    public void remove(Substitution substitution) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void removeIf(Predicate<Substitution> check) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<Substitution> rules() {
+      return ListSupport.filter(bank.rules(), it -> it != excluded);
+    }
+
+    @Override
+    public Iterable<Substitution> ruleOfFingerprint(Fingerprint fingerprint) {
+      final List<Substitution> rules = ListSupport.filter(bank.ruleOfFingerprint(fingerprint), it -> it != excluded);
+      lookedUp.addAll(rules);
+      return rules;
+    }
+
+    @Override
+    public List<Substitution> ruleOfPlan(PlanContext plan, int node) {
+      final List<Substitution> rules = ListSupport.filter(bank.ruleOfPlan(plan, node), it -> it != excluded);
+      lookedUp.addAll(rules);
+      return rules;
+    }
+  }
+
   private static List<Join> collectJoins(Fragment fragment) {
     final CollectJoin collectJoin = new CollectJoin();
     fragment.acceptVisitor(collectJoin);
@@ -4,6 +4,7 @@ import sqlsolver.superopt.constraint.Constraint;
 import sqlsolver.superopt.constraint.Constraints;
 import sqlsolver.superopt.fragment.Fragment;
 import sqlsolver.superopt.fragment.SymbolNaming;
+import sqlsolver.superopt.util.Fingerprint;
 
 import java.util.List;
 
@@ -24,6 +25,18 @@ public interface Substitution {
 
   String canonicalStringify();
 
+  /** The fingerprint of the source fragment, by which a bank indexes the rule. */
+  default Fingerprint fingerprint() {
+    return Fingerprint.mk(_0());
+  }
+
+  /** Computes the parts of the rule computed on first use, so that threads can share it afterwards. */
+  default void settle() {
+    _0().symbols();
+    _1().symbols();
+    naming();
+  }
+
   default boolean isExtended() {
     final String str0 = _0().toString();
     final String str1 = _1().toString();
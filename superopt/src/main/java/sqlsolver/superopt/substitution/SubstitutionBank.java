@@ -1,8 +1,10 @@
 package sqlsolver.superopt.substitution;
 
+import sqlsolver.sql.plan.PlanContext;
 import sqlsolver.superopt.util.Fingerprint;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.function.Predicate;
 
 public interface SubstitutionBank {
@@ -22,6 +24,8 @@ public interface SubstitutionBank {
 
   Iterable<Substitution> ruleOfFingerprint(Fingerprint fingerprint);
 
+  List<Substitution> ruleOfPlan(PlanContext plan, int node);
+
   static SubstitutionBank mk() {
     return new SubstitutionBankImpl();
   }
@@ -1,23 +1,24 @@
 package sqlsolver.superopt.substitution;
 
-import com.google.common.collect.Multimap;
-import com.google.common.collect.MultimapBuilder;
 import sqlsolver.common.utils.ListSupport;
+import sqlsolver.sql.plan.PlanContext;
 import sqlsolver.superopt.util.Fingerprint;
+import sqlsolver.superopt.util.FingerprintTrie;
 
 import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
 
 class SubstitutionBankImpl implements SubstitutionBank {
   private final Map<String, Substitution> rules;
-  private final Multimap<String, String> fingerprintIndex;
+  private final FingerprintTrie<String> fingerprintIndex;
   private boolean isExtended;
 
   SubstitutionBankImpl() {
     this.rules = new LinkedHashMap<>(2048);
-    this.fingerprintIndex = MultimapBuilder.hashKeys(2048).arrayListValues(32).build();
+    this.fingerprintIndex = new FingerprintTrie<>();
     this.isExtended = false;
   }
 
@@ -43,7 +44,7 @@ class SubstitutionBankImpl implements SubstitutionBank {
     if (rules.containsKey(identity)) return false;
     rule.setId(rules.size() + 1);
     rules.put(identity, rule);
-    fingerprintIndex.put(Fingerprint.mk(rule._0()).toString(), identity);
+    fingerprintIndex.add(rule.fingerprint(), identity);
     if (!isExtended) isExtended = identity.contains("Union") || identity.contains("Agg");
     return true;
   }
@@ -52,7 +53,7 @@ class SubstitutionBankImpl implements SubstitutionBank {
   public void remove(Substitution o) {
     final String identity = o.canonicalStringify();
     final Substitution removed = rules.remove(identity);
-    if (removed != null) fingerprintIndex.remove(Fingerprint.mk(o._0()).toString(), identity);
+    if (removed != null) fingerprintIndex.remove(o.fingerprint(), identity);
   }
 
   @Override
@@ -63,7 +64,7 @@ class SubstitutionBankImpl implements SubstitutionBank {
       final String identity = rule.canonicalStringify();
       if (check.test(rule)) {
         iter.remove();
-        fingerprintIndex.remove(Fingerprint.mk(rule._0()).toString(), identity);
+        fingerprintIndex.remove(rule.fingerprint(), identity);
       }
     }
   }
@@ -75,6 +76,11 @@ class SubstitutionBankImpl implements SubstitutionBank {
 
   @Override
   public Iterable<Substitution> ruleOfFingerprint(Fingerprint fingerprint) {
-    return ListSupport.map(fingerprintIndex.get(fingerprint.fingerprint()), rules::get);
+    return ListSupport.map(fingerprintIndex.lookup(fingerprint), rules::get);
+  }
+
+  @Override
+  public List<Substitution> ruleOfPlan(PlanContext plan, int node) {
+    return ListSupport.map(fingerprintIndex.lookup(plan, node), rules::get);
   }
 }
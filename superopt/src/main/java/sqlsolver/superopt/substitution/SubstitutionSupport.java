@@ -7,10 +7,13 @@ import sqlsolver.superopt.logic.LogicSupport;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
 
 public class SubstitutionSupport {
   public static SubstitutionBank loadBank(Path path) throws IOException {
+    if (BinaryBankFormat.isBinaryBank(path)) return BinaryBankFormat.read(path);
+
     final SubstitutionBank bank = new SubstitutionBankImpl();
     final List<String> lines = Files.readAllLines(path);
 
@@ -35,10 +38,32 @@ public class SubstitutionSupport {
     return bank;
   }
 
+  public static void saveBinaryBank(SubstitutionBank bank, Path path) throws IOException {
+    BinaryBankFormat.write(bank, path);
+  }
+
+  /** Converts a bank of rules in text, one per line, into the binary format loaded by {@link #loadBank}. */
+  public static void convertBank(Path textPath, Path binaryPath) throws IOException {
+    saveBinaryBank(loadBank(textPath), binaryPath);
+  }
+
+  /**
+   * Settles the rules of a bank (see {@link Substitution#settle()}) before threads share them.
+   * Rules of a binary bank that are not parsed yet stay unparsed, since they are settled once parsed.
+   */
+  public static void settleRules(SubstitutionBank bank) {
+    for (Substitution rule : bank.rules()) rule.settle();
+  }
+
   public static SubstitutionBank reduceBank(SubstitutionBank bank) {
     return new ReduceRuleBank(bank).reduce();
   }
 
+  /** Adds <code>newRules</code> to a reduced bank, and reduces it by examining only the rules they may affect. */
+  public static SubstitutionBank reduceBank(SubstitutionBank reducedBank, Collection<Substitution> newRules) {
+    return new ReduceRuleBank(reducedBank).reduce(newRules);
+  }
+
   public static Pair<PlanContext, PlanContext> translateAsPlan(Substitution rule) {
     return new PlanTranslator(rule).translate();
   }
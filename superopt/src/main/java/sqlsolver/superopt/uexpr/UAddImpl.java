@@ -8,6 +8,7 @@ import java.util.*;
 
 import static sqlsolver.common.utils.Commons.joining;
 import static sqlsolver.common.utils.IterableSupport.any;
+import static sqlsolver.superopt.uexpr.UExprSupport.hashAsSet;
 import static sqlsolver.superopt.uexpr.UExprSupport.transformTerms;
 
 final class UAddImpl implements UAdd {
@@ -192,6 +193,6 @@ final class UAddImpl implements UAdd {
 
   @Override
   public int hashCode() {
-    return new HashSet<>(factors).hashCode();
+    return hashAsSet(factors, UTerm::hashCode);
   }
 }
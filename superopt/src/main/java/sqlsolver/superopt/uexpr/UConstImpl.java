@@ -7,7 +7,18 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * Constants are immutable, so they are shared instead of copied,
+ * and the small ones (which most constants in U-expressions are) are interned.
+ */
 final class UConstImpl implements UConst {
+  private static final int MIN_INTERNED = -1, MAX_INTERNED = 127;
+  private static final UConst[] INTERNED = new UConst[MAX_INTERNED - MIN_INTERNED + 1];
+  private static final UConst NULL = new UConstImpl(Integer.MIN_VALUE);
+
+  static {
+    for (int v = MIN_INTERNED; v <= MAX_INTERNED; v++) INTERNED[v - MIN_INTERNED] = new UConstImpl(v);
+  }
 
   private final int value;
 
@@ -16,11 +27,12 @@ final class UConstImpl implements UConst {
   }
 
   static UConst mkVal(int v) {
+    if (v >= MIN_INTERNED && v <= MAX_INTERNED) return INTERNED[v - MIN_INTERNED];
     return new UConstImpl(v);
   }
 
   static UConst mkNull() {
-    return new UConstImpl(Integer.MIN_VALUE);
+    return NULL;
   }
 
   @Override
@@ -83,7 +95,7 @@ final class UConstImpl implements UConst {
 
   @Override
   public UTerm copy() {
-    return new UConstImpl(value);
+    return this;
   }
 
   @Override
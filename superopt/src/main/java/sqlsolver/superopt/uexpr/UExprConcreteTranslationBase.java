@@ -0,0 +1,78 @@
+package sqlsolver.superopt.uexpr;
+
+import org.apache.calcite.rel.RelNode;
+import sqlsolver.common.utils.NameSequence;
+import sqlsolver.sql.plan.Value;
+import sqlsolver.sql.schema.Schema;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The part of translating two plans that does not depend on IC rewriting,
+ * i.e. the U-expressions translated from the plans and normalized by {@link UExprSupport#normalizeExpr},
+ * together with the tuple schemas and var names used by them.
+ * <p/>
+ * A base is finished into a {@link UExprConcreteTranslationResult} by {@link UExprSupport#finishQueryToUExpr},
+ * with or without IC rewriting. Finishing works on copies, so a base is never modified
+ * and may be finished several times, even by different threads.
+ */
+public class UExprConcreteTranslationBase {
+  final RelNode p0, p1;
+  final Schema schema;
+  final UTerm srcExpr, tgtExpr;
+  final UVar srcOutVar, tgtOutVar;
+  private final Map<UVar, List<Value>> srcTupleVarSchemas;
+  private final Map<UVar, List<Value>> tgtTupleVarSchemas;
+  private final NameSequence freshVarNameSequence;
+  private final NameSequence freeVarNameSequence;
+
+  UExprConcreteTranslationBase(UExprConcreteTranslationResult translated,
+                               UTerm srcExpr, UVar srcOutVar,
+                               UTerm tgtExpr, UVar tgtOutVar,
+                               NameSequence freshVarNameSequence,
+                               NameSequence freeVarNameSequence) {
+    this.p0 = translated.p0;
+    this.p1 = translated.p1;
+    this.schema = translated.schema;
+    this.srcExpr = srcExpr;
+    this.tgtExpr = tgtExpr;
+    this.srcOutVar = srcOutVar;
+    this.tgtOutVar = tgtOutVar;
+    this.srcTupleVarSchemas = copyOf(translated.getSrcSchema());
+    this.tgtTupleVarSchemas = copyOf(translated.getTgtSchema());
+    this.freshVarNameSequence = copyOf(freshVarNameSequence);
+    this.freeVarNameSequence = copyOf(freeVarNameSequence);
+  }
+
+  /** A result to finish this base into, which starts with the tuple schemas of this base. */
+  UExprConcreteTranslationResult mkResult() {
+    final UExprConcreteTranslationResult result = new UExprConcreteTranslationResult(p0, p1, schema);
+    result.srcTupleVarSchemas.putAll(copyOf(srcTupleVarSchemas));
+    result.tgtTupleVarSchemas.putAll(copyOf(tgtTupleVarSchemas));
+    return result;
+  }
+
+  /** A sequence of fresh var names that do not clash with the vars of this base. */
+  NameSequence freshVarNameSequence() {
+    return copyOf(freshVarNameSequence);
+  }
+
+  /** A sequence of free var names that do not clash with the vars of this base. */
+  NameSequence freeVarNameSequence() {
+    return copyOf(freeVarNameSequence);
+  }
+
+  private static Map<UVar, List<Value>> copyOf(Map<UVar, List<Value>> tupleVarSchemas) {
+    // schemas are replaced rather than modified, so copying the lists suffices
+    final Map<UVar, List<Value>> copy = new HashMap<>();
+    tupleVarSchemas.forEach((var, schema) -> copy.put(var, schema == null ? null : new ArrayList<>(schema)));
+    return copy;
+  }
+
+  private static NameSequence copyOf(NameSequence seq) {
+    return seq == null ? null : seq.copy();
+  }
+}
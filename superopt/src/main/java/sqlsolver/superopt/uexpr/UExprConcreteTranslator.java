@@ -13,10 +13,13 @@ import org.apache.calcite.util.DateString;
 import org.apache.calcite.util.NlsString;
 import org.apache.calcite.util.TimeString;
 import org.apache.commons.lang3.tuple.Pair;
+import sqlsolver.common.utils.LongMetric;
 import sqlsolver.common.utils.NameSequence;
 import sqlsolver.sql.calcite.CalciteSupport;
 import sqlsolver.sql.plan.Value;
 import sqlsolver.sql.schema.Schema;
+import sqlsolver.superopt.logic.VerificationContext;
+import sqlsolver.superopt.logic.VerificationMetrics;
 import sqlsolver.superopt.uexpr.normalizer.QueryUExprICRewriter;
 import sqlsolver.superopt.uexpr.normalizer.QueryUExprNormalizer;
 import sqlsolver.superopt.uexpr.normalizer.ScalarNormalizer;
@@ -119,7 +122,7 @@ public class UExprConcreteTranslator {
     this.result = new UExprConcreteTranslationResult(p0, p1, schema);
     this.enableIntegrityConstraintRewrite = (tweak & UEXPR_FLAG_INTEGRITY_CONSTRAINT_REWRITE) != 0;
     this.explainsPredicates = (tweak & UEXPR_FLAG_NO_EXPLAIN_PREDICATES) == 0;
-    freeVarNameSequence = NameSequence.mkIndexed(FREE_VAR_NAME_PREFIX, 0);
+    VerificationContext.current().setFreeVarNameSequence(NameSequence.mkIndexed(FREE_VAR_NAME_PREFIX, 0));
   }
 
   UExprConcreteTranslator(String sql0, String sql1, Schema baseSchema, int tweak) {
@@ -133,22 +136,77 @@ public class UExprConcreteTranslator {
     this.explainsPredicates = (tweak & UEXPR_FLAG_NO_EXPLAIN_PREDICATES) == 0;
   }
 
+  private UExprConcreteTranslator(UExprConcreteTranslationResult result, Schema schema,
+                                  boolean enableIntegrityConstraintRewrite) {
+    this.schema = schema;
+    this.VALUESTablesReg = HashBiMap.create();
+    this.result = result;
+    this.enableIntegrityConstraintRewrite = enableIntegrityConstraintRewrite;
+    this.explainsPredicates = true;
+  }
+
+  /**
+   * Normalize a copy of a translated query, recording tuple schemas of fresh variables in {@code result}.
+   */
+  static UTerm renormalize(UExprConcreteTranslationResult result, Schema schema, boolean isTargetSide) {
+    final UExprConcreteTranslator translator = new UExprConcreteTranslator(result, schema, false);
+    // fresh variables must not clash with the translated ones
+    final QueryTranslator queryTranslator = translator.new QueryTranslator(
+            null, isTargetSide, NameSequence.mkIndexed(VAR_NAME_PREFIX + "n", 0));
+    final UTerm expr = isTargetSide ? result.targetExpr() : result.sourceExpr();
+    return queryTranslator.normalize(expr.copy());
+  }
+
+  /**
+   * Finish a base into U-expressions, IC rewriting them if <code>tweak</code> asks so.
+   * The base is not modified.
+   */
+  static UExprConcreteTranslationResult finish(UExprConcreteTranslationBase base, int tweak) {
+    final boolean enableIntegrityConstraintRewrite = (tweak & UEXPR_FLAG_INTEGRITY_CONSTRAINT_REWRITE) != 0;
+    return new UExprConcreteTranslator(base.mkResult(), base.schema, enableIntegrityConstraintRewrite).finish(base);
+  }
+
   UExprConcreteTranslationResult translate() {
+    final UExprConcreteTranslationBase base = translateBase();
+    return base == null ? null : finish(base);
+  }
+
+  /**
+   * Translate both plans into U-expressions, up to the normalization that IC rewriting takes part in.
+   */
+  UExprConcreteTranslationBase translateBase() {
     if (p0 == null || p1 == null) return null;
 
-    final QueryTranslator translator0 = new QueryTranslator(p0, false, NameSequence.mkIndexed(VAR_NAME_PREFIX, 0));
-    final QueryTranslator translator1 = new QueryTranslator(p1, true, NameSequence.mkIndexed(VAR_NAME_PREFIX, 0));
+    // both sides share the fresh var names
+    final NameSequence tupleVarSeq = NameSequence.mkIndexed(VAR_NAME_PREFIX, 0);
+    final QueryTranslator translator0 = new QueryTranslator(p0, false, tupleVarSeq);
+    final QueryTranslator translator1 = new QueryTranslator(p1, true, tupleVarSeq);
+
+    final UTerm expr0 = translator0.translateBase();
+    if (expr0 == null) return null;
+    final UTerm expr1 = translator1.translateBase();
+    if (expr1 == null) return null;
+
+    final VerificationContext context = VerificationContext.current();
+    return new UExprConcreteTranslationBase(
+            result, expr0, translator0.getVisibleVar(), expr1, translator1.getVisibleVar(),
+            context.freshVarNameSequence(), context.freeVarNameSequence());
+  }
+
+  private UExprConcreteTranslationResult finish(UExprConcreteTranslationBase base) {
+    VerificationContext.current().setFreeVarNameSequence(base.freeVarNameSequence());
+    final NameSequence tupleVarSeq = base.freshVarNameSequence();
+    final QueryTranslator translator0 = new QueryTranslator(null, false, tupleVarSeq);
+    final QueryTranslator translator1 = new QueryTranslator(null, true, tupleVarSeq);
 
     // translation context for both expressions in unison
     final Context ctx = Context.mk();
 
-    if (translator0.translate(ctx) && translator1.translate(ctx)) {
-//      final UVar newOutVar = UVar.mkBase(UName.mk(VAR_NAME_PREFIX));
-//      result.alignOutVar(newOutVar);
-      return result;
-    } else {
-      return null;
-    }
+    translator0.finish(base.srcExpr.copy(), base.srcOutVar.copy(), ctx);
+    translator1.finish(base.tgtExpr.copy(), base.tgtOutVar.copy(), ctx);
+//    final UVar newOutVar = UVar.mkBase(UName.mk(VAR_NAME_PREFIX));
+//    result.alignOutVar(newOutVar);
+    return result;
   }
 
   static <T> String getFullName(T col) {
@@ -172,7 +230,7 @@ public class UExprConcreteTranslator {
       this.auxVars = new HashMap<>();
       this.scalarTerms = new HashSet<>();
       // set fresh var name sequence to the new sequence.
-      freshVarNameSequence = tupleVarSeq;
+      VerificationContext.current().setFreshVarNameSequence(tupleVarSeq);
     }
 
     private void alignOutVar(UTerm expr) {
@@ -191,12 +249,12 @@ public class UExprConcreteTranslator {
      */
 
     /**
-     * translate and normalize the plan.
+     * translate the plan and normalize it independently of IC rewriting.
      */
-    private boolean translate(Context ctx) {
+    private UTerm translateBase() {
       // translate plan into U-exp
       UTerm expr = tr(plan, null);
-      if (expr == null) return false;
+      if (expr == null) return null;
       for (ScalarTerm term : scalarTerms) {
         expr = UMul.mk(term.toConstraint(), expr);
       }
@@ -204,6 +262,15 @@ public class UExprConcreteTranslator {
 
       // normalize
       expr = UExprSupport.normalizeExpr(expr);
+      assert visibleVars.size() == 1;
+      return expr;
+    }
+
+    /**
+     * finish normalizing a U-exp translated by {@link #translateBase()}, whose out var is <code>baseOutVar</code>.
+     */
+    private void finish(UTerm expr, UVar baseOutVar, Context ctx) {
+      push(visibleVars, baseOutVar);
       if (enableIntegrityConstraintRewrite) {
         expr = normalizeWithIntegrityConstraints(expr, ctx.constToTuple);
       } else {
@@ -225,7 +292,6 @@ public class UExprConcreteTranslator {
         result.tgtExpr = expr;
         result.tgtOutVar = outVar;
       }
-      return true;
     }
 
     /**
@@ -1909,19 +1975,31 @@ public class UExprConcreteTranslator {
      */
 
     private UTerm normalize(UTerm expr) {
-      return new QueryUExprNormalizer(expr, schema, this).normalizeTerm();
+      try (final LongMetric.Timer ignored = timeNormalization()) {
+        return new QueryUExprNormalizer(expr, schema, this).normalizeTerm();
+      }
     }
 
     private UTerm scalarNormalize(UTerm expr, Context ctx) {
-      return new ScalarNormalizer(expr, schema, this, ctx).normalizeTerm();
+      try (final LongMetric.Timer ignored = timeNormalization()) {
+        return new ScalarNormalizer(expr, schema, this, ctx).normalizeTerm();
+      }
     }
 
     private UTerm finalNormalize(UTerm expr, Set<UVar> boundVarSet) {
-      return new QueryUExprNormalizer(expr, schema, this).finalNormalizeTerm(boundVarSet);
+      try (final LongMetric.Timer ignored = timeNormalization()) {
+        return new QueryUExprNormalizer(expr, schema, this).finalNormalizeTerm(boundVarSet);
+      }
     }
 
     private UTerm normalizeWithIntegrityConstraints(UTerm expr, Map<Integer, VarSchema> constToTuple) {
-      return new QueryUExprICRewriter(expr, schema, this, constToTuple).normalizeTerm();
+      try (final LongMetric.Timer ignored = timeNormalization()) {
+        return new QueryUExprICRewriter(expr, schema, this, constToTuple).normalizeTerm();
+      }
+    }
+
+    private LongMetric.Timer timeNormalization() {
+      return VerificationMetrics.time(VerificationMetrics.current().elapsedNormalization);
     }
 
     /*
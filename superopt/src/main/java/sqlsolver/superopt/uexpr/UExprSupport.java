@@ -1,7 +1,7 @@
 package sqlsolver.superopt.uexpr;
 
 import org.apache.calcite.rel.RelNode;
-import sqlsolver.common.utils.NameSequence;
+import sqlsolver.common.utils.LongMetric;
 import sqlsolver.common.utils.NaturalCongruence;
 import sqlsolver.sql.ast.ExprFields;
 import sqlsolver.sql.ast.SqlNode;
@@ -9,17 +9,22 @@ import sqlsolver.sql.ast.constants.LiteralKind;
 import sqlsolver.sql.calcite.CalciteSupport;
 import sqlsolver.sql.plan.Expression;
 import sqlsolver.sql.schema.Schema;
+import sqlsolver.superopt.logic.VerificationContext;
+import sqlsolver.superopt.logic.VerificationMetrics;
 import sqlsolver.superopt.substitution.Substitution;
 import sqlsolver.superopt.substitution.SubstitutionTranslatorResult;
+import sqlsolver.superopt.uexpr.normalizer.QueryUExprNormalizer;
 import sqlsolver.superopt.uexpr.normalizer.UExprPreprocessor;
 import sqlsolver.superopt.uexpr.normalizer.UNormalization;
 import sqlsolver.superopt.uexpr.normalizer.UNormalizationEnhance;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 import static sqlsolver.common.utils.Commons.coalesce;
 import static sqlsolver.common.utils.IterableSupport.all;
@@ -49,16 +54,6 @@ public abstract class UExprSupport {
   // decide how to translate predicates like "x IN (a, b, ...)"
   public static final int UEXPR_FLAG_NO_EXPLAIN_PREDICATES = 1 << 4;
 
-  /**
-   * New fresh vars' name sequence, it is used in a single translation.
-   */
-  public static NameSequence freshVarNameSequence = null;
-
-  /**
-   * New free vars' name sequence, it is used in a proving process for two sqls, which generate the freeVar.
-   */
-  public static NameSequence freeVarNameSequence = null;
-
   private UExprSupport() {
   }
 
@@ -172,14 +167,14 @@ public abstract class UExprSupport {
    * Make a fresh base var.
    */
   public static UVar mkFreshBaseVar() {
-    return UVar.mkBase(UName.mk(freshVarNameSequence.next()));
+    return UVar.mkBase(UName.mk(VerificationContext.current().freshVarNameSequence().next()));
   }
 
   /**
    * Make a fresh free var.
    */
   public static UVar mkFreshFreeVar() {
-    return UVar.mkBase(UName.mk(freeVarNameSequence.next()));
+    return UVar.mkBase(UName.mk(VerificationContext.current().freeVarNameSequence().next()));
   }
 
   /**
@@ -1011,6 +1006,84 @@ public abstract class UExprSupport {
     return coalesce(copies, terms);
   }
 
+  /**
+   * Hash of `terms` regardless of their order and duplicates,
+   * which is consistent with comparing them as sets but does not materialize a set.
+   * <p>
+   * Hashes are computed on each call, not cached: composite terms are edited in place by normalizers,
+   * so only immutable leaf terms (constants and strings) are shared, see {@link UConstImpl}.
+   */
+  static int hashAsSet(List<? extends UTerm> terms, ToIntFunction<UTerm> hash) {
+    final int size = terms.size();
+    if (size == 0) return 0;
+    if (size == 1) return hash.applyAsInt(terms.get(0));
+    final int[] hashes = new int[size];
+    for (int i = 0; i < size; i++) hashes[i] = hash.applyAsInt(terms.get(i));
+    Arrays.sort(hashes);
+    int result = hashes[0];
+    for (int i = 1; i < size; i++) {
+      if (hashes[i] != hashes[i - 1]) result += hashes[i];
+    }
+    return result;
+  }
+
+  /**
+   * Hash of the structure excluding names of base variables, regardless of the order of comm and assoc items.
+   * <p>
+   * Terms that equal up to renaming of (bound) variables have the same hash, so it serves as the hash of summations.
+   * Unlike {@link UTerm#hashForSort()}, it needs neither copying nor sorting the term.
+   */
+  static int hashOfStructure(UTerm term) {
+    if (term instanceof ULiaVar) return "u".hashCode();
+    switch (term.kind()) {
+      case CONST:
+      case STRING:
+        return term.hashCode();
+      case VAR:
+        return hashOfStructure(((UVarTerm) term).var());
+      case TABLE:
+        return ((UTable) term).tableName().hashCode() * 31 + hashOfStructure(((UTable) term).var());
+      case FUNC: {
+        final UFunc func = (UFunc) term;
+        int hash = func.funcKind().hashCode() * 31 + func.funcName().hashCode();
+        for (UTerm arg : func.args()) hash = hash * 31 + hashOfStructure(arg);
+        return hash;
+      }
+      case PRED: {
+        final UPred pred = (UPred) term;
+        final List<UTerm> args = pred.args();
+        if (pred.isPredKind(UPred.PredKind.EQ)) {
+          // [p = 1] equals p
+          final UTerm lhs = args.get(0), rhs = args.get(1);
+          if (lhs instanceof UPred && rhs.equals(UConst.ONE)) return hashOfStructure(lhs);
+          if (rhs instanceof UPred && lhs.equals(UConst.ONE)) return hashOfStructure(rhs);
+        }
+        final int hash = pred.predKind().hashCode() * 31 + pred.predName().hashCode();
+        if (pred.isPredKind(UPred.PredKind.EQ) || pred.isPredKind(UPred.PredKind.NEQ))
+          return hash * 31 + hashAsSet(args, UExprSupport::hashOfStructure);
+        int argsHash = 0;
+        for (UTerm arg : args) argsHash = argsHash * 31 + hashOfStructure(arg);
+        return hash * 31 + argsHash;
+      }
+      case MULTIPLY:
+      case ADD:
+        return term.kind().hashCode() * 31 + hashAsSet(term.subTerms(), UExprSupport::hashOfStructure);
+      case SUMMATION:
+        return (term.kind().hashCode() * 31 + ((USum) term).boundedVars().size()) * 31
+            + hashOfStructure(((USum) term).body());
+      default:
+        // NEGATION, SQUASH
+        return term.kind().hashCode() * 31 + hashOfStructure(((UUnary) term).body());
+    }
+  }
+
+  private static int hashOfStructure(UVar var) {
+    if (var.is(UVar.VarKind.BASE)) return "x".hashCode();
+    int hash = var.kind().hashCode() * 31 + var.name().hashCode();
+    for (UVar arg : var.args()) hash = hash * 31 + hashOfStructure(arg);
+    return hash;
+  }
+
   public static UTerm remakeTerm(UTerm template, List<UTerm> subTerms) {
     if (subTerms == template.subTerms()) return template;
 
@@ -1038,6 +1111,15 @@ public abstract class UExprSupport {
     return remakeTerm(expr, transformTerms(expr.subTerms(), transformation));
   }
 
+  /**
+   * Make the multiplications in `expr` compare by {@link UMul#weakEquals(Object)} (or not) in `equals`.
+   * The switch is kept in the terms, so that `equals` does not look it up in the hot path.
+   */
+  public static void setUseWeakEquals(UTerm expr, boolean useWeakEquals) {
+    if (expr instanceof UMulImpl mul) mul.setUseWeakEquals(useWeakEquals);
+    for (UTerm subTerm : expr.subTerms()) setUseWeakEquals(subTerm, useWeakEquals);
+  }
+
   /**
    * Functions to get translated U-exprs
    */
@@ -1057,12 +1139,54 @@ public abstract class UExprSupport {
   public static UExprConcreteTranslationResult translateQueryWithVALUESToUExpr
           (String sql0, String sql1, Schema baseSchema, int tweaks) {
     // Process query with `VALUES` feature
-    return new UExprConcreteTranslator(sql0, sql1, baseSchema, tweaks).translate();
+    try (final LongMetric.Timer ignored =
+                 VerificationMetrics.time(VerificationMetrics.current().elapsedTranslation)) {
+      return new UExprConcreteTranslator(sql0, sql1, baseSchema, tweaks).translate();
+    }
   }
 
   public static UExprConcreteTranslationResult translateQueryToUExpr
           (RelNode plan0, RelNode plan1, Schema schema, int tweaks) {
     // Process concrete queries translation
-    return new UExprConcreteTranslator(plan0, plan1, schema, tweaks).translate();
+    try (final LongMetric.Timer ignored =
+                 VerificationMetrics.time(VerificationMetrics.current().elapsedTranslation)) {
+      return new UExprConcreteTranslator(plan0, plan1, schema, tweaks).translate();
+    }
+  }
+
+  /**
+   * Translate a pair of plans up to the normalization that IC rewriting takes part in.
+   * Among {@code tweaks}, only {@link #UEXPR_FLAG_NO_EXPLAIN_PREDICATES} matters to the base,
+   * which can be finished by {@link #finishQueryToUExpr} with and without IC rewriting.
+   */
+  public static UExprConcreteTranslationBase translateQueryToUExprBase
+          (RelNode plan0, RelNode plan1, Schema schema, int tweaks) {
+    try (final LongMetric.Timer ignored =
+                 VerificationMetrics.time(VerificationMetrics.current().elapsedTranslation)) {
+      return new UExprConcreteTranslator(plan0, plan1, schema, tweaks).translateBase();
+    }
+  }
+
+  /**
+   * Finish a base translated by {@link #translateQueryToUExprBase}, which is not modified.
+   * The result is the same as translating its plans from scratch with the flags of the base and {@code tweaks},
+   * up to var names. Returns null if the base is null, i.e. the plans are not translated.
+   */
+  public static UExprConcreteTranslationResult finishQueryToUExpr(UExprConcreteTranslationBase base, int tweaks) {
+    if (base == null) return null;
+    try (final LongMetric.Timer ignored =
+                 VerificationMetrics.time(VerificationMetrics.current().elapsedTranslation)) {
+      return UExprConcreteTranslator.finish(base, tweaks);
+    }
+  }
+
+  /**
+   * Normalize a translated query again by {@link QueryUExprNormalizer}, with the tuple schemas recorded in
+   * {@code uExprs}. The translated query is not modified, but tuple schemas of fresh variables are added to {@code uExprs}.
+   * Used by benchmarks to measure normalization apart from translation.
+   */
+  public static UTerm renormalizeQuery
+          (UExprConcreteTranslationResult uExprs, Schema schema, boolean isTargetSide) {
+    return UExprConcreteTranslator.renormalize(uExprs, schema, isTargetSide);
   }
 }
@@ -6,6 +6,7 @@ import sqlsolver.superopt.util.SetMatching;
 import java.util.*;
 
 import static sqlsolver.common.utils.IterableSupport.any;
+import static sqlsolver.superopt.uexpr.UExprSupport.hashAsSet;
 import static sqlsolver.superopt.uexpr.UExprSupport.transformTerms;
 
 final public class UFuncImpl implements UFunc {
@@ -204,6 +205,6 @@ final public class UFuncImpl implements UFunc {
 
   @Override
   public int hashCode() {
-    return funcKind.hashCode() * 31 * 31 + funcName.hashCode() * 31 + new HashSet<>(arguments).hashCode();
+    return funcKind.hashCode() * 31 * 31 + funcName.hashCode() * 31 + hashAsSet(arguments, UTerm::hashCode);
   }
 }
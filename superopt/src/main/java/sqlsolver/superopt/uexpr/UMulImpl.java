@@ -5,6 +5,7 @@ import sqlsolver.superopt.util.AbstractPrettyPrinter;
 import java.util.*;
 
 import static sqlsolver.common.utils.IterableSupport.any;
+import static sqlsolver.superopt.uexpr.UExprSupport.hashAsSet;
 import static sqlsolver.superopt.uexpr.UExprSupport.transformTerms;
 import sqlsolver.common.utils.UnionFind;
 import sqlsolver.superopt.util.CommAssocUexpUtils;
@@ -12,7 +13,8 @@ import sqlsolver.superopt.util.SetMatching;
 
 final public class UMulImpl implements UMul {
   private final List<UTerm> factors;
-  public static boolean useWeakEquals = false;
+  // set by UExprSupport.setUseWeakEquals for a single comparison, see equals
+  private boolean useWeakEquals;
 
   UMulImpl(List<UTerm> factors) {
     this.factors = factors;
@@ -326,6 +328,10 @@ final public class UMulImpl implements UMul {
     return true;
   }
 
+  void setUseWeakEquals(boolean useWeakEquals) {
+    this.useWeakEquals = useWeakEquals;
+  }
+
   public boolean weakEquals(Object obj) {
     if (obj == this) return true;
     if (!(obj instanceof UMul)) return false;
@@ -392,6 +398,6 @@ final public class UMulImpl implements UMul {
 
   @Override
   public int hashCode() {
-    return new HashSet<>(factors).hashCode();
+    return hashAsSet(factors, UTerm::hashCode);
   }
 }
@@ -14,6 +14,7 @@ record UNameImpl(String str) implements UName {
   @Override
   public boolean equals(Object obj) {
     if (this == obj) return true;
+    if (obj instanceof UNameImpl that) return str.equals(that.str);
     if (!(obj instanceof UName)) return false;
     final UName that = (UName) obj;
     return this.toString().equals(that.toString());
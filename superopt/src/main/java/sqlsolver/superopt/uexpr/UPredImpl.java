@@ -1,9 +1,11 @@
 package sqlsolver.superopt.uexpr;
 
+import sqlsolver.common.utils.Lazy;
 import sqlsolver.sql.ast.constants.ConstraintKind;
 import sqlsolver.sql.schema.Column;
 import sqlsolver.sql.schema.Constraint;
 import sqlsolver.sql.schema.Table;
+import sqlsolver.superopt.logic.CASTSupport;
 import sqlsolver.superopt.util.AbstractPrettyPrinter;
 import sqlsolver.superopt.util.SetMatching;
 
@@ -12,10 +14,12 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static sqlsolver.common.utils.IterableSupport.any;
+import static sqlsolver.superopt.uexpr.UExprSupport.hashAsSet;
 import static sqlsolver.superopt.uexpr.UExprSupport.transformTerms;
-import static sqlsolver.superopt.logic.CASTSupport.schema;
 
 final class UPredImpl implements UPred {
+  private static final Pattern TUPLE_VAR_PATTERN = Pattern.compile("x\\d+");
+
   private PredKind predKind;
   private UName predName;
   private final List<UTerm> arguments;
@@ -283,7 +287,7 @@ final class UPredImpl implements UPred {
 
   @Override
   public int hashCode() {
-    return predKind.hashCode() * 31 * 31 + predName.hashCode() * 31 + new HashSet<>(arguments).hashCode();
+    return predKind.hashCode() * 31 * 31 + predName.hashCode() * 31 + hashAsSet(arguments, UTerm::hashCode);
   }
 
   // 1 true 0 false -1 unknown
@@ -307,18 +311,20 @@ final class UPredImpl implements UPred {
           if(v1.kind() != UKind.VAR)
             return -1;
           final List<Constraint> notNulls = new ArrayList<>();
-          for (Table table : schema.tables()) {
+          for (Table table : CASTSupport.schema().tables()) {
             table.constraints(ConstraintKind.NOT_NULL).forEach(notNulls::add);
           }
           UVar arg = ((UVarTerm) v1).var();
 
           if(expr == null) return -1;
+          // printed at most once, and only if some column matches
+          final Lazy<String> exprString = Lazy.mk(expr::toString);
 //          System.out.println("constraint: " + notNulls);
           for(final Constraint notNull : notNulls) {
             for(final Column column : notNull.columns()) {
               if(arg.name().toString().equals(column.tableName()+"."+column.name())) {
                 if (arg.args().length == 1) {
-                  if(expr.toString().contains(column.tableName()+"("+arg.args()[0]+")"))
+                  if(exprString.get().contains(column.tableName()+"("+arg.args()[0]+")"))
                     return 0;
                   else {
                     //natural congruence
@@ -327,23 +333,21 @@ final class UPredImpl implements UPred {
                     String second_matcher = columnStr+"\\(x\\d+\\)";
                     Pattern pattern1 = Pattern.compile("\\["+first_matcher+"\s"+"="+"\s"+second_matcher+"\\]");
                     Pattern pattern2 = Pattern.compile("\\["+second_matcher+"\s"+"="+"\s"+first_matcher+"\\]");
-                    Matcher matcher1 = pattern1.matcher(expr.toString());
-                    Matcher matcher2 = pattern2.matcher(expr.toString());
+                    Matcher matcher1 = pattern1.matcher(exprString.get());
+                    Matcher matcher2 = pattern2.matcher(exprString.get());
                     while(matcher1.find()) {
-                      Pattern pattern = Pattern.compile("x\\d+");
-                      Matcher matcher = pattern.matcher(matcher1.group());
+                      Matcher matcher = TUPLE_VAR_PATTERN.matcher(matcher1.group());
                       while(matcher.find()) {
                         if(!Objects.equals(arg.args()[0].toString(), matcher.group())
-                                && expr.toString().contains(column.tableName()+"("+matcher.group()+")"))
+                                && exprString.get().contains(column.tableName()+"("+matcher.group()+")"))
                           return 0;
                       }
                     }
                     while(matcher2.find()) {
-                      Pattern pattern = Pattern.compile("x\\d+");
-                      Matcher matcher = pattern.matcher(matcher2.group());
+                      Matcher matcher = TUPLE_VAR_PATTERN.matcher(matcher2.group());
                       while(matcher.find()) {
                         if(!Objects.equals(arg.args()[0].toString(), matcher.group())
-                                && expr.toString().contains(column.tableName()+"("+matcher.group()+")"))
+                                && exprString.get().contains(column.tableName()+"("+matcher.group()+")"))
                           return 0;
                       }
                     }
@@ -79,7 +79,8 @@ public class UStringImpl implements UString {
 
   @Override
   public UTerm copy() {
-        return new UStringImpl(value);
+        // immutable, so shared instead of copied
+        return this;
     }
 
   @Override
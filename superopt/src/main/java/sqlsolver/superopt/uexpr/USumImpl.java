@@ -318,9 +318,9 @@ public record USumImpl(Set<UVar> boundedVars, UTerm body) implements USum {
   @Override
   public int hashCode() {
     // make hash of different summations as distinct as possible
-    // since invoking equals among large summations is extremely costly
-    final USum sum = (USum) copy();
-    sum.sortCommAssocItems();
-    return sum.hashForSort();
+    // since invoking equals among large summations is extremely costly;
+    // the structure hash is independent of var names and item order, so no copying or sorting is needed;
+    // it is not cached, since the body may be edited in place
+    return UExprSupport.hashOfStructure(this);
   }
 }
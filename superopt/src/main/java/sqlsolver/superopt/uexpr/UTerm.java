@@ -42,6 +42,13 @@ public interface UTerm extends Copyable<UTerm> {
     return filter(subTerms(), term -> term.kind() == kind);
   }
 
+  /** The number of terms in this term, including itself. */
+  default int size() {
+    int size = 1;
+    for (UTerm subTerm : subTerms()) size += subTerm.size();
+    return size;
+  }
+
   boolean isUsing(UVar var);
 
   boolean isUsingProjVar(UVar var);
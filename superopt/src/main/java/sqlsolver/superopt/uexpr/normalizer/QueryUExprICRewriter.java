@@ -12,6 +12,7 @@ import sqlsolver.sql.schema.Schema;
 import sqlsolver.sql.schema.Table;
 import sqlsolver.superopt.liastar.LiaStar;
 import sqlsolver.superopt.liastar.translator.LiaTranslator;
+import sqlsolver.superopt.logic.VerificationContext;
 import sqlsolver.superopt.uexpr.*;
 import sqlsolver.superopt.util.Z3Support;
 
@@ -43,23 +44,22 @@ public class QueryUExprICRewriter extends UNormalization {
 
   private final Map<Integer, VarSchema> constToTuple;
 
-  private static int selectedIC = -1;
-  private static boolean hasIC = true;
+  private final VerificationContext context;
 
   public static void selectIC(int index) {
-    selectedIC = index;
+    VerificationContext.current().selectIC(index);
   }
 
   public static int selectedIC() {
-    return selectedIC;
+    return VerificationContext.current().selectedIC();
   }
 
   public static void setHasIC(boolean val) {
-    hasIC = val;
+    VerificationContext.current().setHasIC(val);
   }
 
   public static boolean hasIC() {
-    return hasIC;
+    return VerificationContext.current().hasIC();
   }
 
   public UVar mkFreshICRewriterBaseVar() {
@@ -82,6 +82,7 @@ public class QueryUExprICRewriter extends UNormalization {
     this.replaceVarOneRecord = null;
     this.tupleVarSeq = NameSequence.mkIndexed(VAR_NAME_PREFIX, 0);
     this.constToTuple = constToTuple;
+    this.context = VerificationContext.current();
   }
 
   @Override
@@ -197,6 +198,7 @@ public class QueryUExprICRewriter extends UNormalization {
    */
   private UTerm applyNotNull(UTerm expr) {
     final List<Constraint> notNulls = new ArrayList<>();
+    final int selectedIC = context.selectedIC();
     if (selectedIC < 0) {
       for (Table table : schema.tables()) {
         table.constraints(ConstraintKind.NOT_NULL).forEach(notNulls::add);
@@ -213,7 +215,7 @@ public class QueryUExprICRewriter extends UNormalization {
           break;
         }
       }
-      hasIC = !notNulls.isEmpty();
+      context.setHasIC(!notNulls.isEmpty());
     }
 
     expr = applyNotNullRemoveNotNull(expr, notNulls);
@@ -243,6 +245,7 @@ public class QueryUExprICRewriter extends UNormalization {
    */
   private UTerm applyUnique(UTerm expr) {
     final List<Constraint> uniques = new ArrayList<>();
+    final int selectedIC = context.selectedIC();
     if (selectedIC < 0) {
       for (Table table : schema.tables()) {
         table.constraints(ConstraintKind.UNIQUE).forEach(uniques::add);
@@ -259,7 +262,7 @@ public class QueryUExprICRewriter extends UNormalization {
           break;
         }
       }
-      hasIC = !uniques.isEmpty();
+      context.setHasIC(!uniques.isEmpty());
     }
     Collections.reverse(uniques);
 
@@ -272,6 +275,7 @@ public class QueryUExprICRewriter extends UNormalization {
    */
   private UTerm applyUniqueDelayed(UTerm expr) {
     final List<Constraint> uniques = new ArrayList<>();
+    final int selectedIC = context.selectedIC();
     if (selectedIC < 0) {
       for (Table table : schema.tables()) {
         table.constraints(ConstraintKind.UNIQUE).forEach(uniques::add);
@@ -288,7 +292,7 @@ public class QueryUExprICRewriter extends UNormalization {
           break;
         }
       }
-      hasIC = !uniques.isEmpty();
+      context.setHasIC(!uniques.isEmpty());
     }
     Collections.reverse(uniques);
 
@@ -301,6 +305,7 @@ public class QueryUExprICRewriter extends UNormalization {
    */
   private UTerm applyPrimary(UTerm expr) {
     final List<Constraint> primaries = new ArrayList<>();
+    final int selectedIC = context.selectedIC();
     if (selectedIC < 0) {
       for (Table table : schema.tables()) {
         collectPrimaryKeyConstraints(table, primaries);
@@ -317,7 +322,7 @@ public class QueryUExprICRewriter extends UNormalization {
           break;
         }
       }
-      hasIC = !primaries.isEmpty();
+      context.setHasIC(!primaries.isEmpty());
     }
 
     expr = applyPrimaryReplaceBoundedVar(expr, primaries);
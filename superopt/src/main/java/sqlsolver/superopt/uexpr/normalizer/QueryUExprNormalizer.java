@@ -26,6 +26,29 @@ public class QueryUExprNormalizer extends UNormalization {
 
   private final List<UVar> icFreshVars;
 
+  private final List<NormalizationRule> queryRules = List.of(
+          rule("transformNulls", this::transformNulls, UKind.PRED),
+          rule("removeNulls", this::removeNulls, UKind.MULTIPLY),
+          rule("removeDeterminedBoundedVar", this::removeDeterminedBoundedVar, UKind.SUMMATION),
+          rule("removeDeterminedBoundedColumn", this::removeDeterminedBoundedColumn, UKind.SUMMATION),
+          rule("removeUnaryBoundedVar", this::removeUnaryBoundedVar, UKind.SUMMATION),
+          rule("simplifySumByUnarySubTerm", this::simplifySumByUnarySubTerm, UKind.SUMMATION),
+          rule("simplifySumBySetSolver", this::simplifySumBySetSolver, UKind.SUMMATION),
+          rule("simplifyMaxMinInSum", this::simplifyMaxMinInSum, UKind.SUMMATION),
+          rule("simplifyMultiplication", this::simplifyMultiplication, UKind.MULTIPLY),
+          rule("eliminateNegationTerm", this::eliminateNegationTerm, UKind.NEGATION),
+          rule("transformUnrelatedSummation", this::transformUnrelatedSummation, UKind.SUMMATION));
+
+  private final List<NormalizationRule> finalRules = List.of(
+          rule("extractUnrelatedSummation", this::extractUnrelatedSummation, UKind.SUMMATION),
+          rule("splitUnrelatedSummation", this::splitUnrelatedSummation, UKind.SUMMATION),
+          rule("extractUnrelatedSummationTerms", this::extractUnrelatedSummationTerms, UKind.SUMMATION),
+          rule("replaceSummation", this::replaceSummation, UKind.SUMMATION),
+          rule("applyFunction", this::applyFunction, UKind.FUNC),
+          rule("removeConstants", this::removeConstants),
+          rule("transformEqNullIsNull", this::transformEqNullIsNull, UKind.PRED),
+          rule("transformNulls", this::transformNulls, UKind.PRED));
+
   public QueryUExprNormalizer(UTerm expr, Schema schema, UExprConcreteTranslator.QueryTranslator translator) {
     super(expr, translator);
     this.schema = schema;
@@ -40,18 +63,7 @@ public class QueryUExprNormalizer extends UNormalization {
       // UNormalization cannot create new BVs due to lack of tuple schema info
       renameSameBoundedVarSummation(expr, new HashSet<>());
       isModified = false;
-
-      expr = performNormalizeRule(this::transformNulls);
-      expr = performNormalizeRule(this::removeNulls);
-      expr = performNormalizeRule(this::removeDeterminedBoundedVar);
-      expr = performNormalizeRule(this::removeDeterminedBoundedColumn);
-      expr = performNormalizeRule(this::removeUnaryBoundedVar);
-      expr = performNormalizeRule(this::simplifySumByUnarySubTerm);
-      expr = performNormalizeRule(this::simplifySumBySetSolver);
-      expr = performNormalizeRule(this::simplifyMaxMinInSum);
-      expr = performNormalizeRule(this::simplifyMultiplication);
-      expr = performNormalizeRule(this::eliminateNegationTerm);
-      expr = performNormalizeRule(this::transformUnrelatedSummation);
+      performNormalizeRules(queryRules);
     } while (isModified);
     return expr;
   }
@@ -61,18 +73,7 @@ public class QueryUExprNormalizer extends UNormalization {
    */
   public UTerm finalNormalizeTerm(Set<UVar> boundVarSet) {
     // no need to performNormalizeRule because there is no add and mul need to be flatted.
-    do {
-      isModified = false;
-
-      expr = performNormalizeRule(this::extractUnrelatedSummation);
-      expr = performNormalizeRule(this::splitUnrelatedSummation);
-      expr = performNormalizeRule(this::extractUnrelatedSummationTerms);
-      expr = performNormalizeRule(this::replaceSummation);
-      expr = performNormalizeRule(this::applyFunction);
-      expr = performNormalizeRule(this::removeConstants);
-      expr = performNormalizeRule(this::transformEqNullIsNull);
-      expr = performNormalizeRule(this::transformNulls);
-    } while (isModified);
+    performNormalizeRulesToFixpoint(finalRules);
 
     // bound vars in different UExpressions should not intersect
     // (i.e. bound vars should be globally unique)
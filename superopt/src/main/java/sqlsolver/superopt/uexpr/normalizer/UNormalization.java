@@ -1,5 +1,6 @@
 package sqlsolver.superopt.uexpr.normalizer;
 
+import sqlsolver.superopt.logic.VerificationMetrics;
 import sqlsolver.superopt.uexpr.*;
 import sqlsolver.superopt.util.Timeout;
 
@@ -20,6 +21,27 @@ public class UNormalization {
   public UTerm expr;
   protected final UExprConcreteTranslator.QueryTranslator translator;
 
+  private final List<NormalizationRule> rules = List.of(
+          rule("eliminateSquash", this::eliminateSquash, UKind.SQUASH),
+          rule("eliminateNegation", this::eliminateNegation, UKind.NEGATION),
+          rule("promoteSummation", this::promoteSummation, UKind.SUMMATION),
+          rule("mergeSummation", this::mergeSummation, UKind.SUMMATION),
+          rule("combineSquash", this::combineSquash, UKind.SQUASH),
+          rule("distributeAddToMul", this::distributeAddToMul, UKind.ADD),
+          rule("distributeAddToSummation", this::distributeAddToSummation, UKind.SUMMATION),
+          // also removes empty addition and multiplication
+          rule("removeConstants", this::removeConstants),
+          rule("transformEqNullIsNull", this::transformEqNullIsNull, UKind.PRED),
+          rule("removeNullConstant", this::removeNullConstant, UKind.CONST),
+          rule("foldConstants", this::foldConstants, UKind.CONST),
+          rule("removeRedundantFactors", this::removeRedundantFactors, UKind.MULTIPLY),
+          rule("removeRedundantSameEqual", this::removeRedundantSameEqual, UKind.PRED),
+          rule("removeRedundantFunction", this::removeRedundantFunction, UKind.FUNC),
+          rule("applyFunction", this::applyFunction, UKind.FUNC),
+          rule("removeSquashOfContradictAddition", this::removeSquashOfContradictAddition, UKind.SQUASH),
+          rule("removeDuplicatesInSet", this::removeDuplicatesInSet, UKind.SQUASH, UKind.NEGATION),
+          rule("simplifyUnaryTerm", this::simplifyUnaryTerm, UKind.PRED));
+
   public UNormalization(UTerm expr) {
     this.isModified = false;
     this.expr = expr;
@@ -91,33 +113,73 @@ public class UNormalization {
   }
 
   public UTerm normalizeTerm() {
+    return performNormalizeRulesToFixpoint(rules);
+  }
+
+  /**
+   * A normalization rule, which can only modify terms that contain a term of any of its trigger kinds.
+   * A rule without trigger kinds may modify any term.
+   */
+  protected record NormalizationRule(String name, Function<UTerm, UTerm> transformation, Set<UKind> triggers) {}
+
+  protected static NormalizationRule rule(String name, Function<UTerm, UTerm> transformation, UKind... triggers) {
+    final Set<UKind> triggerSet = EnumSet.noneOf(UKind.class);
+    triggerSet.addAll(Arrays.asList(triggers));
+    return new NormalizationRule(name, transformation, triggerSet);
+  }
+
+  /**
+   * Perform rules in rounds until a round where no rule modifies the term.
+   */
+  protected UTerm performNormalizeRulesToFixpoint(List<NormalizationRule> rules) {
     do {
       isModified = false;
-      // A round of normalizations
-
-      expr = performNormalizeRule(this::eliminateSquash);
-      expr = performNormalizeRule(this::eliminateNegation);
-      expr = performNormalizeRule(this::promoteSummation);
-      expr = performNormalizeRule(this::mergeSummation);
-      expr = performNormalizeRule(this::combineSquash);
-      expr = performNormalizeRule(this::distributeAddToMul);
-      expr = performNormalizeRule(this::distributeAddToSummation);
-      expr = performNormalizeRule(this::removeConstants);
-      expr = performNormalizeRule(this::transformEqNullIsNull);
-      expr = performNormalizeRule(this::removeNullConstant);
-      expr = performNormalizeRule(this::foldConstants);
-      expr = performNormalizeRule(this::removeRedundantFactors);
-      expr = performNormalizeRule(this::removeRedundantSameEqual);
-      expr = performNormalizeRule(this::removeRedundantFunction);
-      expr = performNormalizeRule(this::applyFunction);
-      expr = performNormalizeRule(this::removeSquashOfContradictAddition);
-      expr = performNormalizeRule(this::removeDuplicatesInSet);
-      expr = performNormalizeRule(this::simplifyUnaryTerm);
+      performNormalizeRules(rules);
     } while (isModified);
-
     return expr;
   }
 
+  /**
+   * Perform a round of rules in order, and return whether any rule modifies the term.
+   * <p>
+   * A rule is skipped if the term contains no term of its trigger kinds,
+   * so that a round does not traverse the whole term once per rule.
+   * Kinds in the term are collected again only after a rule changes the term.
+   * Rules that modify the term are recorded in {@link VerificationMetrics}.
+   */
+  protected boolean performNormalizeRules(List<NormalizationRule> rules) {
+    final boolean wasModified = isModified;
+    boolean modified = false;
+    Set<UKind> kinds = null;
+    for (NormalizationRule rule : rules) {
+      if (!rule.triggers().isEmpty()) {
+        if (kinds == null) kinds = kindsIn(expr);
+        if (Collections.disjoint(kinds, rule.triggers())) continue;
+      }
+      final UTerm original = expr;
+      isModified = false;
+      expr = performNormalizeRule(rule.transformation());
+      if (isModified) {
+        modified = true;
+        VerificationMetrics.current().recordRuleFire(rule.name());
+      }
+      if (isModified || expr != original) kinds = null;
+    }
+    isModified = wasModified || modified;
+    return modified;
+  }
+
+  private static Set<UKind> kindsIn(UTerm expr) {
+    final Set<UKind> kinds = EnumSet.noneOf(UKind.class);
+    collectKinds(expr, kinds);
+    return kinds;
+  }
+
+  private static void collectKinds(UTerm expr, Set<UKind> kinds) {
+    kinds.add(expr.kind());
+    for (UTerm subTerm : expr.subTerms()) collectKinds(subTerm, kinds);
+  }
+
   protected UTerm performNormalizeRule(Function<UTerm, UTerm> transformation) {
     expr = transformation.apply(expr);
     Timeout.checkTimeout();
@@ -4,7 +4,6 @@ import sqlsolver.sql.ast.constants.JoinKind;
 import sqlsolver.sql.plan.PlanContext;
 import sqlsolver.sql.plan.PlanKind;
 import sqlsolver.superopt.fragment.*;
-import sqlsolver.superopt.fragment.*;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -14,6 +13,9 @@ import static sqlsolver.sql.plan.PlanSupport.isDedup;
 import static sqlsolver.sql.plan.PlanSupport.joinKindOf;
 
 public class Fingerprint {
+  /** Max number of operators in a fingerprint. */
+  static final int MAX_OPS = 4;
+
   private final String fingerprint;
 
   Fingerprint(String fingerprint) {
@@ -24,21 +26,25 @@ public class Fingerprint {
     return fingerprint;
   }
 
+  public static Fingerprint mk(String fingerprint) {
+    return new Fingerprint(fingerprint);
+  }
+
   public static Fingerprint mk(Fragment fragment) {
     final OpFingerprintBuilder builder = new OpFingerprintBuilder();
-    return builder.build(fragment.root(), 4);
+    return builder.build(fragment.root(), MAX_OPS);
   }
 
   public static Set<Fingerprint> mk(PlanContext plan, int node) {
     final Set<Fingerprint> fingerprints = new HashSet<>();
-    for (int limit = 1; limit <= 4; ++limit) {
+    for (int limit = 1; limit <= MAX_OPS; ++limit) {
       final PlanFingerprintBuilder builder = new PlanFingerprintBuilder(plan);
       fingerprints.addAll(builder.build(node, limit));
     }
     return fingerprints;
   }
 
-  private static char getOpIdentifier(OpKind kind, boolean dedup) {
+  static char getOpIdentifier(OpKind kind, boolean dedup) {
     switch (kind) {
       case PROJ:
         return dedup ? 'q' : 'p';
@@ -59,6 +65,51 @@ public class Fingerprint {
     }
   }
 
+  static char identifierOf(PlanContext plan, int node) {
+    final PlanKind kind = plan.kindOf(node);
+    if (kind == PlanKind.Proj) return getOpIdentifier(OpKind.PROJ, isDedup(plan, node));
+    else if (kind == PlanKind.SetOp) return getOpIdentifier(OpKind.UNION, isDedup(plan, node));
+    else if (kind == PlanKind.Agg) return getOpIdentifier(OpKind.AGG, false);
+    else if (kind == PlanKind.Filter) return getOpIdentifier(OpKind.SIMPLE_FILTER, false);
+    else if (kind == PlanKind.InSub) return getOpIdentifier(OpKind.IN_SUB_FILTER, false);
+    else if (kind == PlanKind.Join)
+      return joinKindOf(plan, node) == JoinKind.INNER_JOIN
+          ? getOpIdentifier(OpKind.INNER_JOIN, false)
+          : getOpIdentifier(OpKind.LEFT_JOIN, false);
+    else assert false : kind;
+    return '?';
+  }
+
+  static int locateFilterChainChild(PlanContext plan, int node) {
+    while (plan.kindOf(node).isFilter()) node = plan.childOf(node, 0);
+    return node;
+  }
+
+  static int locateJoinTreeChild(PlanContext plan, int node) {
+    while (plan.kindOf(node) == PlanKind.Join) node = plan.childOf(node, 0);
+    return node;
+  }
+
+  static int[] countFilters(PlanContext plan, int node) {
+    int total = 0, subquery = 0;
+    while (plan.kindOf(node).isFilter()) {
+      ++total;
+      if (plan.kindOf(node).isSubqueryFilter()) ++subquery;
+      node = plan.childOf(node, 0);
+    }
+    return new int[] {total, subquery};
+  }
+
+  static int[] countJoins(PlanContext plan, int node) {
+    int total = 0, leftJoin = 0;
+    while (plan.kindOf(node) == PlanKind.Join) {
+      ++total;
+      if (joinKindOf(plan, node) == JoinKind.LEFT_JOIN) ++leftJoin;
+      node = plan.childOf(node, 0);
+    }
+    return new int[] {total, leftJoin};
+  }
+
   private static void repeatChar(StringBuilder builder, char c, int count) {
     for (int i = 0; i < count; ++i) builder.append(c);
   }
@@ -124,8 +175,8 @@ public class Fingerprint {
       }
 
       if (nodeKind.isFilter()) {
-        final int chainChild = locateFilterChainChild(node);
-        final int[] counts = countFilters(node);
+        final int chainChild = locateFilterChainChild(plan, node);
+        final int[] counts = countFilters(plan, node);
         final int tot = counts[0], subTot = counts[1];
         final int limit = min(tot, budget);
 
@@ -144,17 +195,17 @@ public class Fingerprint {
         }
 
       } else if (nodeKind == PlanKind.Join) {
-        final int treeChild = locateJoinTreeChild(node);
-        final int[] counts = countJoins(node);
+        final int treeChild = locateJoinTreeChild(plan, node);
+        final int[] counts = countJoins(plan, node);
         final int total = counts[0], leftJoins = counts[1];
         mkFingerprintForJoin(total, leftJoins, budget, treeChild);
 
       } else if (nodeKind == PlanKind.Proj || nodeKind == PlanKind.SetOp) {
-        builder.append(identifierOf(node));
+        builder.append(identifierOf(plan, node));
         build(plan.childOf(node, 0), budget - 1);
         popChars(builder, 1);
       } else if (nodeKind == PlanKind.Agg) {
-        builder.append(identifierOf(node));
+        builder.append(identifierOf(plan, node));
         build(plan.childOf(plan.childOf(node, 0), 0), budget - 1);
         popChars(builder, 1);
       }
@@ -162,51 +213,6 @@ public class Fingerprint {
       return fingerprints;
     }
 
-    private char identifierOf(int node) {
-      final PlanKind kind = plan.kindOf(node);
-      if (kind == PlanKind.Proj) return getOpIdentifier(OpKind.PROJ, isDedup(plan, node));
-      else if (kind == PlanKind.SetOp) return getOpIdentifier(OpKind.UNION, isDedup(plan, node));
-      else if (kind == PlanKind.Agg) return getOpIdentifier(OpKind.AGG, false);
-      else if (kind == PlanKind.Filter) return getOpIdentifier(OpKind.SIMPLE_FILTER, false);
-      else if (kind == PlanKind.InSub) return getOpIdentifier(OpKind.IN_SUB_FILTER, false);
-      else if (kind == PlanKind.Join)
-        return joinKindOf(plan, node) == JoinKind.INNER_JOIN
-            ? getOpIdentifier(OpKind.INNER_JOIN, false)
-            : getOpIdentifier(OpKind.LEFT_JOIN, false);
-      else assert false : kind;
-      return '?';
-    }
-
-    private int locateFilterChainChild(int node) {
-      while (plan.kindOf(node).isFilter()) node = plan.childOf(node, 0);
-      return node;
-    }
-
-    private int locateJoinTreeChild(int node) {
-      while (plan.kindOf(node) == PlanKind.Join) node = plan.childOf(node, 0);
-      return node;
-    }
-
-    private int[] countFilters(int node) {
-      int total = 0, subquery = 0;
-      while (plan.kindOf(node).isFilter()) {
-        ++total;
-        if (plan.kindOf(node).isSubqueryFilter()) ++subquery;
-        node = plan.childOf(node, 0);
-      }
-      return new int[] {total, subquery};
-    }
-
-    private int[] countJoins(int node) {
-      int total = 0, leftJoin = 0;
-      while (plan.kindOf(node) == PlanKind.Join) {
-        ++total;
-        if (joinKindOf(plan, node) == JoinKind.LEFT_JOIN) ++leftJoin;
-        node = plan.childOf(node, 0);
-      }
-      return new int[] {total, leftJoin};
-    }
-
     private void mkFingerprintForJoin(int joins, int leftJoins, int budget, int joinTreeChild) {
       if (budget == 0 || joins == 0) {
         build(joinTreeChild, budget);
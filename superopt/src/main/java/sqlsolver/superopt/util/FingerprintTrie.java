@@ -0,0 +1,168 @@
+package sqlsolver.superopt.util;
+
+import sqlsolver.sql.plan.PlanContext;
+import sqlsolver.sql.plan.PlanKind;
+import sqlsolver.superopt.fragment.OpKind;
+
+import java.util.*;
+
+import static java.lang.Integer.min;
+import static sqlsolver.superopt.util.Fingerprint.*;
+
+/**
+ * Values indexed by fingerprints, in a trie (discrimination tree) whose edges are operator identifiers.
+ * <p/>
+ * {@link #lookup(PlanContext, int)} finds the values whose fingerprints are among
+ * {@link Fingerprint#mk(PlanContext, int)} of a sub-plan in a single walk of the sub-plan.
+ * The walk descends the trie along with the plan and stops wherever no indexed fingerprint continues,
+ * so neither the fingerprints of the sub-plan are built nor the unmatched ones are hashed.
+ * <p/>
+ * Lookups do not modify the trie, so they may run concurrently once the trie is built.
+ */
+public class FingerprintTrie<T> {
+  private final Node<T> root = new Node<>();
+  private int size;
+
+  public int size() {
+    return size;
+  }
+
+  public void add(Fingerprint fingerprint, T value) {
+    Node<T> node = root;
+    for (char c : fingerprint.fingerprint().toCharArray()) node = node.mkChild(c);
+    node.values.add(value);
+    ++size;
+  }
+
+  public boolean remove(Fingerprint fingerprint, T value) {
+    final Node<T> node = root.descend(fingerprint.fingerprint());
+    if (node == null || !node.values.remove(value)) return false;
+    --size;
+    return true;
+  }
+
+  /** The values indexed exactly by <code>fingerprint</code>. */
+  public List<T> lookup(Fingerprint fingerprint) {
+    final Node<T> node = root.descend(fingerprint.fingerprint());
+    return node == null ? Collections.emptyList() : node.values;
+  }
+
+  /** The values indexed by any fingerprint of the sub-plan rooted at <code>node</code>. */
+  public List<T> lookup(PlanContext plan, int node) {
+    final Walk<T> walk = new Walk<>(plan);
+    walk.walk(node, MAX_OPS, root);
+
+    final List<T> values = new ArrayList<>();
+    for (Node<T> reached : walk.reached) values.addAll(reached.values);
+    return values;
+  }
+
+  private static class Node<T> {
+    // operator identifiers are lower-case letters and '?'
+    private Node<T>[] children;
+    private final List<T> values = new ArrayList<>(2);
+
+    private static int indexOf(char c) {
+      return c == '?' ? 26 : c - 'a';
+    }
+
+    private Node<T> child(char c) {
+      return children == null ? null : children[indexOf(c)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<T> mkChild(char c) {
+      if (children == null) children = new Node[27];
+      final int i = indexOf(c);
+      if (children[i] == null) children[i] = new Node<>();
+      return children[i];
+    }
+
+    private Node<T> descend(char c, int count) {
+      Node<T> node = this;
+      for (int i = 0; i < count && node != null; ++i) node = node.child(c);
+      return node;
+    }
+
+    private Node<T> descend(String path) {
+      Node<T> node = this;
+      for (int i = 0; i < path.length() && node != null; ++i) node = node.child(path.charAt(i));
+      return node;
+    }
+  }
+
+  /**
+   * Walks a sub-plan like {@link Fingerprint#mk(PlanContext, int)}, but once with the max budget.
+   * <p/>
+   * A fingerprint built with a smaller budget is a prefix that the max budget walk passes by
+   * when its remaining budget is checked. Thus, any node reached with some budget spent is
+   * the end of a fingerprint, in addition to the ends where the walk stops.
+   */
+  private static class Walk<T> {
+    private final PlanContext plan;
+    // in walk order, each node once
+    private final Set<Node<T>> reached;
+
+    private Walk(PlanContext plan) {
+      this.plan = plan;
+      this.reached = new LinkedHashSet<>();
+    }
+
+    private void reach(Node<T> node) {
+      if (!node.values.isEmpty()) reached.add(node);
+    }
+
+    private void walk(int node, int budget, Node<T> at) {
+      final PlanKind nodeKind = plan.kindOf(node);
+      if (budget < MAX_OPS || nodeKind == PlanKind.Input) reach(at);
+      if (budget <= 0 || nodeKind == PlanKind.Input) return;
+
+      if (nodeKind.isFilter()) {
+        final int chainChild = locateFilterChainChild(plan, node);
+        final int[] counts = countFilters(plan, node);
+        final int tot = counts[0], subTot = counts[1];
+        final int limit = min(tot, budget);
+
+        for (int cnt = 1; cnt <= limit; ++cnt) {
+          for (int subCnt = 0, subBudget = min(cnt, subTot); subCnt <= subBudget; ++subCnt) {
+            Node<T> next = at.descend(getOpIdentifier(OpKind.SIMPLE_FILTER, false), cnt - subCnt);
+            if (next != null) next = next.descend(getOpIdentifier(OpKind.IN_SUB_FILTER, false), subCnt);
+            if (next == null) continue;
+
+            if (cnt == subCnt && subCnt < subTot) reach(next);
+            else walk(chainChild, budget - cnt, next);
+          }
+        }
+
+      } else if (nodeKind == PlanKind.Join) {
+        final int treeChild = locateJoinTreeChild(plan, node);
+        final int[] counts = countJoins(plan, node);
+        walkJoins(counts[0], counts[1], budget, treeChild, at);
+
+      } else if (nodeKind == PlanKind.Proj || nodeKind == PlanKind.SetOp) {
+        final Node<T> next = at.child(identifierOf(plan, node));
+        if (next != null) walk(plan.childOf(node, 0), budget - 1, next);
+
+      } else if (nodeKind == PlanKind.Agg) {
+        final Node<T> next = at.child(identifierOf(plan, node));
+        if (next != null) walk(plan.childOf(plan.childOf(node, 0), 0), budget - 1, next);
+      }
+    }
+
+    private void walkJoins(int joins, int leftJoins, int budget, int joinTreeChild, Node<T> at) {
+      if (budget == 0 || joins == 0) {
+        walk(joinTreeChild, budget, at);
+        return;
+      }
+      if (budget < MAX_OPS) reach(at);
+
+      if (leftJoins > 0) {
+        final Node<T> next = at.child(getOpIdentifier(OpKind.LEFT_JOIN, false));
+        if (next != null) walkJoins(joins - 1, leftJoins - 1, budget - 1, joinTreeChild, next);
+      }
+
+      final Node<T> next = at.child(getOpIdentifier(OpKind.INNER_JOIN, false));
+      if (next != null) walkJoins(joins - 1, leftJoins, budget - 1, joinTreeChild, next);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package sqlsolver.superopt.util;
+
+import com.microsoft.z3.Status;
+import sqlsolver.common.config.GlobalConfig;
+import sqlsolver.superopt.liastar.LiaFuncImpl;
+import sqlsolver.superopt.liastar.LiaStar;
+import sqlsolver.superopt.liastar.LiaVarImpl;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded LRU cache of the results of LIA validity/satisfiability checks in {@link Z3Support}.
+ * <p/>
+ * A check is keyed by its formula up to var renaming, together with the quantifier and the type of each var,
+ * e.g. checking validity of "x + y >= x" and "a + b >= a" (with the same var types) share an entry.
+ * Only results that Z3 decides are cached, so a timed-out check is tried again next time.
+ * <p/>
+ * Function symbols are interpreted by the functions registered for the current verification,
+ * so a cache must not outlive its verification. It is shared by forked contexts and is thread-safe.
+ * The default context of a thread (see {@link sqlsolver.superopt.logic.VerificationContext#current()})
+ * outlives any verification, so it has a disabled cache.
+ */
+public class LiaQueryCache {
+  private final int capacity;
+  private final LinkedHashMap<String, Boolean> results;
+
+  public LiaQueryCache(int capacity) {
+    this.capacity = Math.max(0, capacity);
+    this.results = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+        return size() > LiaQueryCache.this.capacity;
+      }
+    };
+  }
+
+  public static LiaQueryCache mkDefault() {
+    return new LiaQueryCache(GlobalConfig.SQLSOLVER_Z3_CACHE_SIZE);
+  }
+
+  public boolean isEnabled() {
+    return capacity > 0;
+  }
+
+  /** The cached result of a check, or <code>null</code> if it is not cached. */
+  synchronized Boolean get(String key) {
+    return results.get(key);
+  }
+
+  synchronized void put(String key, boolean result) {
+    results.put(key, result);
+  }
+
+  /** Cache the result of a check if Z3 decides it. */
+  void putIfDecided(String key, Status status, boolean result) {
+    if (key != null && status != Status.UNKNOWN) put(key, result);
+  }
+
+  /**
+   * The key of checking <code>lia</code> with a kind of check (e.g. validity),
+   * where vars named in <code>boundNames</code> are bound by one quantifier and other vars by the other.
+   * Vars are renamed in the order they are visited, so renamed formulas have the same key.
+   */
+  static String keyOf(String kind, LiaStar lia, Set<String> boundNames) {
+    final Map<String, String> renaming = new HashMap<>();
+    // funcs print the same whether they are allowed to be undefined or not
+    final StringBuilder funcFlags = new StringBuilder();
+    final LiaStar canonical = lia.transformPostOrder(f -> {
+      if (f instanceof LiaVarImpl var) {
+        final String name = var.getName();
+        final String renamed =
+                renaming.computeIfAbsent(name, n -> (boundNames.contains(n) ? "$b" : "$f") + renaming.size());
+        // the type is part of the name since occurrences of a var may have different types
+        return LiaStar.mkVar(var.isInStar(), renamed + ":" + var.getValueType(), var.getValueType());
+      }
+      if (f instanceof LiaFuncImpl func) {
+        funcFlags.append(func.allowsUndefined() ? 'u' : 'd');
+      }
+      return f;
+    });
+    return kind + "|" + funcFlags + "|" + canonical;
+  }
+}
@@ -0,0 +1,184 @@
+package sqlsolver.superopt.util;
+
+import com.microsoft.z3.Context;
+import sqlsolver.common.config.GlobalConfig;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-affine pool of Z3 contexts.
+ * <p/>
+ * Creating and closing a native Z3 context is expensive compared with short proofs,
+ * so callers borrow a context instead of making one:
+ * <pre>
+ * try (final Z3ContextPool.Lease lease = Z3ContextPool.borrow()) {
+ *   final Context ctx = lease.context();
+ *   ...
+ * }
+ * </pre>
+ * A context is only handed out to the thread that borrowed it first,
+ * and a borrowed context is not handed out again until its lease is closed,
+ * so nested borrowing gets distinct contexts.
+ * Callers must not keep Z3 objects (e.g. solvers or expressions) beyond the lease,
+ * since they are only valid as long as the context is.
+ * <p/>
+ * A returned context keeps its declarations, and every caller makes its own solver,
+ * so nothing asserted by a previous user is visible to the next one.
+ * To bound the memory held by declarations, a context is closed after
+ * {@link GlobalConfig#SQLSOLVER_Z3_CONTEXT_REUSE} leases.
+ * A context returned by an interrupted thread is closed as well,
+ * since the interrupted computation may have left it in an unknown state.
+ * <p/>
+ * Z3 does not respond to {@link Thread#interrupt()}; use {@link #interrupt(Thread)}
+ * to also stop the Z3 computations of a thread.
+ */
+public class Z3ContextPool {
+  /** Max number of idle contexts kept by each thread. */
+  private static final int MAX_IDLE_CONTEXTS = 4;
+
+  private static final ThreadLocal<Deque<PooledContext>> IDLE_CONTEXTS = ThreadLocal.withInitial(ArrayDeque::new);
+  private static final Map<Thread, Set<PooledContext>> LEASED_CONTEXTS = new ConcurrentHashMap<>();
+  private static final AtomicLong NUM_CREATED = new AtomicLong(0);
+  private static final AtomicLong NUM_BORROWED = new AtomicLong(0);
+
+  private Z3ContextPool() {}
+
+  /** Borrow a context of the current thread, which is returned when the lease is closed. */
+  public static Lease borrow() {
+    NUM_BORROWED.incrementAndGet();
+    PooledContext pooled = IDLE_CONTEXTS.get().pollFirst();
+    if (pooled == null) {
+      NUM_CREATED.incrementAndGet();
+      pooled = new PooledContext(new Context());
+    }
+    pooled.lease();
+    // only the owner thread adds or removes its entry
+    LEASED_CONTEXTS.computeIfAbsent(Thread.currentThread(), t -> ConcurrentHashMap.newKeySet()).add(pooled);
+    return new Lease(pooled);
+  }
+
+  /**
+   * Interrupt the Z3 computations on the contexts currently borrowed by a thread.
+   * Interrupted contexts are closed instead of being reused once they are returned.
+   */
+  public static void interrupt(Thread thread) {
+    final Set<PooledContext> leased = LEASED_CONTEXTS.get(thread);
+    if (leased == null) return;
+    for (PooledContext pooled : leased) {
+      pooled.interrupt();
+    }
+  }
+
+  /** Close the idle contexts of the current thread, e.g. before the thread terminates. */
+  public static void closeIdle() {
+    final Deque<PooledContext> idle = IDLE_CONTEXTS.get();
+    for (PooledContext pooled : idle) {
+      pooled.close();
+    }
+    idle.clear();
+  }
+
+  /** Number of contexts created by the pool. */
+  public static long numCreated() {
+    return NUM_CREATED.get();
+  }
+
+  /** Number of leases handed out by the pool. */
+  public static long numBorrowed() {
+    return NUM_BORROWED.get();
+  }
+
+  /** The ratio of leases that are served by an existing context. */
+  public static double reuseRate() {
+    final long borrowed = NUM_BORROWED.get();
+    if (borrowed == 0) return 0;
+    return (double) (borrowed - NUM_CREATED.get()) / borrowed;
+  }
+
+  public static String stats() {
+    return "Z3 contexts: created %d, borrowed %d, reuse rate %.1f%%"
+            .formatted(numCreated(), numBorrowed(), reuseRate() * 100);
+  }
+
+  private static void giveBack(PooledContext pooled) {
+    final Thread thread = Thread.currentThread();
+    final Set<PooledContext> leased = LEASED_CONTEXTS.get(thread);
+    if (leased != null) {
+      leased.remove(pooled);
+      if (leased.isEmpty()) LEASED_CONTEXTS.remove(thread);
+    }
+
+    final Deque<PooledContext> idle = IDLE_CONTEXTS.get();
+    if (!pooled.release()
+            || thread.isInterrupted()
+            || pooled.numLeases >= GlobalConfig.SQLSOLVER_Z3_CONTEXT_REUSE
+            || idle.size() >= MAX_IDLE_CONTEXTS) {
+      pooled.close();
+      return;
+    }
+    // most recently used first, whose memory is likely still warm
+    idle.addFirst(pooled);
+  }
+
+  private static class PooledContext {
+    private final Context context;
+    private int numLeases;
+    // guarded by this; interrupt() may be called by other threads
+    private boolean leased;
+    private boolean interrupted;
+    private boolean closed;
+
+    private PooledContext(Context context) {
+      this.context = context;
+    }
+
+    private synchronized void lease() {
+      numLeases++;
+      leased = true;
+    }
+
+    /** @return whether the context is still usable */
+    private synchronized boolean release() {
+      leased = false;
+      return !interrupted;
+    }
+
+    private synchronized void interrupt() {
+      if (!leased || closed) return;
+      interrupted = true;
+      context.interrupt();
+    }
+
+    private synchronized void close() {
+      if (closed) return;
+      closed = true;
+      context.close();
+    }
+  }
+
+  /** A borrowed context. Closing the lease returns the context to the pool. */
+  public static class Lease implements AutoCloseable {
+    private PooledContext pooled;
+
+    private Lease(PooledContext pooled) {
+      this.pooled = pooled;
+    }
+
+    public Context context() {
+      if (pooled == null) throw new IllegalStateException("Z3 context lease is closed");
+      return pooled.context;
+    }
+
+    @Override
+    public void close() {
+      if (pooled == null) return;
+      giveBack(pooled);
+      pooled = null;
+    }
+  }
+}
@@ -1,10 +1,13 @@
 package sqlsolver.superopt.util;
 
 import com.microsoft.z3.*;
+import sqlsolver.common.utils.LongMetric;
 import sqlsolver.common.utils.SetSupport;
 import sqlsolver.superopt.liastar.LiaStar;
 import sqlsolver.superopt.liastar.LiaVarImpl;
 import sqlsolver.superopt.logic.SqlSolver;
+import sqlsolver.superopt.logic.VerificationContext;
+import sqlsolver.superopt.logic.VerificationMetrics;
 import sqlsolver.superopt.uexpr.PredefinedFunctions;
 import sqlsolver.superopt.uexpr.PredefinedFunctions.ValueType;
 
@@ -14,6 +17,17 @@ import static sqlsolver.common.utils.ListSupport.*;
 import static sqlsolver.sql.plan.Value.*;
 
 public class Z3Support {
+  /**
+   * Check the assertions of a solver, which is counted and timed in the current {@link VerificationMetrics}.
+   */
+  public static Status check(Solver solver) {
+    final VerificationMetrics metrics = VerificationMetrics.current();
+    metrics.numZ3Checks.increment();
+    try (final LongMetric.Timer ignored = VerificationMetrics.time(metrics.elapsedZ3)) {
+      return solver.check();
+    }
+  }
+
   /**
    * Add var definitions and non-negativity to a Z3 context. It also updates the var definition map.
    * Vars already in the map are ignored.
@@ -242,24 +256,16 @@ public class Z3Support {
    */
   public static boolean isValidLia(LiaStar lia, Set<String> universalBVNames) {
     Timeout.checkTimeout();
+    final LiaQueryCache cache = VerificationContext.current().liaQueryCache();
+    final String key = cache.isEnabled() ? LiaQueryCache.keyOf("valid", lia, universalBVNames) : null;
+    final Boolean cached = lookup(cache, key);
+    if (cached != null) return cached;
     // Since LIA does not contain forall/exists,
     // let FVs in universalBVs be bound by "forall",
     // and other FVs be bound by "exists"
     final Set<String> existBVNames = SetSupport.minus(lia.collectVarNames(), universalBVNames);
-    final Set<LiaVarImpl> universalBVs = new HashSet<>();
-    lia.transformPostOrder(f -> {
-      if (f instanceof LiaVarImpl var && universalBVNames.contains(var.getName())) {
-        universalBVs.add(var);
-      }
-      return f;
-    });
-    final Set<LiaVarImpl> existBVs = new HashSet<>();
-    lia.transformPostOrder(f -> {
-      if (f instanceof LiaVarImpl var && existBVNames.contains(var.getName())) {
-        existBVs.add(var);
-      }
-      return f;
-    });
+    final Set<LiaVarImpl> universalBVs = lia.collectVarsNamedIn(universalBVNames);
+    final Set<LiaVarImpl> existBVs = lia.collectVarsNamedIn(existBVNames);
     // We want to check validity of "forall universalBVs. some universalBVs >= 0 -> exists existBVs. some existBVs >= 0 /\ lia",
     // which can be reduced to falsehood of
     // "exists universalBVs. some universalBVs >= 0 /\ forall existBVs. some existBVs >= 0 -> not lia",
@@ -267,7 +273,8 @@ public class Z3Support {
     // "some universalBVs >= 0 /\ forall existBVs. some existBVs >= 0 -> not lia".
     // Non-negativity of vars (some universalBVs and existBVs >= 0) is considered.
     // Whether a var is non-negative is determined by its type. (natural vars are non-negative)
-    try (final Context ctx = new Context()) {
+    try (final Z3ContextPool.Lease lease = Z3ContextPool.borrow()) {
+      final Context ctx = lease.context();
       final Map<String, Expr> varDef = new HashMap<>();
       final BoolExpr nnEx = defineVarsByVars(ctx, varDef, existBVs);
       final BoolExpr nnUn = defineVarsByVars(ctx, varDef, universalBVs);
@@ -289,7 +296,9 @@ public class Z3Support {
       final BoolExpr toCheck = ctx.mkAnd(nnUn, body);
       final Solver s = ctx.mkSolver(ctx.tryFor(ctx.mkTactic("lia"), SqlSolver.Z3_TIMEOUT));
       s.add(toCheck);
-      return s.check() == Status.UNSATISFIABLE;
+      final Status status = check(s);
+      cache.putIfDecided(key, status, status == Status.UNSATISFIABLE);
+      return status == Status.UNSATISFIABLE;
     } catch (Throwable e) {
       return false;
     }
@@ -306,9 +315,17 @@ public class Z3Support {
    *     the "forall" part covers free vars in lia except existBVs.
    */
   public static boolean isSatisfiable(LiaStar lia, Set<String> existBVNames) {
-    try (final Context ctx = new Context()) {
-      final Model model = findModel(lia, existBVNames, ctx);
-      return model != null;
+    final LiaQueryCache cache = VerificationContext.current().liaQueryCache();
+    final String key = cache.isEnabled() ? LiaQueryCache.keyOf("sat", lia, existBVNames) : null;
+    final Boolean cached = lookup(cache, key);
+    if (cached != null) return cached;
+    try (final Z3ContextPool.Lease lease = Z3ContextPool.borrow()) {
+      final Context ctx = lease.context();
+      final Solver s = mkSatisfiabilitySolver(lia, existBVNames, ctx);
+      final Status status = check(s);
+      final boolean result = s.getModel() != null;
+      cache.putIfDecided(key, status, result);
+      return result;
     }
   }
 
@@ -323,24 +340,18 @@ public class Z3Support {
    *     the "forall" part covers free vars in lia except existBVs.
    */
   public static Model findModel(LiaStar lia, Set<String> existBVNames, Context ctx) {
+    final Solver s = mkSatisfiabilitySolver(lia, existBVNames, ctx);
+    check(s);
+    return s.getModel();
+  }
+
+  private static Solver mkSatisfiabilitySolver(LiaStar lia, Set<String> existBVNames, Context ctx) {
     // Since LIA does not contain forall/exists,
     // let FVs in existBVs be bound by "exists",
     // and other FVs be bound by "exists"
     final Set<String> universalBVNames = SetSupport.minus(lia.collectVarNames(), existBVNames);
-    final Set<LiaVarImpl> existBVs = new HashSet<>();
-    lia.transformPostOrder(f -> {
-      if (f instanceof LiaVarImpl var && existBVNames.contains(var.getName())) {
-        existBVs.add(var);
-      }
-      return f;
-    });
-    final Set<LiaVarImpl> universalBVs = new HashSet<>();
-    lia.transformPostOrder(f -> {
-      if (f instanceof LiaVarImpl var && universalBVNames.contains(var.getName())) {
-        universalBVs.add(var);
-      }
-      return f;
-    });
+    final Set<LiaVarImpl> existBVs = lia.collectVarsNamedIn(existBVNames);
+    final Set<LiaVarImpl> universalBVs = lia.collectVarsNamedIn(universalBVNames);
     // Check satisfiability of "some existBVs >= 0 /\ (forall universalBVs. some universalBVs >= 0 -> lia)"
     // Non-negativity of vars (some universalBVs and existBVs >= 0) is considered.
     // Whether a var is non-negative is determined by its type. (natural vars are non-negative)
@@ -365,7 +376,16 @@ public class Z3Support {
     final BoolExpr toCheck = ctx.mkAnd(nnEx, body);
     final Solver s = ctx.mkSolver(ctx.tryFor(ctx.mkTactic("lia"), SqlSolver.Z3_TIMEOUT));
     s.add(toCheck);
-    s.check();
-    return s.getModel();
+    return s;
+  }
+
+  /** Look up a cached check, which is counted in the current {@link VerificationMetrics}. */
+  private static Boolean lookup(LiaQueryCache cache, String key) {
+    if (key == null) return null;
+    final Boolean cached = cache.get(key);
+    final VerificationMetrics metrics = VerificationMetrics.current();
+    if (cached != null) metrics.numZ3CacheHits.increment();
+    else metrics.numZ3CacheMisses.increment();
+    return cached;
   }
 }
@@ -1,9 +1,12 @@
 package sqlsolver.superopt;
 
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.tools.Planner;
 import sqlsolver.common.utils.Lazy;
 import sqlsolver.common.utils.SetSupport;
 import sqlsolver.sql.SqlSupport;
 import sqlsolver.sql.ast.SqlNode;
+import sqlsolver.sql.calcite.CalciteSupport;
 import sqlsolver.sql.plan.PlanContext;
 import sqlsolver.sql.plan.PlanSupport;
 import sqlsolver.sql.schema.Schema;
@@ -31,6 +34,17 @@ public abstract class TestHelper {
     return PlanSupport.assemblePlan(parseSql(sql), SCHEMA.get());
   }
 
+  /** The plan of a query built by Calcite, as verified by {@link sqlsolver.superopt.logic.LogicSupport}. */
+  public static RelNode parseRel(String sql) {
+    final Planner planner = CalciteSupport.getPlanner(CalciteSupport.getCalciteSchema(TEST_SCHEMA));
+    return CalciteSupport.parseRel(CalciteSupport.parseAST(sql, planner), planner);
+  }
+
+  /** The schema of the plans built by {@link #parseRel(String)}. */
+  public static Schema relSchema() {
+    return CalciteSupport.getSchema(TEST_SCHEMA);
+  }
+
   public static Path dataDir() {
     return Path.of(System.getProperty("sqlsolver.data_dir", "sqlsolver_data"));
   }
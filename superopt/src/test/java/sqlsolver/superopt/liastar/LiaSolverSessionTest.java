@@ -0,0 +1,39 @@
+package sqlsolver.superopt.liastar;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Context;
+import com.microsoft.z3.IntExpr;
+import com.microsoft.z3.Status;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LiaSolverSessionTest {
+  @Test
+  void testChecksAreIsolated() {
+    try (final LiaSolverSession session = new LiaSolverSession()) {
+      final Context ctx = session.context();
+      final IntExpr x = ctx.mkIntConst("x");
+      final BoolExpr positive = ctx.mkGt(x, ctx.mkInt(0));
+      final BoolExpr negative = ctx.mkLt(x, ctx.mkInt(0));
+
+      assertEquals(Status.SATISFIABLE, session.check(positive));
+      // would be UNSAT if the previous formula were still asserted
+      assertEquals(Status.SATISFIABLE, session.check(negative));
+      assertEquals(Status.UNSATISFIABLE, session.check(ctx.mkAnd(positive, negative)));
+      // nor does an UNSAT check leave the session inconsistent
+      assertEquals(Status.SATISFIABLE, session.check(positive));
+    }
+  }
+
+  @Test
+  void testBackgroundRulesAreKept() {
+    try (final LiaSolverSession session = new LiaSolverSession()) {
+      final Context ctx = session.context();
+      final IntExpr x = ctx.mkIntConst("x");
+      session.check(ctx.mkGt(x, ctx.mkInt(0)));
+      // the background rules are asserted outside the scopes of checks, so they are not popped
+      assertEquals(Status.UNSATISFIABLE, session.check(ctx.mkNot(LiaSolver.ruleNullEquals(ctx))));
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package sqlsolver.superopt.logic;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sqlsolver.superopt.TestHelper.parseRel;
+import static sqlsolver.superopt.TestHelper.relSchema;
+
+class ICVariantPortfolioTest {
+  private static VerificationResult prove(String sql0, String sql1, int icParallelism) {
+    final VerificationContext context = new VerificationContext();
+    context.setICParallelism(icParallelism);
+    return LogicSupport.proveEqByLIAStarConcrete(parseRel(sql0), parseRel(sql1), relSchema(), context);
+  }
+
+  private static VerificationResult proveBothWays(String sql0, String sql1) {
+    final VerificationResult sequential = prove(sql0, sql1, 0);
+    assertEquals(sequential, prove(sql0, sql1, 2), sql0 + " vs. " + sql1);
+    return sequential;
+  }
+
+  @Test
+  void testKeys() {
+    assertEquals(VerificationResult.EQ, proveBothWays("SELECT DISTINCT a.i FROM a", "SELECT a.i FROM a"));
+    assertEquals(VerificationResult.EQ, proveBothWays("SELECT DISTINCT b.x, b.y FROM b", "SELECT b.x, b.y FROM b"));
+  }
+
+  @Test
+  void testForeignKey() {
+    assertEquals(VerificationResult.EQ,
+        proveBothWays("SELECT d.p FROM d JOIN c ON d.p = c.u", "SELECT d.p FROM d WHERE d.p IS NOT NULL"));
+  }
+
+  @Test
+  void testNoKey() {
+    // every IC variant is tried before giving up
+    assertNotEquals(VerificationResult.EQ, proveBothWays("SELECT DISTINCT a.j FROM a", "SELECT a.j FROM a"));
+  }
+}
@@ -0,0 +1,77 @@
+package sqlsolver.superopt.logic;
+
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.tools.Planner;
+import org.junit.jupiter.api.Test;
+import sqlsolver.sql.calcite.CalciteSupport;
+import sqlsolver.sql.schema.Schema;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstanceRefuterTest {
+  private static final String SCHEMA =
+      ""
+          + "CREATE TABLE a ( i INT PRIMARY KEY, j INT, k INT );"
+          + "CREATE TABLE b ( x INT PRIMARY KEY, y INT, z INT );"
+          + "CREATE TABLE c ( u INT PRIMARY KEY, v CHAR(10), w DECIMAL(1, 10) );"
+          + "CREATE TABLE d ( p INT, q CHAR(10), r DECIMAL(1, 10), UNIQUE KEY (p), FOREIGN KEY (p) REFERENCES c (u) );";
+
+  private static RelNode parsePlan(String sql) {
+    final Planner planner = CalciteSupport.getPlanner(CalciteSupport.getCalciteSchema(SCHEMA));
+    final RelNode plan = CalciteSupport.parseRel(CalciteSupport.parseAST(sql, planner), planner);
+    assertNotNull(plan, sql);
+    return plan;
+  }
+
+  private static NeqWitness refute(String sql0, String sql1) {
+    final Schema schema = CalciteSupport.getSchema(SCHEMA);
+    return new InstanceRefuter(parsePlan(sql0), parsePlan(sql1), schema).refute(32, 10000);
+  }
+
+  private static List<List<Object>> rowsOf(NeqWitness witness, String table) {
+    for (Map.Entry<String, List<List<Object>>> entry : witness.tables().entrySet()) {
+      if (entry.getKey().equalsIgnoreCase(table)) return entry.getValue();
+    }
+    return fail("no table " + table);
+  }
+
+  @Test
+  void testRefuteNeq() {
+    final RelNode p0 = parsePlan("SELECT x FROM b"), p1 = parsePlan("SELECT y FROM b");
+    final NeqWitness witness = new InstanceRefuter(p0, p1, CalciteSupport.getSchema(SCHEMA)).refute(32, 10000);
+    assertNotNull(witness);
+
+    // the plans differ when run on the witness again
+    assertEquals(witness.result0(), InstanceRefuter.run(p0, witness.tables()));
+    assertEquals(witness.result1(), InstanceRefuter.run(p1, witness.tables()));
+    assertNotEquals(InstanceRefuter.countRows(witness.result0()), InstanceRefuter.countRows(witness.result1()));
+  }
+
+  @Test
+  void testRefuteNeqWithForeignKey() {
+    final NeqWitness witness = refute("SELECT d.p FROM d JOIN c ON d.p = c.u", "SELECT c.u FROM c");
+    assertNotNull(witness);
+    // rows of d refer to rows of c
+    for (List<Object> row : rowsOf(witness, "d")) {
+      final Object p = row.get(0);
+      if (p != null) assertTrue(rowsOf(witness, "c").stream().anyMatch(r -> p.equals(r.get(0))));
+    }
+  }
+
+  @Test
+  void testNeverRefuteEq() {
+    assertNull(refute("SELECT i, j FROM a", "SELECT T.COL1, T.COL2 FROM (SELECT i AS COL1, j AS COL2 FROM a) AS T"));
+    assertNull(refute("SELECT p, q FROM d WHERE p IN (10, 20)", "SELECT p, q FROM d WHERE p = 10 OR p = 20"));
+    assertNull(refute("SELECT DISTINCT i FROM a", "SELECT i FROM a"));
+    assertNull(refute("SELECT d.p FROM d JOIN c ON d.p = c.u", "SELECT d.p FROM d WHERE d.p IS NOT NULL"));
+  }
+
+  @Test
+  void testUnsupportedPlans() {
+    // the interpreter fails on subqueries even with the empty database, so the plans are left to the prover
+    assertNull(refute("SELECT i FROM a WHERE i IN (SELECT x FROM b)", "SELECT i FROM a"));
+  }
+}
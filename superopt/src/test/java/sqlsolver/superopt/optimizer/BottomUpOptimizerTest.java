@@ -0,0 +1,42 @@
+package sqlsolver.superopt.optimizer;
+
+import org.junit.jupiter.api.Test;
+import sqlsolver.common.utils.SetSupport;
+import sqlsolver.sql.plan.PlanContext;
+import sqlsolver.superopt.substitution.SubstitutionBank;
+import sqlsolver.superopt.substitution.SubstitutionSupport;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static sqlsolver.sql.plan.PlanSupport.stringifyTree;
+import static sqlsolver.superopt.TestHelper.dataDir;
+import static sqlsolver.superopt.TestHelper.parsePlan;
+
+class BottomUpOptimizerTest {
+  private static final List<String> QUERIES = List.of(
+      "SELECT a.i FROM a WHERE a.i IN (SELECT b.x FROM b)",
+      "SELECT DISTINCT a.i FROM a JOIN b ON a.i = b.x",
+      "SELECT d.p FROM d JOIN c ON d.p = c.u",
+      "SELECT a.i FROM a WHERE a.j IN (SELECT a.j FROM a) AND a.k = 1",
+      "SELECT DISTINCT b.y FROM b WHERE b.x IN (SELECT a.i FROM a JOIN b ON a.i = b.x)");
+
+  private static Set<String> optimize(SubstitutionBank rules, PlanContext plan, int parallelism) {
+    final Optimizer optimizer = Optimizer.mk(rules);
+    optimizer.setParallelism(parallelism);
+    return SetSupport.map(optimizer.optimize(plan), it -> stringifyTree(it, it.root(), true));
+  }
+
+  @Test
+  void testParallelOptimization() throws IOException {
+    final SubstitutionBank rules = SubstitutionSupport.loadBank(dataDir().resolve("prepared").resolve("rules.txt"));
+    for (String sql : QUERIES) {
+      final PlanContext plan = parsePlan(sql);
+      final Set<String> sequential = optimize(rules, plan, 0);
+      assertEquals(sequential, optimize(rules, plan, 4), sql);
+      assertEquals(sequential, optimize(rules, plan, 2), sql);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package sqlsolver.superopt.optimizer;
+
+import org.junit.jupiter.api.Test;
+import sqlsolver.sql.plan.PlanContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sqlsolver.superopt.TestHelper.parsePlan;
+
+class SubPlanKeyTest {
+  private static SubPlan rootOf(PlanContext plan) {
+    return new SubPlan(plan, plan.root());
+  }
+
+  @Test
+  void testEqualSubPlansShareKey() {
+    final String sql = "SELECT a.i FROM a JOIN b ON a.i = b.x WHERE a.j = 1";
+    final PlanContext plan = parsePlan(sql);
+    final Memo memo = new Memo(false);
+
+    final SubPlanKey key = memo.treeKeyOf(rootOf(plan));
+    assertSame(key, memo.treeKeyOf(rootOf(plan.copy())));
+    assertSame(key, memo.treeKeyOf(rootOf(parsePlan(sql))));
+    assertSame(key, memo.extractKey(rootOf(parsePlan(sql))));
+  }
+
+  @Test
+  void testEqualChildrenShareKey() {
+    final PlanContext plan0 = parsePlan("SELECT a.i FROM a WHERE a.j = 1");
+    final PlanContext plan1 = parsePlan("SELECT a.k FROM a WHERE a.j = 1");
+    final Memo memo = new Memo(false);
+
+    assertNotEquals(memo.treeKeyOf(rootOf(plan0)), memo.treeKeyOf(rootOf(plan1)));
+    assertSame(memo.treeKeyOf(rootOf(plan0).child(0)), memo.treeKeyOf(rootOf(plan1).child(0)));
+  }
+
+  @Test
+  void testDifferentSubPlansHaveDifferentKeys() {
+    final Memo memo = new Memo(false);
+    final SubPlanKey key = memo.treeKeyOf(rootOf(parsePlan("SELECT a.i FROM a WHERE a.j = 1")));
+    assertNotEquals(key, memo.treeKeyOf(rootOf(parsePlan("SELECT a.i FROM a WHERE a.j = 2"))));
+    assertNotEquals(key, memo.treeKeyOf(rootOf(parsePlan("SELECT a.i FROM a WHERE a.k = 1"))));
+    assertNotEquals(key, memo.treeKeyOf(rootOf(parsePlan("SELECT a.i FROM a"))));
+    assertNotEquals(key, memo.treeKeyOf(rootOf(parsePlan("SELECT b.x FROM b WHERE b.y = 1"))));
+  }
+
+  @Test
+  void testRegisteredByEqualSubPlans() {
+    final String sql = "SELECT DISTINCT b.y FROM b WHERE b.z = 3";
+    final Memo memo = new Memo(false);
+    final SubPlan subPlan = rootOf(parsePlan(sql));
+    assertFalse(memo.isRegistered(subPlan));
+
+    memo.mkEqClass(subPlan);
+    final SubPlan other = rootOf(parsePlan(sql));
+    assertTrue(memo.isRegistered(other));
+    assertSame(memo.eqClassOf(subPlan), memo.eqClassOf(other));
+  }
+
+  @Test
+  void testClaimedOnceAtATime() {
+    final String sql = "SELECT DISTINCT b.y FROM b WHERE b.z = 3";
+    final Memo memo = new Memo(true);
+    final SubPlan subPlan = rootOf(parsePlan(sql));
+    assertTrue(memo.claim(subPlan));
+    assertFalse(memo.claim(rootOf(parsePlan(sql))));
+    assertTrue(memo.claim(subPlan.child(0)));
+
+    memo.release(subPlan);
+    assertTrue(memo.claim(rootOf(parsePlan(sql))));
+  }
+}
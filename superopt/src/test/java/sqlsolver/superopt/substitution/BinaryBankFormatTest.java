@@ -0,0 +1,109 @@
+package sqlsolver.superopt.substitution;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sqlsolver.superopt.util.Fingerprint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sqlsolver.superopt.TestHelper.dataDir;
+
+class BinaryBankFormatTest {
+  private static final Path TEXT_BANK = dataDir().resolve("prepared").resolve("rules.txt");
+
+  private static Map<Integer, Substitution> rulesById(SubstitutionBank bank) {
+    final Map<Integer, Substitution> rules = new HashMap<>();
+    for (Substitution rule : bank.rules()) rules.put(rule.id(), rule);
+    return rules;
+  }
+
+  private static Set<String> identitiesOf(Iterable<Substitution> rules) {
+    final Set<String> identities = new HashSet<>();
+    for (Substitution rule : rules) identities.add(rule.canonicalStringify());
+    return identities;
+  }
+
+  @Test
+  void testRoundTrip(@TempDir Path dir) throws IOException {
+    final SubstitutionBank textBank = SubstitutionSupport.loadBank(TEXT_BANK);
+    final Path binaryPath = dir.resolve("rules.bin");
+    SubstitutionSupport.saveBinaryBank(textBank, binaryPath);
+
+    assertTrue(BinaryBankFormat.isBinaryBank(binaryPath));
+    assertFalse(BinaryBankFormat.isBinaryBank(TEXT_BANK));
+
+    final SubstitutionBank binaryBank = SubstitutionSupport.loadBank(binaryPath);
+    assertEquals(textBank.size(), binaryBank.size());
+
+    final Map<Integer, Substitution> textRules = rulesById(textBank), binaryRules = rulesById(binaryBank);
+    assertEquals(textRules.keySet(), binaryRules.keySet());
+    textRules.forEach((id, rule) -> {
+      final Substitution loaded = binaryRules.get(id);
+      assertEquals(rule.canonicalStringify(), loaded.canonicalStringify());
+      // parses the rule
+      assertEquals(rule.toString(), loaded.toString());
+      assertTrue(binaryBank.contains(rule));
+
+      final Fingerprint fingerprint = Fingerprint.mk(rule._0());
+      assertEquals(fingerprint, loaded.fingerprint());
+      assertEquals(identitiesOf(textBank.ruleOfFingerprint(fingerprint)),
+          identitiesOf(binaryBank.ruleOfFingerprint(fingerprint)));
+    });
+  }
+
+  @Test
+  void testLoadWithoutParsing(@TempDir Path dir) throws IOException {
+    final Path binaryPath = dir.resolve("rules.bin");
+    long start = System.currentTimeMillis();
+    final SubstitutionBank textBank = SubstitutionSupport.loadBank(TEXT_BANK);
+    final long textMillis = System.currentTimeMillis() - start;
+    SubstitutionSupport.saveBinaryBank(textBank, binaryPath);
+
+    start = System.currentTimeMillis();
+    final SubstitutionBank binaryBank = SubstitutionSupport.loadBank(binaryPath);
+    final long binaryMillis = System.currentTimeMillis() - start;
+    System.err.printf("loaded %d rules in %d ms from text, and in %d ms from the binary format\n",
+        binaryBank.size(), textMillis, binaryMillis);
+
+    // neither looking up rules nor settling them before sharing parses them
+    for (Substitution rule : textBank.rules()) binaryBank.ruleOfFingerprint(rule.fingerprint());
+    SubstitutionSupport.settleRules(binaryBank);
+    for (Substitution rule : binaryBank.rules()) assertFalse(((LazySubstitution) rule).isParsed());
+
+    final Substitution rule = binaryBank.rules().iterator().next();
+    assertNotNull(rule._0());
+    assertTrue(((LazySubstitution) rule).isParsed());
+  }
+
+  @Test
+  void testRejectBadMagic(@TempDir Path dir) throws IOException {
+    final IOException e = assertThrows(IOException.class, () -> BinaryBankFormat.read(TEXT_BANK));
+    assertTrue(e.getMessage().startsWith("not a binary rule bank"));
+
+    final Path emptyPath = Files.createFile(dir.resolve("empty.bin"));
+    assertFalse(BinaryBankFormat.isBinaryBank(emptyPath));
+  }
+
+  @Test
+  void testRejectBadVersion(@TempDir Path dir) throws IOException {
+    final Path binaryPath = dir.resolve("rules.bin");
+    SubstitutionSupport.convertBank(TEXT_BANK, binaryPath);
+
+    final byte[] bytes = Files.readAllBytes(binaryPath);
+    // the version follows the magic number
+    ByteBuffer.wrap(bytes).putInt(Integer.BYTES, 99);
+    Files.write(binaryPath, bytes);
+
+    assertTrue(BinaryBankFormat.isBinaryBank(binaryPath));
+    final IOException e = assertThrows(IOException.class, () -> SubstitutionSupport.loadBank(binaryPath));
+    assertEquals("unsupported version of rule bank: 99", e.getMessage());
+  }
+}
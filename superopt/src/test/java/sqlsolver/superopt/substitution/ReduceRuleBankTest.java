@@ -0,0 +1,112 @@
+package sqlsolver.superopt.substitution;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sqlsolver.superopt.optimizer.OptimizerSupport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sqlsolver.superopt.TestHelper.dataDir;
+
+class ReduceRuleBankTest {
+  // reduction sets up the optimizer tweaks of the process
+  private int optimizerTweaks;
+
+  @BeforeEach
+  void saveOptimizerTweaks() {
+    optimizerTweaks = OptimizerSupport.getOptimizerTweaks();
+  }
+
+  @AfterEach
+  void restoreOptimizerTweaks() {
+    OptimizerSupport.setOptimizerTweaks(optimizerTweaks);
+  }
+
+  private static List<String> ruleLines(int from, int to) throws IOException {
+    final List<String> lines = new ArrayList<>();
+    for (String line : Files.readAllLines(dataDir().resolve("prepared").resolve("rules.txt"))) {
+      if (!line.isEmpty() && Character.isLetter(line.charAt(0))) lines.add(line);
+    }
+    return lines.subList(from, Math.min(to, lines.size()));
+  }
+
+  // banks are reduced in place, so each reduction parses the rules again
+  private static SubstitutionBank bankOf(List<String> lines) {
+    final SubstitutionBank bank = SubstitutionBank.mk();
+    for (int i = 0; i < lines.size(); i++) {
+      final Substitution rule = Substitution.parse(lines.get(i));
+      bank.add(rule);
+      rule.setId(i + 1);
+    }
+    return bank;
+  }
+
+  private static List<Substitution> rulesOf(List<String> lines) {
+    final List<Substitution> rules = new ArrayList<>(lines.size());
+    for (String line : lines) rules.add(Substitution.parse(line));
+    return rules;
+  }
+
+  private static List<String> identitiesOf(SubstitutionBank bank) {
+    final List<String> identities = new ArrayList<>(bank.size());
+    for (Substitution rule : bank.rules()) identities.add(rule.canonicalStringify());
+    return identities;
+  }
+
+  // the first rule in the sample with an extra precondition, which the rule itself implies
+  private static String specializedRule() throws IOException {
+    final String rule = ruleLines(0, 1).get(0);
+    assertTrue(rule.contains(";TableEq(t0,t2);"));
+    return rule.replace(";TableEq(t0,t2);", ";TableEq(t0,t1);TableEq(t0,t2);");
+  }
+
+  private static SubstitutionBank reduce(List<String> lines, int parallelism) {
+    final ReduceRuleBank reducer = new ReduceRuleBank(bankOf(lines), parallelism);
+    final long start = System.currentTimeMillis();
+    final SubstitutionBank reduced = reducer.reduce();
+    System.err.printf("reduced %d rules to %d with parallelism %d: %d checks in %d ms\n",
+        lines.size(), reduced.size(), parallelism, reducer.numChecks(), System.currentTimeMillis() - start);
+    return reduced;
+  }
+
+  @Test
+  void testParallelReduce() throws IOException {
+    // the removed rule comes first, so the decisions made along with it are taken after the bank changes
+    final List<String> lines = new ArrayList<>();
+    lines.add(specializedRule());
+    lines.addAll(ruleLines(0, 40));
+    final SubstitutionBank sequential = reduce(lines, 1);
+    final SubstitutionBank parallel = reduce(lines, 4);
+    assertEquals(identitiesOf(sequential), identitiesOf(parallel));
+    assertTrue(sequential.size() < lines.size());
+    assertFalse(identitiesOf(sequential).contains(Substitution.parse(specializedRule()).canonicalStringify()));
+  }
+
+  @Test
+  void testIncrementalReduce() throws IOException {
+    final List<String> oldLines = ruleLines(0, 25), newLines = ruleLines(25, 40);
+    final SubstitutionBank reduced = new ReduceRuleBank(bankOf(oldLines), 1).reduce();
+    final List<String> reducedIdentities = identitiesOf(reduced);
+
+    // no new rules, no change
+    final List<String> keptLines = new ArrayList<>();
+    for (Substitution rule : reduced.rules()) keptLines.add(rule.toString());
+    assertSame(reduced, SubstitutionSupport.reduceBank(reduced, List.of()));
+    assertSame(reduced, SubstitutionSupport.reduceBank(reduced, rulesOf(keptLines)));
+    assertEquals(reducedIdentities, identitiesOf(reduced));
+
+    final Set<String> candidates = new HashSet<>(reducedIdentities);
+    for (Substitution rule : rulesOf(newLines)) candidates.add(rule.canonicalStringify());
+
+    final SubstitutionBank sequential = new ReduceRuleBank(reduced, 1).reduce(rulesOf(newLines));
+    assertTrue(candidates.containsAll(identitiesOf(sequential)));
+
+    final SubstitutionBank parallel =
+        new ReduceRuleBank(new ReduceRuleBank(bankOf(oldLines), 1).reduce(), 4).reduce(rulesOf(newLines));
+    assertEquals(identitiesOf(sequential), identitiesOf(parallel));
+  }
+}
@@ -0,0 +1,79 @@
+package sqlsolver.superopt.util;
+
+import org.junit.jupiter.api.Test;
+import sqlsolver.sql.plan.PlanContext;
+import sqlsolver.superopt.substitution.Substitution;
+import sqlsolver.superopt.substitution.SubstitutionBank;
+import sqlsolver.superopt.substitution.SubstitutionSupport;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sqlsolver.common.tree.TreeContext.NO_SUCH_NODE;
+import static sqlsolver.superopt.TestHelper.dataDir;
+import static sqlsolver.superopt.TestHelper.parsePlan;
+
+class FingerprintTrieTest {
+  private static final List<String> QUERIES = List.of(
+      "SELECT a.i FROM a WHERE a.i IN (SELECT b.x FROM b)",
+      "SELECT DISTINCT a.i FROM a JOIN b ON a.i = b.x WHERE a.j = 1 AND b.y = 2",
+      "SELECT d.p FROM d LEFT JOIN c ON d.p = c.u JOIN a ON a.i = c.u",
+      "SELECT a.j, COUNT(a.k) FROM a WHERE a.k > 1 GROUP BY a.j",
+      "SELECT a.i FROM a WHERE a.j IN (SELECT b.y FROM b) AND a.k = 1 AND a.i IN (SELECT c.u FROM c)",
+      "SELECT b.x FROM b UNION SELECT a.i FROM a");
+
+  private static void collectNodes(PlanContext plan, int node, List<Integer> nodes) {
+    nodes.add(node);
+    for (int child : plan.childrenOf(node)) {
+      if (child != NO_SUCH_NODE) collectNodes(plan, child, nodes);
+    }
+  }
+
+  @Test
+  void testLookupFragments() {
+    final FingerprintTrie<String> trie = new FingerprintTrie<>();
+    for (String fingerprint : List.of("p", "pf", "pff", "pfi", "pjj", "pj", "f", "fsf", "a", "ps")) {
+      trie.add(Fingerprint.mk(fingerprint), fingerprint);
+    }
+    trie.add(Fingerprint.mk("pf"), "pf'");
+    assertEquals(11, trie.size());
+    assertEquals(List.of("pf", "pf'"), trie.lookup(Fingerprint.mk("pf")));
+    assertTrue(trie.lookup(Fingerprint.mk("pfff")).isEmpty());
+
+    assertTrue(trie.remove(Fingerprint.mk("pf"), "pf'"));
+    assertFalse(trie.remove(Fingerprint.mk("pf"), "pf'"));
+    assertFalse(trie.remove(Fingerprint.mk("pfff"), "pfff"));
+    assertEquals(10, trie.size());
+  }
+
+  @Test
+  void testLookupPlansAsPerBudgetFingerprints() throws IOException {
+    final SubstitutionBank rules = SubstitutionSupport.loadBank(dataDir().resolve("prepared").resolve("rules.txt"));
+    final FingerprintTrie<Substitution> trie = new FingerprintTrie<>();
+    final Map<Substitution, Fingerprint> fingerprints = new HashMap<>();
+    for (Substitution rule : rules.rules()) {
+      final Fingerprint fingerprint = Fingerprint.mk(rule._0());
+      trie.add(fingerprint, rule);
+      fingerprints.put(rule, fingerprint);
+    }
+
+    for (String sql : QUERIES) {
+      final PlanContext plan = parsePlan(sql);
+      final List<Integer> nodes = new ArrayList<>();
+      collectNodes(plan, plan.root(), nodes);
+      for (int node : nodes) {
+        // the fingerprints built for each budget one by one
+        final Set<Fingerprint> expectedFingerprints = Fingerprint.mk(plan, node);
+        final Set<Substitution> expected = new HashSet<>();
+        fingerprints.forEach((rule, fingerprint) -> {
+          if (expectedFingerprints.contains(fingerprint)) expected.add(rule);
+        });
+
+        final List<Substitution> found = trie.lookup(plan, node);
+        assertEquals(expected, new HashSet<>(found), sql + " @ " + node);
+        assertEquals(expected.size(), found.size(), sql + " @ " + node);
+      }
+    }
+  }
+}
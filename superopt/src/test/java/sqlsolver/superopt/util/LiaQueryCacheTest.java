@@ -0,0 +1,62 @@
+package sqlsolver.superopt.util;
+
+import com.microsoft.z3.Status;
+import org.junit.jupiter.api.Test;
+import sqlsolver.superopt.liastar.LiaStar;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sqlsolver.superopt.liastar.LiaStar.*;
+
+class LiaQueryCacheTest {
+  // x <= x + y
+  private static LiaStar mkSum(String x, String y) {
+    return mkLe(false, mkVar(false, x), mkPlus(false, mkVar(false, x), mkVar(false, y)));
+  }
+
+  @Test
+  void testRenamedFormulasShareKey() {
+    assertEquals(
+        LiaQueryCache.keyOf("valid", mkSum("x", "y"), Set.of()),
+        LiaQueryCache.keyOf("valid", mkSum("a", "b"), Set.of()));
+    assertEquals(
+        LiaQueryCache.keyOf("sat", mkSum("x", "y"), Set.of("y")),
+        LiaQueryCache.keyOf("sat", mkSum("a", "b"), Set.of("b")));
+  }
+
+  @Test
+  void testDifferentFormulasHaveDifferentKeys() {
+    final String key = LiaQueryCache.keyOf("valid", mkSum("x", "y"), Set.of());
+    // x <= x + x
+    assertNotEquals(key, LiaQueryCache.keyOf("valid", mkSum("x", "x"), Set.of()));
+    assertNotEquals(key, LiaQueryCache.keyOf("valid", mkEq(false, mkVar(false, "x"), mkVar(false, "y")), Set.of()));
+    assertNotEquals(key, LiaQueryCache.keyOf("valid", mkSum("x", "y"), Set.of("y")));
+    assertNotEquals(key, LiaQueryCache.keyOf("sat", mkSum("x", "y"), Set.of()));
+    assertNotEquals(key, LiaQueryCache.keyOf("valid",
+        mkLe(false, mkVar(false, "x"), mkPlus(false, mkVar(false, "x"), mkConst(false, 1))), Set.of()));
+  }
+
+  @Test
+  void testOnlyDecidedResultsAreCached() {
+    final LiaQueryCache cache = new LiaQueryCache(16);
+    cache.putIfDecided("unknown", Status.UNKNOWN, false);
+    cache.putIfDecided("unsat", Status.UNSATISFIABLE, true);
+    cache.putIfDecided("sat", Status.SATISFIABLE, false);
+    cache.putIfDecided(null, Status.SATISFIABLE, true);
+
+    assertNull(cache.get("unknown"));
+    assertEquals(Boolean.TRUE, cache.get("unsat"));
+    assertEquals(Boolean.FALSE, cache.get("sat"));
+  }
+
+  @Test
+  void testCapacity() {
+    final LiaQueryCache cache = new LiaQueryCache(1);
+    cache.put("a", true);
+    cache.put("b", true);
+    assertNull(cache.get("a"));
+    assertEquals(Boolean.TRUE, cache.get("b"));
+    assertFalse(new LiaQueryCache(0).isEnabled());
+  }
+}